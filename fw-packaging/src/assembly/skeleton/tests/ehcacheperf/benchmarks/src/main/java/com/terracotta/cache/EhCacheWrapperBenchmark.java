@@ -0,0 +1,103 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.cache;
+
+import net.sf.ehcache.CacheManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.samples.petclinic.CacheEntryAdapter;
+import org.springframework.samples.petclinic.dao.nodb.NodbFixture;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EhCacheWrapper get/put on a local CacheManager, including the latency recording done by AbstractCacheWrapper. The
+ * value is an Object[] the size of a dehydrated owner, with a padding string of valuePaddingInBytes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EhCacheWrapperBenchmark {
+
+  private static final CacheEntryAdapter<Object[]> ADAPTER = new CacheEntryAdapter<Object[]>() {
+                                                               public Object[] hydrate(Object[] data) {
+                                                                 return data;
+                                                               }
+
+                                                               public Object[] dehydrate(Object[] value) {
+                                                                 return value;
+                                                               }
+                                                             };
+
+  @Param({ "10000" })
+  int                                              elementNum;
+
+  @Param({ "0", "1024", "10240" })
+  int                                              valuePaddingInBytes;
+
+  @Param({ "true", "false" })
+  boolean                                          perThreadRecording;
+
+  CacheManager                                     cacheManager;
+  EhCacheWrapper<String, Object[]>                 wrapper;
+  String[]                                         keys;
+  Object[]                                         value;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    AbstractCacheWrapper.perThreadRecording = perThreadRecording;
+    cacheManager = NodbFixture.createCacheManager(elementNum, "owners");
+    wrapper = new EhCacheWrapper<String, Object[]>("owners", cacheManager);
+    keys = new String[elementNum];
+    char[] padding = new char[valuePaddingInBytes / 2];
+    Arrays.fill(padding, '2');
+    value = new Object[] { 1, 1, "Owner_First_Name_1", "Owner_Last_Name_0", "Street Number 1" + new String(padding),
+        "City Name 0", "6085550002" };
+    for (int i = 0; i < elementNum; i++) {
+      keys[i] = String.valueOf(i);
+      wrapper.put(keys[i], value, ADAPTER);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    cacheManager.shutdown();
+  }
+
+  @State(Scope.Thread)
+  public static class Index {
+    int next;
+
+    String nextKey(String[] keys) {
+      if (++next >= keys.length) next = 0;
+      return keys[next];
+    }
+  }
+
+  @Benchmark
+  public Object[] get(Index index) {
+    return wrapper.get(index.nextKey(keys), ADAPTER);
+  }
+
+  @Benchmark
+  public void put(Index index) {
+    wrapper.put(index.nextKey(keys), value, ADAPTER);
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package org.springframework.samples.petclinic.dao.nodb;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.samples.petclinic.Owner;
+import org.springframework.samples.petclinic.Pet;
+import org.springframework.samples.petclinic.Visit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * hydrate/dehydrate of the CacheEntryAdapters used by the nodb DAOs for Owner, Pet and Visit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheEntryAdapterBenchmark {
+
+  @Param({ "0", "1024", "10240" })
+  int         valuePaddingInBytes;
+
+  NodbFixture fixture;
+  Owner       owner;
+  Pet         pet;
+  Visit       visit;
+  Object[]    ownerData;
+  Object[]    petData;
+  Object[]    visitData;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    fixture = new NodbFixture(16, 0, valuePaddingInBytes);
+    owner = fixture.ownerDao.loadById(1);
+    pet = fixture.petDao.loadById(2);
+    visit = fixture.visitDao.loadById(4);
+    ownerData = fixture.ownerDao.adapter.dehydrate(owner);
+    petData = fixture.petDao.adapter.dehydrate(pet);
+    visitData = fixture.visitDao.adapter.dehydrate(visit);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    fixture.shutdown();
+  }
+
+  @Benchmark
+  public Object[] ownerDehydrate() {
+    return fixture.ownerDao.adapter.dehydrate(owner);
+  }
+
+  @Benchmark
+  public Owner ownerHydrate() {
+    return fixture.ownerDao.adapter.hydrate(ownerData);
+  }
+
+  @Benchmark
+  public Object[] petDehydrate() {
+    return fixture.petDao.adapter.dehydrate(pet);
+  }
+
+  @Benchmark
+  public Pet petHydrate() {
+    return fixture.petDao.adapter.hydrate(petData);
+  }
+
+  @Benchmark
+  public Object[] visitDehydrate() {
+    return fixture.visitDao.adapter.dehydrate(visit);
+  }
+
+  @Benchmark
+  public Visit visitHydrate() {
+    return fixture.visitDao.adapter.hydrate(visitData);
+  }
+}
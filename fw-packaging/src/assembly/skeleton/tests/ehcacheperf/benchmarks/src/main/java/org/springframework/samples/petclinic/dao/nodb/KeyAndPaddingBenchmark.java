@@ -0,0 +1,81 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package org.springframework.samples.petclinic.dao.nodb;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Key and value padding generation of BaseNoDBDAOImpl, done on every DAO call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyAndPaddingBenchmark {
+
+  @Param({ "0", "100", "1024" })
+  int         keyPaddingInBytes;
+
+  @Param({ "1024", "10240" })
+  int         valuePaddingInBytes;
+
+  @Param({ "false", "true" })
+  String      variableValue;
+
+  @Param({ "0", "1024" })
+  String      keyCacheSize;
+
+  NodbFixture fixture;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    fixture = new NodbFixture(16, keyPaddingInBytes, valuePaddingInBytes);
+    fixture.ownerDao.setVariableValue(variableValue);
+    fixture.ownerDao.setKeyCacheSize(keyCacheSize);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    fixture.shutdown();
+  }
+
+  @State(Scope.Thread)
+  public static class Ids {
+    int next;
+  }
+
+  @Benchmark
+  public String generateKey(Ids ids) {
+    return fixture.ownerDao.generateKey(ids.next++);
+  }
+
+  /**
+   * Cycles over 1024 ids, all of them kept once generated when keyCacheSize is 1024.
+   */
+  @Benchmark
+  public String generateHotKey(Ids ids) {
+    return fixture.ownerDao.generateKey(ids.next++ & 1023);
+  }
+
+  @Benchmark
+  public String paddingString() {
+    return fixture.ownerDao.getPaddingString(valuePaddingInBytes);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package org.springframework.samples.petclinic.dao.nodb;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.samples.petclinic.Owner;
+import org.springframework.samples.petclinic.Pet;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getById of the nodb owner and pet DAOs on warm caches (hit path: key generation, cache get, hydrate), and loadById
+ * (miss path: entity creation, padding, dehydrate, cache put).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NodbDaoBenchmark {
+
+  @Param({ "10000" })
+  int         elementNum;
+
+  @Param({ "0", "100" })
+  int         keyPaddingInBytes;
+
+  @Param({ "0", "1024", "10240" })
+  int         valuePaddingInBytes;
+
+  NodbFixture fixture;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    fixture = new NodbFixture(elementNum * 2, keyPaddingInBytes, valuePaddingInBytes);
+    for (int id = 0; id < elementNum; id++) {
+      Owner owner = fixture.ownerDao.loadById(id);
+      fixture.petDao.loadPetsForOwner(owner);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    fixture.shutdown();
+  }
+
+  @State(Scope.Thread)
+  public static class Ids {
+    int next;
+
+    int nextOwner(NodbDaoBenchmark benchmark) {
+      if (++next >= benchmark.elementNum) next = 0;
+      return next;
+    }
+  }
+
+  @Benchmark
+  public Owner ownerGetById(Ids ids) {
+    return fixture.ownerDao.getById(ids.nextOwner(this));
+  }
+
+  @Benchmark
+  public Pet petGetById(Ids ids) {
+    // every owner has two pets, ids 2 * owner and 2 * owner + 1
+    return fixture.petDao.getById(ids.nextOwner(this) * 2);
+  }
+
+  @Benchmark
+  public Owner ownerLoadById(Ids ids) {
+    return fixture.ownerDao.loadById(ids.nextOwner(this));
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package org.springframework.samples.petclinic.dao.nodb;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+
+import org.springframework.samples.petclinic.Owner;
+import org.springframework.samples.petclinic.Pet;
+import org.springframework.samples.petclinic.Visit;
+
+import com.terracotta.cache.EhCacheWrapper;
+
+import java.util.List;
+
+/**
+ * Wires the nodb DAOs on a local, non-clustered CacheManager the same way application-nodb-common.xml does, without
+ * Spring or a Terracotta server. Lives in the DAO package so benchmarks can reach the protected adapter and key
+ * generation.
+ */
+public class NodbFixture {
+
+  public static final String[] CACHE_NAMES = { "owners", "pets", "visits", "petTypes", "ownerPets", "petVisits" };
+
+  private final CacheManager   cacheManager;
+  final NodbOwnerDaoImpl       ownerDao = new NodbOwnerDaoImpl();
+  final NodbPetDaoImpl         petDao   = new NodbPetDaoImpl();
+  final NodbVisitDaoImpl       visitDao = new NodbVisitDaoImpl();
+
+  public NodbFixture(int maxEntries, int keyPaddingInBytes, int valuePaddingInBytes) {
+    this.cacheManager = createCacheManager(maxEntries, CACHE_NAMES);
+
+    configure(ownerDao, keyPaddingInBytes, valuePaddingInBytes);
+    ownerDao.setCache(new EhCacheWrapper<String, Owner>("owners", cacheManager));
+
+    configure(petDao, keyPaddingInBytes, valuePaddingInBytes);
+    petDao.setCache(new EhCacheWrapper<String, Pet>("pets", cacheManager));
+    petDao.setOwnerPetCache(new EhCacheWrapper<Integer, List<Integer>>("ownerPets", cacheManager));
+
+    configure(visitDao, keyPaddingInBytes, valuePaddingInBytes);
+    visitDao.setCache(new EhCacheWrapper<String, Visit>("visits", cacheManager));
+    visitDao.setPetVisitCache(new EhCacheWrapper<Integer, List<Integer>>("petVisits", cacheManager));
+  }
+
+  private static void configure(BaseNoDBDAOImpl<?, ?> dao, int keyPaddingInBytes, int valuePaddingInBytes) {
+    dao.setKeyPaddingInBytes(keyPaddingInBytes);
+    dao.setValuePaddingInBytes(valuePaddingInBytes);
+  }
+
+  /**
+   * @return a local CacheManager holding on-heap caches with the given names
+   */
+  public static CacheManager createCacheManager(int maxEntries, String... cacheNames) {
+    Configuration configuration = new Configuration();
+    configuration.setName("ehcacheperf-benchmarks-" + System.identityHashCode(configuration));
+    configuration.setUpdateCheck(false);
+    CacheManager manager = new CacheManager(configuration);
+    for (String name : cacheNames) {
+      manager.addCache(new Cache(new CacheConfiguration(name, maxEntries)));
+    }
+    return manager;
+  }
+
+  public NodbOwnerDaoImpl getOwnerDao() {
+    return ownerDao;
+  }
+
+  public NodbPetDaoImpl getPetDao() {
+    return petDao;
+  }
+
+  public NodbVisitDaoImpl getVisitDao() {
+    return visitDao;
+  }
+
+  public void shutdown() {
+    cacheManager.shutdown();
+  }
+}
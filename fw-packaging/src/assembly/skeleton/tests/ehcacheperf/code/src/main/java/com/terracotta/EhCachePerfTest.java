@@ -9,21 +9,41 @@ import org.terracotta.api.TerracottaClient;
 import org.terracotta.coordination.Barrier;
 import org.terracotta.util.ClusteredAtomicLong;
 
+import com.terracotta.cache.AbstractCacheWrapper;
 import com.terracotta.cache.CacheStatsProcessor;
 import com.terracotta.ehcache.perf.Configuration;
 import com.terracotta.ehcache.perf.HotSetConfiguration;
 import com.terracotta.ehcache.perf.test.AbstractTest;
+import com.terracotta.ehcache.perf.trace.TraceRecorder;
 import com.terracotta.ehcache.search.SearchExecutor;
+import com.terracotta.util.IntendedStartSchedule;
+import com.terracotta.util.LatencyRecorder;
+import com.terracotta.util.LiveMetricsWriter;
+import com.terracotta.util.LoadProfile;
+import com.terracotta.util.NodeResults;
+import com.terracotta.util.OperationStats;
+import com.terracotta.util.RandomStreams;
+import com.terracotta.util.SaturationSearch;
+import com.terracotta.util.SessionModel;
 import com.terracotta.util.SpringFactory;
 import com.terracotta.util.Stats;
+import com.terracotta.util.TimeSeriesWriter;
 import com.terracotta.util.Util;
+import com.terracotta.util.VirtualUsers;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class EhCachePerfTest {
@@ -31,13 +51,17 @@ public class EhCachePerfTest {
   // Needed for Destructive tests L1 restarts. Restarted L1s should skip barriers all the time.
   private static final boolean      skipBarrier = Boolean.parseBoolean(System.getProperty("skip.barrier", "false"));
 
-  private static final int          precision = 100;
   private static final Logger       log           = Logger.getLogger(EhCachePerfTest.class);
   private static final String       BARRIER_ROOT  = "BARRIER_ROOT";
+  // the steps of the saturation search are synchronized apart from the phases of the test
+  private static final String       SEARCH_BARRIER = "ehcacheperf-saturation";
+  // inactive users of a load profile check every IDLE_NANOS whether they became active
+  private static final long         IDLE_NANOS    = TimeUnit.MILLISECONDS.toNanos(100);
 
   private final Configuration       configuration;
   private final int                 nodeId;
   private final Barrier             barrier;
+  private final Barrier             searchBarrier;
   private final AbstractTest        test;
   private List<Thread>              threads;
   private long                      testStartTime;
@@ -53,11 +77,40 @@ public class EhCachePerfTest {
 
   private long                      bulkLoadCompleteTime;
 
-  private volatile ClusteredAtomicLong clusterReadLatency, clusterWriteLatency, clusterTotalLatency, clusterWarmupLatency;
   private volatile ClusteredAtomicLong clusterReads, clusterWrites, clusterCacheWarmup;
+  // serialized NodeResults of every node, merged by node 0 for the final report
+  private final Map<String, byte[]>    clusterResults;
+  private Stats                        warmupStat = new Stats();
 
   private final CacheStatsProcessor processor = CacheStatsProcessor.getInstance();
 
+  // open-loop mode: test iteration latency measured from the intended start time
+  private final LatencyRecorder     responseTimeRecorder = new LatencyRecorder(true);
+  private final Stats               responseTimeStat     = new Stats();
+
+  private TimeSeriesWriter          timeSeries;
+  // interval metrics relayed to the framework master, when run by the framework
+  private LiveMetricsWriter         liveMetrics;
+
+  // think times of the closed-loop users
+  private SessionModel              sessionModel;
+
+  // load level over the test, null when flat
+  private LoadProfile               loadProfile;
+  private volatile int              stepIndex;
+  private long                      stepStartTime, stepEnd, stepStartCount, stepStartErrors;
+  private final Stats               stepReadStat         = new Stats();
+  private final Stats               stepWriteStat        = new Stats();
+  private final Stats               stepResponseTimeStat = new Stats();
+
+  // saturation search mode: each step measures one rate, after settling for settleMillis
+  private SaturationSearch          search;
+  private volatile SearchStep       searchStep;
+  private boolean                   settling;
+  // released by the search thread once the results of the last step are merged, null when no merge is pending
+  private CountDownLatch            searchMerged;
+  private Thread                    searchThread;
+
   private final TcEhCacheManagerFactoryBean ehcacheBean;
 
   public EhCachePerfTest(final Configuration configuration) {
@@ -74,13 +127,11 @@ public class EhCachePerfTest {
     this.configuration = configuration;
     ClusteringToolkit toolkit = new TerracottaClient(configuration.getExpressTerracottaUrl()).getToolkit();
     this.barrier = toolkit.getBarrier(BARRIER_ROOT, configuration.getNodesNum());
+    this.searchBarrier = toolkit.getBarrier(SEARCH_BARRIER, configuration.getNodesNum());
     clusterReads = toolkit.getAtomicLong("ehcacheperf-reads");
     clusterWrites = toolkit.getAtomicLong("ehcacheperf-writes");
     clusterCacheWarmup = toolkit.getAtomicLong("ehcacheperf-warmup");
-    clusterWarmupLatency = toolkit.getAtomicLong("ehcacheperf-warmupLatency");
-    clusterReadLatency = toolkit.getAtomicLong("ehcacheperf-readLatency");
-    clusterWriteLatency = toolkit.getAtomicLong("ehcacheperf-writeLatency");
-    clusterTotalLatency = toolkit.getAtomicLong("ehcacheperf-totalLatency");
+    clusterResults = toolkit.getMap("ehcacheperf-nodeResults");
 
     // Counter for increasing keys over time
     ClusteredAtomicLong atomicLong = toolkit.getAtomicLong("ehcacheperf-currKeyCount");
@@ -121,7 +172,11 @@ public class EhCachePerfTest {
       setBulkLoad(configuration.isBulkLoadEnabled());
 
       long start = now();
-      test.doL2WarmUp();
+      Stats restoreStats = new Stats();
+      long restored = test.restoreWarmupSnapshot(restoreStats);
+      if (restored < 0) {
+        test.doL2WarmUp();
+      }
       long end = now();
 
       test.flushAllPutsToServer();
@@ -133,13 +188,24 @@ public class EhCachePerfTest {
       time = (time == 0) ? 1 : time;
       realL2WarmupTime = (time == 0) ? 1 : realL2WarmupTime;
       test.processCacheStats();
-      long warmup = processor.getWrite();
-      Stats warmupStats = processor.getWriteStat();
-      log.info(String.format("Cache Warmup: %d puts, %d seconds, %.1f puts/sec", warmup, time, warmup * 1.0 / time));
+      long warmup;
+      Stats warmupStats;
+      if (restored < 0) {
+        warmup = processor.getWrite();
+        // per cache call, a batched warmup records one sample per putAll
+        warmupStats = new Stats(processor.getWriteStat()).add(processor.getBatchWriteStat());
+        log.info(String.format("Cache Warmup: %d puts, %d seconds, %.1f puts/sec", warmup, time, warmup * 1.0 / time));
+      } else {
+        // the restore puts straight in the Ehcaches, bypassing the cache wrappers
+        warmup = restored;
+        warmupStats = restoreStats;
+        log.info(String.format("Cache Warmup: %d entries restored from snapshot, %d seconds, %.1f entries/sec", warmup,
+                               time, warmup * 1.0 / time));
+      }
       log.info(String.format("Warmup time ensuring all entries have been sent to server: %d seconds", realL2WarmupTime));
       log.info("Cache Warmup Latency: " + warmupStats.toString());
       clusterCacheWarmup.addAndGet(warmup / time);
-      clusterWarmupLatency.addAndGet((long)(warmupStats.getAverage() * precision));
+      warmupStat = new Stats(warmupStats);
       test.resetCacheStats();
 
       log.info("Waiting for all nodes to complete L2 warmup.");
@@ -148,6 +214,10 @@ public class EhCachePerfTest {
       waitUntilBulkLoadComplete();
       bulkLoadCompleteTime = now() - start;
       await();
+      if (restored < 0) {
+        // all the nodes are warmed, the test phase starts after the next barrier
+        test.writeWarmupSnapshot();
+      }
       if (configuration.isL1Enabled()) {
         log.info("Starting L1 Warmup phase.");
         setBulkLoad(configuration.isBulkLoadEnabled());
@@ -156,7 +226,7 @@ public class EhCachePerfTest {
 
         test.processCacheStats();
         warmup = processor.getWrite();
-        warmupStats = processor.getWriteStat();
+        warmupStats = new Stats(processor.getWriteStat()).add(processor.getBatchWriteStat());
         log.info(String.format("Cache L1 Warmup: %d puts, %d seconds, %.1f puts/sec", warmup, time, warmup * 1.0 / time));
         log.info("Cache L1 Warmup Latency: " + warmupStats.toString());
         test.resetCacheStats();
@@ -178,27 +248,125 @@ public class EhCachePerfTest {
       exec.run();
     }
 
+    if (configuration.isTimeSeriesEnabled()) {
+      timeSeries = new TimeSeriesWriter(new File(configuration.getTimeSeriesDir(), "ehcacheperf-node" + nodeId
+                                                                                    + "-timeseries.csv"), nodeId);
+    }
+    liveMetrics = LiveMetricsWriter.fromSystemProperty(nodeId, configuration.getReportInterval());
     testStartTime = now();
     lastReportTime = now();
     estimatedTestEndTime = testStartTime + (configuration.getTestDuration() * 1000);
 
-    this.threads = new ArrayList<Thread>(configuration.getThreadNum());
-    for (int i = 0; i < configuration.getThreadNum(); i++) {
+    final int threadNum = configuration.getThreadNum();
+    final double threadOpsPerSec = (double) configuration.getTargetOpsPerSec() / threadNum;
+    if (configuration.isOpenLoop()) {
+      log.info(String.format("Open-loop mode: %d iterations/sec on this node, %.1f per thread.",
+                             configuration.getTargetOpsPerSec(), threadOpsPerSec));
+    } else if (configuration.isVirtualUsers()) {
+      log.info(String.format("Virtual users mode: %d users on %d carrier threads.", configuration.getVirtualUsers(),
+                             configuration.getCarrierThreads()));
+    } else if (configuration.isPipelined()) {
+      log.info(String.format("Pipelined mode: %d iterations in flight per thread, at most %d async requests on this node.",
+                             configuration.getAsyncInFlight(), AbstractCacheWrapper.maxInFlight));
+    }
+    this.threads = new ArrayList<Thread>(threadNum);
+    // the session streams are derived from the seed of the node like the test streams, but never equal to them
+    sessionModel = new SessionModel(configuration.getThinkTime(), configuration.getSessionLength(),
+                                    configuration.getSessionPause(),
+                                    RandomStreams.streamSeed(~configuration.getRandomSeed(), nodeId));
+    if (isSessionModelActive()) {
+      log.info("Session model: " + sessionModel);
+    }
+    if (configuration.isSaturationSearch()) {
+      search = new SaturationSearch(configuration.getSaturationMinOpsPerSec(), configuration.getTargetOpsPerSec(),
+                                    configuration.getSaturationSlaP99Millis(),
+                                    configuration.getSaturationSlaMaxErrors(),
+                                    configuration.getSaturationResolution(), configuration.getSaturationMaxSteps());
+      log.info(String.format("Saturation search: %d - %d iterations/sec per node, %d s steps, SLA p99 <= %.1f ms "
+                             + "and errors <= %d. Test duration and load profile ignored.",
+                             configuration.getSaturationMinOpsPerSec(), configuration.getTargetOpsPerSec(),
+                             configuration.getSaturationStepSecs(), configuration.getSaturationSlaP99Millis(),
+                             configuration.getSaturationSlaMaxErrors()));
+      // the search ends the test
+      estimatedTestEndTime = Long.MAX_VALUE;
+      stepStartTime = testStartTime;
+      searchStep = new SearchStep(search.getRate());
+      startSearchStep(0);
+    }
+    loadProfile = (search != null) ? null : LoadProfile.parse(configuration.getLoadProfile(),
+                                                                configuration.getTestDuration() * 1000);
+    if (loadProfile != null && !configuration.isOpenLoop() && !configuration.isPipelined()
+        && loadProfile.getMaxLevel() > 1) {
+      // isUserActive cannot activate more users than there are
+      throw new IllegalArgumentException("Load profile " + loadProfile
+                                         + " goes above 1, which needs the open-loop mode: closed-loop users are capped"
+                                         + " at the number of test threads or virtual users");
+    }
+    if (loadProfile != null) {
+      log.info("Load profile: " + loadProfile + ", driving the "
+               + (configuration.isOpenLoop() ? "open-loop rate" : "number of active users")
+               + (configuration.isPipelined() ? " (ignored in pipelined mode)" : ""));
+      stepStartTime = testStartTime;
+      stepEnd = loadProfile.nextStepStart(0);
+    }
+    if (configuration.isVirtualUsers()) {
+      // the users run on their own carrier threads, this one just waits for them
+      threads.add(new Thread("PerfVirtualUsers") {
+        @Override
+        public void run() {
+          runVirtualUsers();
+        }
+      });
+    }
+    int appThreads = configuration.isVirtualUsers() ? 0 : threadNum;
+    for (int i = 0; i < appThreads; i++) {
+      final int threadIndex = i;
       threads.add(new Thread("PerfAppThread-" + i) {
         @Override
         public void run() {
+          test.bindRandomStream(threadIndex);
           test.beforeTestForEachAppThread();
+          if (configuration.isPipelined()) {
+            runPipelined(configuration.getAsyncInFlight());
+            test.afterTestForEachAppThread();
+            return;
+          }
+          IntendedStartSchedule schedule = null;
+          if (configuration.isOpenLoop()) {
+            // spread the threads over one interval so they don't all fire at once
+            long offset = (long) (1000000000L / threadOpsPerSec) * threadIndex / threadNum;
+            schedule = new IntendedStartSchedule(threadOpsPerSec, offset);
+          }
+          SessionModel.User user = isSessionModelActive() ? sessionModel.newUser(threadIndex) : null;
+          SearchStep step = searchStep;
           while (isTestRunning()) {
-            try {
-              test.doTestBody();
+            long intendedStart = 0;
+            if (schedule != null) {
+              if (search != null && step != searchStep) {
+                // start each rate of the search afresh, without the backlog of the previous one
+                step = searchStep;
+                schedule.restart();
+              }
+              double level = (step != null) ? step.level : loadLevel();
+              if (level <= 0) {
+                pause(IDLE_NANOS);
+                schedule.restart();
+                continue;
+              }
+              if (!schedule.awaitDue(level, IDLE_NANOS)) {
+                // a low level can put the next start far ahead, check the level again every IDLE_NANOS
+                continue;
+              }
+              intendedStart = schedule.awaitNext(level);
+            } else if (!isUserActive(threadIndex, threadNum)) {
+              pause(IDLE_NANOS);
+              continue;
             }
-            catch (NonStopCacheException ne){
-              nonstopCacheExceptionCount.incrementAndGet();
-            }
-            catch (Exception e) {
-              log.error("error in test", e);
-              testHasErrors = true;
-              System.exit(-1);
+            runIteration();
+            if (schedule != null) {
+              responseTimeRecorder.recordNanos(System.nanoTime() - intendedStart);
+            } else if (user != null) {
+              pauseWhileRunning(user.nextPauseNanos());
             }
           }
           test.afterTestForEachAppThread();
@@ -227,17 +395,165 @@ public class EhCachePerfTest {
     }else
       log.info("Not adding new owners.....");
 
+    if (configuration.isTraceRecordEnabled()) {
+      TraceRecorder.getInstance().start(new File(configuration.getTraceDir()), nodeId);
+    }
     for (Thread thread : threads) {
       thread.start();
     }
     startReporterThread();
     waitForTestThreads();
+    TraceRecorder.getInstance().stop();
     waitForReporterThread();
+    waitForSearchThread();
     doFinalReport();
   }
 
+  private void runIteration() {
+    try {
+      test.doTestBody();
+    }
+    catch (NonStopCacheException ne){
+      nonstopCacheExceptionCount.incrementAndGet();
+    }
+    catch (Exception e) {
+      log.error("error in test", e);
+      testHasErrors = true;
+      System.exit(-1);
+    }
+  }
+
+  /**
+   * @return true when the closed-loop users pause between iterations, the open-loop and pipelined modes never do
+   */
+  private boolean isSessionModelActive() {
+    return sessionModel != null && sessionModel.isEnabled() && !configuration.isOpenLoop()
+           && !configuration.isPipelined();
+  }
+
+  /**
+   * @return current level of the load profile, 1 without profile
+   */
+  private double loadLevel() {
+    if (search != null) return searchStep.level;
+    return (loadProfile == null) ? 1.0 : loadProfile.level(now() - testStartTime);
+  }
+
+  /**
+   * @return true when the test is cut in steps reported separately, by a load profile or the saturation search
+   */
+  private boolean hasSteps() {
+    return loadProfile != null || (search != null && !search.isDone());
+  }
+
+  /**
+   * @return true when the given closed-loop user is among the ones the load profile currently keeps active
+   */
+  private boolean isUserActive(int user, int users) {
+    return loadProfile == null || user < Math.round(loadLevel() * users);
+  }
+
+  private void pause(long nanos) {
+    if (nanos <= 0) return;
+    try {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Same as {@link #pause(long)} in slices of at most IDLE_NANOS, returning early once the test is over.
+   */
+  private void pauseWhileRunning(long nanos) {
+    long end = System.nanoTime() + nanos;
+    long remaining = nanos;
+    while (remaining > 0 && isTestRunning()) {
+      pause(Math.min(remaining, IDLE_NANOS));
+      remaining = end - System.nanoTime();
+    }
+  }
+
+  /**
+   * Runs virtualUsers closed-loop users on carrierThreads threads, each user pausing as drawn from the session model
+   * between two iterations. The per-thread test hooks run once per carrier thread.
+   */
+  private void runVirtualUsers() {
+    final SessionModel.User[] users = new SessionModel.User[configuration.getVirtualUsers()];
+    for (int i = 0; i < users.length; i++) {
+      users[i] = sessionModel.newUser(i);
+    }
+    new VirtualUsers("PerfVirtualUser", users.length, configuration.getCarrierThreads(),
+                     sessionModel.getMeanThinkTimeNanos()) {
+      @Override
+      protected boolean isRunning() {
+        return isTestRunning();
+      }
+
+      @Override
+      protected long iterate(int user) {
+        if (!isUserActive(user, users.length)) return IDLE_NANOS;
+        runIteration();
+        return users[user].nextPauseNanos();
+      }
+
+      @Override
+      protected void carrierStarted(int carrier) {
+        test.bindRandomStream(carrier);
+        test.beforeTestForEachAppThread();
+      }
+
+      @Override
+      protected void carrierStopped() {
+        test.afterTestForEachAppThread();
+      }
+    }.run();
+  }
+
+  /**
+   * Keeps inFlight test iterations outstanding, waiting for the oldest one to complete before starting a new one.
+   */
+  private void runPipelined(final int inFlight) {
+    LinkedList<Future<?>> window = new LinkedList<Future<?>>();
+    while (isTestRunning()) {
+      if (window.size() >= inFlight) {
+        awaitIteration(window.removeFirst());
+      }
+      try {
+        window.addLast(test.doTestBodyAsync());
+      } catch (NonStopCacheException ne) {
+        nonstopCacheExceptionCount.incrementAndGet();
+      } catch (Exception e) {
+        log.error("error in test", e);
+        testHasErrors = true;
+        System.exit(-1);
+      }
+    }
+    while (!window.isEmpty()) {
+      awaitIteration(window.removeFirst());
+    }
+  }
+
+  private void awaitIteration(final Future<?> iteration) {
+    try {
+      iteration.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof NonStopCacheException) {
+        nonstopCacheExceptionCount.incrementAndGet();
+      } else {
+        log.error("error in test", e.getCause());
+        testHasErrors = true;
+        System.exit(-1);
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   private boolean isTestRunning(){
-    return (!testComplete && now() < estimatedTestEndTime) || configuration.getTestDuration() < 0;
+    // the saturation search ignores the test duration, it ends the test once it is over
+    return (!testComplete && now() < estimatedTestEndTime) || (search == null && configuration.getTestDuration() < 0);
   }
 
   private void waitForTestThreads() {
@@ -267,13 +583,33 @@ public class EhCachePerfTest {
     }
   }
 
+  private void waitForSearchThread() {
+    if (searchThread == null) return;
+    try {
+      searchThread.join();
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   private void startReporterThread() {
     this.reporterThread = new Thread() {
       @Override
       public void run() {
         while (isTestRunning()) {
+          // also report at the end of each step of the load profile
+          long wakeUp = lastReportTime + configuration.getReportInterval() * 1000;
+          CountDownLatch merged = searchMerged;
+          if (hasSteps() && merged == null) {
+            wakeUp = Math.min(wakeUp, testStartTime + stepEnd);
+          }
           try {
-            sleep(configuration.getReportInterval() * 1000);
+            if (merged != null) {
+              // the next search step starts as soon as its rate is published
+              merged.await(Math.max(0, wakeUp - now()), TimeUnit.MILLISECONDS);
+            } else {
+              sleep(Math.max(0, wakeUp - now()));
+            }
           } catch (InterruptedException e) {
             // ignored
           }
@@ -295,7 +631,7 @@ public class EhCachePerfTest {
     if (period) {
       log.info("");
       log.info("------------------ Cache Stats -----------------------");
-      if (configuration.getTestDuration() < 0) {
+      if (configuration.getTestDuration() < 0 || search != null) {
         log.info("Test running for " + Util.formatTimeInSecondsToWords((now - testStartTime) / 1000));
       } else {
         log.info("Remaining Time: " + Util.formatTimeInSecondsToWords((estimatedTestEndTime - now) / 1000));
@@ -329,6 +665,15 @@ public class EhCachePerfTest {
       log.info(String.format("Cache: Period iterations/sec =  %.1f, completed = %d ", 1000.0 * periodTotalCount
                              / (now - lastReportTime),
                              periodTotalCount));
+      log.info("Cache: Period Read latency: " + processor.getPeriodReadStat());
+      log.info("Cache: Period Write latency: " + processor.getPeriodWriteStat());
+      logIfRecorded("Cache: Period Batch Read latency: ", processor.getPeriodBatchReadStat());
+      logIfRecorded("Cache: Period Batch Write latency: ", processor.getPeriodBatchWriteStat());
+      for (Map.Entry<String, Stats> entry : OperationStats.getInstance().getIntervalStats().entrySet()) {
+        if (entry.getValue().getTxnCount() > 0) {
+          log.info("Clinic: Period " + entry.getKey() + " latency: " + entry.getValue());
+        }
+      }
 
       readCountAtLastReport = readCount;
       writeCountAtLastReport = writeCount;
@@ -345,6 +690,28 @@ public class EhCachePerfTest {
                            total));
     log.info("Cache: Cumulative Read latency: " + readStat);
     log.info("Cache: Cumulative Write latency: " + writeStat);
+    logIfRecorded("Cache: Cumulative Batch Read latency: ", processor.getBatchReadStat());
+    logIfRecorded("Cache: Cumulative Batch Write latency: ", processor.getBatchWriteStat());
+
+    Stats responseTime = null;
+    if (configuration.isOpenLoop()) {
+      responseTime = responseTimeRecorder.getIntervalStats();
+      responseTimeStat.add(responseTime);
+      if (period) {
+        log.info("Test: Period Response time (from intended start): " + responseTime);
+      }
+      log.info("Test: Cumulative Response time (from intended start): " + responseTimeStat);
+    }
+    if (isSessionModelActive()) {
+      log.info("Test: Cumulative sessions completed = " + sessionModel.getSessions());
+    }
+    writeTimeSeries(now, responseTime);
+    if (period) {
+      writeLiveMetrics(now, responseTime);
+    }
+    if (hasSteps()) {
+      doStepReport(now, total, responseTime, !period);
+    }
 
     processor.reset();
     if (testHasErrors) {
@@ -353,6 +720,209 @@ public class EhCachePerfTest {
     lastReportTime = now;
   }
 
+  /**
+   * Adds the period stats to the ones of the current step of the load profile, and reports the step once it is over.
+   */
+  private void doStepReport(long now, long total, Stats responseTime, boolean last) {
+    stepReadStat.add(processor.getPeriodReadStat());
+    stepWriteStat.add(processor.getPeriodWriteStat());
+    if (responseTime != null) {
+      stepResponseTimeStat.add(responseTime);
+    }
+    long elapsed = now - testStartTime;
+    if (searchMerged != null) {
+      // what ran at the previous rate while the nodes merged their results belongs to no step
+      resetStep(now, total);
+      if (searchMerged.getCount() > 0) return;
+      searchMerged = null;
+      startSearchStep(elapsed);
+      return;
+    }
+    if (!last && elapsed < stepEnd) return;
+
+    if (settling) {
+      // drop what was recorded while the cluster adapted to the new rate
+      resetStep(now, total);
+      settling = false;
+      stepEnd = elapsed + configuration.getSaturationStepSecs() * 1000L;
+      return;
+    }
+
+    long stepStart = stepStartTime - testStartTime;
+    long completed = total - stepStartCount;
+    String level = (search != null) ? String.format("%.1f iterations/sec", searchStep.rate)
+        : String.format("level %.2f", loadProfile.level((stepStart + elapsed) / 2));
+    log.info(String.format("Step %d [%d - %d s, %s]: iterations/sec = %.1f, completed = %d", stepIndex,
+                           stepStart / 1000, elapsed / 1000, level,
+                           1000.0 * completed / Math.max(1, now - stepStartTime), completed));
+    log.info("Step " + stepIndex + " Read latency: " + stepReadStat);
+    log.info("Step " + stepIndex + " Write latency: " + stepWriteStat);
+    if (configuration.isOpenLoop()) {
+      log.info("Step " + stepIndex + " Response time (from intended start): " + stepResponseTimeStat);
+    }
+    if (search != null && !last) {
+      startSearchThread(now - stepStartTime);
+    }
+    resetStep(now, total);
+    stepIndex++;
+    if (search != null) {
+      // started by the next report once the search thread published its rate
+      stepEnd = Long.MAX_VALUE;
+    } else {
+      stepEnd = loadProfile.nextStepStart(elapsed);
+    }
+  }
+
+  private void resetStep(long now, long total) {
+    stepReadStat.reset();
+    stepWriteStat.reset();
+    stepResponseTimeStat.reset();
+    stepStartTime = now;
+    stepStartCount = total;
+    stepStartErrors = nonstopCacheExceptionCount.get();
+  }
+
+  private void startSearchStep(long elapsed) {
+    settling = configuration.getSaturationSettleSecs() > 0;
+    stepEnd = elapsed + 1000L * (settling ? configuration.getSaturationSettleSecs()
+        : configuration.getSaturationStepSecs());
+  }
+
+  /**
+   * Hands the results of the step over to a thread of its own, so that the reporter thread does not wait on the
+   * cluster barrier for the slowest node.
+   */
+  private void startSearchThread(final long stepMillis) {
+    final int step = stepIndex;
+    long errors = nonstopCacheExceptionCount.get() - stepStartErrors;
+    final byte[] results = new NodeResults(new Stats(), stepReadStat, stepWriteStat, stepResponseTimeStat, errors)
+        .toBytes();
+    final CountDownLatch merged = new CountDownLatch(1);
+    searchMerged = merged;
+    searchThread = new Thread("PerfSaturationSearch-" + step) {
+      @Override
+      public void run() {
+        try {
+          recordSearchStep(step, stepMillis, results);
+        } finally {
+          merged.countDown();
+        }
+      }
+    };
+    searchThread.start();
+  }
+
+  /**
+   * Merges the results of the step published by all the nodes and moves the search on, ending the test once it is
+   * over. Every node merges the same results, so they all pick the same next rate.
+   */
+  private void recordSearchStep(int stepIndex, long stepMillis, byte[] results) {
+    String prefix = "saturation-" + stepIndex + "-";
+    clusterResults.put(prefix + nodeKey(nodeId), results);
+    await(searchBarrier);
+    NodeResults cluster = new NodeResults();
+    for (int id = 0; id < configuration.getNodesNum(); id++) {
+      byte[] data = clusterResults.get(prefix + nodeKey(id));
+      if (data == null) {
+        log.warn("No saturation search results published by node " + id + " for step " + stepIndex);
+        continue;
+      }
+      cluster.add(NodeResults.fromBytes(data));
+    }
+    // every node merged the results of the step, they are not needed anymore
+    await(searchBarrier);
+    clusterResults.remove(prefix + nodeKey(nodeId));
+    Stats responseTime = cluster.getResponseTimeStat();
+    double rate = search.getRate();
+    search.record(1000.0 * responseTime.getTxnCount() / Math.max(1, stepMillis), responseTime, cluster.getErrors(),
+                  configuration.getNodesNum());
+    SaturationSearch.Step step = search.getSteps().get(search.getSteps().size() - 1);
+    log.info(String.format("Saturation search: %.1f iterations/sec per node %s the SLA (p99 %.3f ms, %d errors)", rate, step.isWithinSla() ? "meets" : "misses", step.getP99(), step.getErrors()));
+    if (search.isDone()) {
+      completeTest();
+    } else {
+      log.info(String.format("Saturation search: next rate %.1f iterations/sec per node", search.getRate()));
+      // the rate and the step it belongs to are seen together by the app threads
+      searchStep = new SearchStep(search.getRate());
+    }
+  }
+
+  private void logSaturationSearch() {
+    log.info("------- Saturation Search -------- ");
+    log.info("Throughput/latency curve (cluster-wide):\n" + search.formatCurve());
+    if (search.getSaturationRate() == 0) {
+      log.info("SLA missed at the lowest rate, " + configuration.getSaturationMinOpsPerSec()
+               + " iterations/sec per node");
+    } else if (search.getSaturationRate() >= configuration.getTargetOpsPerSec()) {
+      log.info("SLA met at the highest rate, the saturation point is above " + configuration.getTargetOpsPerSec()
+               + " iterations/sec per node");
+    } else {
+      log.info(String.format("Saturation point: %.1f iterations/sec per node, %.1f for the cluster",
+                             search.getSaturationRate(), search.getSaturationRate() * configuration.getNodesNum()));
+    }
+    if (nodeId == 0) {
+      File file = new File(configuration.getTimeSeriesDir(), "ehcacheperf-saturation.csv");
+      try {
+        search.writeCurve(file);
+        log.info("Saturation curve written to " + file.getAbsolutePath());
+      } catch (IOException e) {
+        log.warn("Cannot write the saturation curve to " + file, e);
+      }
+    }
+  }
+
+  private void writeTimeSeries(long now, Stats responseTime) {
+    if (timeSeries == null) return;
+    long elapsed = now - testStartTime;
+    long interval = now - lastReportTime;
+    for (AbstractCacheWrapper wrapper : processor.getCacheWrappers()) {
+      timeSeries.write(now, elapsed, interval, wrapper.getName(), "read", wrapper.getIntervalReadStats());
+      timeSeries.write(now, elapsed, interval, wrapper.getName(), "write", wrapper.getIntervalWriteStats());
+      writeTimeSeriesIfRecorded(now, elapsed, interval, wrapper.getName(), "batchRead",
+                                wrapper.getIntervalBatchReadStats());
+      writeTimeSeriesIfRecorded(now, elapsed, interval, wrapper.getName(), "batchWrite",
+                                wrapper.getIntervalBatchWriteStats());
+    }
+    timeSeries.write(now, elapsed, interval, "all", "read", processor.getPeriodReadStat());
+    timeSeries.write(now, elapsed, interval, "all", "write", processor.getPeriodWriteStat());
+    writeTimeSeriesIfRecorded(now, elapsed, interval, "all", "batchRead", processor.getPeriodBatchReadStat());
+    writeTimeSeriesIfRecorded(now, elapsed, interval, "all", "batchWrite", processor.getPeriodBatchWriteStat());
+    for (Map.Entry<String, Stats> entry : OperationStats.getInstance().getIntervalStats().entrySet()) {
+      timeSeries.write(now, elapsed, interval, "clinic", entry.getKey(), entry.getValue());
+    }
+    if (responseTime != null) {
+      timeSeries.write(now, elapsed, interval, "test", "responseTime", responseTime);
+    }
+    timeSeries.flush();
+  }
+
+  /**
+   * Batch rows are only written by the tests using batches.
+   */
+  private void writeTimeSeriesIfRecorded(long now, long elapsed, long interval, String cache, String op, Stats stats) {
+    if (stats.getTxnCount() > 0) {
+      timeSeries.write(now, elapsed, interval, cache, op, stats);
+    }
+  }
+
+  private static void logIfRecorded(String label, Stats stats) {
+    if (stats.getTxnCount() > 0) {
+      log.info(label + stats);
+    }
+  }
+
+  /**
+   * Latencies are the response times in open loop, the cache iteration latencies otherwise.
+   */
+  private void writeLiveMetrics(long now, Stats responseTime) {
+    if (liveMetrics == null) return;
+    Stats stats = responseTime;
+    if (stats == null) {
+      stats = new Stats(processor.getPeriodReadStat()).add(processor.getPeriodWriteStat());
+    }
+    liveMetrics.write(now, now - testStartTime, now - lastReportTime, stats, nonstopCacheExceptionCount.get());
+  }
+
   public static void main(String[] args) throws Exception {
     log.info("EhCache Performance Test Application");
     if (args.length != 1) {
@@ -393,16 +963,13 @@ public class EhCachePerfTest {
     test.processCacheStats();
     Stats read = processor.getReadStat();
     Stats write = processor.getWriteStat();
-    Stats total = new Stats();
-    total.add(read);
-    total.add(write);
+    Stats total = processor.getTotalStat();
 
     clusterReads.addAndGet(processor.getRead());
     clusterWrites.addAndGet(processor.getWrite());
-
-    clusterReadLatency.addAndGet((long) (read.getAverage() * precision));
-    clusterWriteLatency.addAndGet((long) (write.getAverage() * precision));
-    clusterTotalLatency.addAndGet((long) (total.getAverage() * precision));
+    clusterResults.put(nodeKey(nodeId), new NodeResults(warmupStat, read, write, processor.getBatchReadStat(),
+                                                        processor.getBatchWriteStat(), responseTimeStat,
+                                                        nonstopCacheExceptionCount.get()).toBytes());
 
     await();
 
@@ -415,26 +982,88 @@ public class EhCachePerfTest {
     log.info("Read Latency (ms): " + read);
     log.info("Write Latency (ms): " + write);
     log.info("Total Latency (ms): " + total);
+    log.info("Read Latency Percentiles (ms): " + read.getPercentiles());
+    log.info("Write Latency Percentiles (ms): " + write.getPercentiles());
+    log.info("Total Latency Percentiles (ms): " + total.getPercentiles());
+    logIfRecorded("Batch Read Latency (ms): ", processor.getBatchReadStat());
+    logIfRecorded("Batch Write Latency (ms): ", processor.getBatchWriteStat());
+    for (AbstractCacheWrapper wrapper : processor.getCacheWrappers()) {
+      log.info("Cache [" + wrapper.getName() + "] Read Latency (ms): " + wrapper.getReadStats());
+      log.info("Cache [" + wrapper.getName() + "] Write Latency (ms): " + wrapper.getWriteStats());
+      logIfRecorded("Cache [" + wrapper.getName() + "] Batch Read Latency (ms): ", wrapper.getBatchReadStats());
+      logIfRecorded("Cache [" + wrapper.getName() + "] Batch Write Latency (ms): ", wrapper.getBatchWriteStats());
+    }
+    for (Map.Entry<String, Stats> entry : OperationStats.getInstance().getCumulativeStats().entrySet()) {
+      log.info("Clinic [" + entry.getKey() + "] Latency (ms): " + entry.getValue());
+    }
+    if (configuration.isOpenLoop()) {
+      log.info(String.format("Response Time (ms, from intended start at %d iterations/sec): %s",
+                             configuration.getTargetOpsPerSec(), responseTimeStat));
+    }
     log.info("------- Cluster Cache Report -------- ");
     log.info(String.format("Read TPS: %.1f", (double) totalRead / testDuration));
     log.info(String.format("Write TPS: %.1f", (double) totalWrite / testDuration));
     log.info(String.format("Total TPS: %.1f", (double) (totalRead + totalWrite) / testDuration));
     log.info(String.format("Warmup TPS: %d", clusterCacheWarmup.get()));
-    log.info("");
-    log.info(String.format("Read Avg Latency (ms): %.2f " , (double) clusterReadLatency.get() / (configuration.getNodesNum() * precision )));
-    log.info(String.format("Write Avg Latency (ms): %.2f " , (double) clusterWriteLatency.get() / (configuration.getNodesNum() * precision )));
-    log.info(String.format("Total Avg Latency (ms): %.2f " , (double) clusterTotalLatency.get() / (configuration.getNodesNum() * precision )));
-    log.info(String.format("Warmup Avg Latency (ms): %.2f " , (double) clusterWarmupLatency.get() / (configuration.getNodesNum() * precision )));
+    if (nodeId == 0) {
+      logClusterLatencies();
+    }
+    if (search != null) {
+      logSaturationSearch();
+    }
 
     log.info("");
     log.info(String.format("Time taken for clusterCoherent (ms): %d", bulkLoadCompleteTime));
 
+    if (timeSeries != null) {
+      timeSeries.close();
+    }
+
     long exceptions = nonstopCacheExceptionCount.get();
     if (exceptions > 0){
       log.info(String.format("Node NonstopCache Exception Count: %d ", exceptions));
     }
   }
 
+  private static String nodeKey(int id) {
+    return "node-" + id;
+  }
+
+  /**
+   * Merges the histograms published by all the nodes, must be called after the final barrier.
+   */
+  private void logClusterLatencies() {
+    NodeResults cluster = new NodeResults();
+    int merged = 0;
+    for (int id = 0; id < configuration.getNodesNum(); id++) {
+      byte[] data = clusterResults.get(nodeKey(id));
+      if (data == null) {
+        log.warn("No results published by node " + id);
+        continue;
+      }
+      cluster.add(NodeResults.fromBytes(data));
+      merged++;
+    }
+    log.info("");
+    log.info(String.format("Cluster latencies merged from %d/%d nodes", merged, configuration.getNodesNum()));
+    log.info(String.format("Read Avg Latency (ms): %.2f ", cluster.getReadStat().getAverage()));
+    log.info(String.format("Write Avg Latency (ms): %.2f ", cluster.getWriteStat().getAverage()));
+    log.info(String.format("Total Avg Latency (ms): %.2f ", cluster.getTotalStat().getAverage()));
+    log.info(String.format("Warmup Avg Latency (ms): %.2f ", cluster.getWarmupStat().getAverage()));
+    log.info("Read Latency (ms): " + cluster.getReadStat());
+    log.info("Write Latency (ms): " + cluster.getWriteStat());
+    log.info("Total Latency (ms): " + cluster.getTotalStat());
+    log.info("Warmup Latency (ms): " + cluster.getWarmupStat());
+    logIfRecorded("Batch Read Latency (ms): ", cluster.getBatchReadStat());
+    logIfRecorded("Batch Write Latency (ms): ", cluster.getBatchWriteStat());
+    if (configuration.isOpenLoop()) {
+      log.info("Response Time (ms, from intended start): " + cluster.getResponseTimeStat());
+    }
+    if (cluster.getErrors() > 0) {
+      log.info("Errors: " + cluster.getErrors());
+    }
+  }
+
   private static Properties loadProperties(final String location) {
     Properties props = new Properties();
     try {
@@ -450,6 +1079,10 @@ public class EhCachePerfTest {
   }
 
   private int await(){
+    return await(barrier);
+  }
+
+  private int await(Barrier barrier){
     if (skipBarrier){
       log.warn("Skipping barriers.....");
       return configuration.getNodesNum();
@@ -469,5 +1102,19 @@ public class EhCachePerfTest {
   public long getTestElapsedTimeSeconds() {
     return (now() - testStartTime) / 1000;
   }
+
+  /**
+   * Rate of a step of the saturation search, replaced as a whole so that an app thread never runs the rate of a step
+   * on the schedule of the previous one.
+   */
+  private final class SearchStep {
+    private final double rate;
+    private final double level;
+
+    SearchStep(double rate) {
+      this.rate = rate;
+      this.level = rate / configuration.getTargetOpsPerSec();
+    }
+  }
 }
 
@@ -3,19 +3,86 @@
  */
 package com.terracotta.cache;
 
+import org.springframework.beans.factory.BeanNameAware;
 import org.springframework.samples.petclinic.CacheEntryAdapter;
 
+import com.terracotta.util.LatencyRecorder;
 import com.terracotta.util.Stats;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
-public abstract class AbstractCacheWrapper<K, V> implements CacheWrapper<K, V> {
+public abstract class AbstractCacheWrapper<K, V> implements AsyncCacheWrapper<K, V>, BeanNameAware {
 
-  private final Stats      readStats  = new Stats();
-  private final Stats      writeStats = new Stats();
+  /**
+   * When true (default) latencies are timed with System.nanoTime() and recorded in per-thread buffers, see
+   * {@link LatencyRecorder}. When false all threads share one Stats timed with System.currentTimeMillis().
+   */
+  public static boolean         perThreadRecording = true;
 
-  private final AtomicInteger readCount  = new AtomicInteger();
-  private final AtomicInteger writeCount = new AtomicInteger();
+  /**
+   * Max outstanding async requests of the node, across all caches and threads.
+   */
+  public static int             maxInFlight        = 1000;
+
+  /**
+   * Threads running the async requests of the caches without a native async client.
+   */
+  public static int             asyncThreads       = 64;
+
+  private final boolean         nanoTiming         = perThreadRecording;
+  private final LatencyRecorder readRecorder       = new LatencyRecorder(perThreadRecording);
+  private final LatencyRecorder writeRecorder      = new LatencyRecorder(perThreadRecording);
+
+  // cumulative stats, only updated by sampleStats()
+  private final Stats           readStats          = new Stats();
+  private final Stats           writeStats         = new Stats();
+  private volatile Stats        intervalReadStats  = new Stats();
+  private volatile Stats        intervalWriteStats = new Stats();
+
+  // batches are timed as one call each, see getAll(): their latency is not the one of a single key operation
+  private final LatencyRecorder batchReadRecorder       = new LatencyRecorder(perThreadRecording);
+  private final LatencyRecorder batchWriteRecorder      = new LatencyRecorder(perThreadRecording);
+  private final AtomicLong      batchReadEntries        = new AtomicLong();
+  private final AtomicLong      batchWriteEntries       = new AtomicLong();
+  private final Stats           batchReadStats          = new Stats();
+  private final Stats           batchWriteStats         = new Stats();
+  private volatile Stats        intervalBatchReadStats  = new Stats();
+  private volatile Stats        intervalBatchWriteStats = new Stats();
+  private long                  batchReads;
+  private long                  batchWrites;
+
+  private String                name               = getClass().getSimpleName();
+
+  /**
+   * The Spring bean name (ownerCache, petCache...) is used to identify the cache in the reports.
+   */
+  public void setBeanName(String beanName) {
+    this.name = beanName;
+  }
+
+  public String getName() {
+    return name;
+  }
 
   abstract protected void putInCache(K key, V value, CacheEntryAdapter<V> adapter);
 
@@ -23,8 +90,7 @@ public abstract class AbstractCacheWrapper<K, V> implements CacheWrapper<K, V> {
     long start = now();
     putInCache(key, value, adapter);
     long end = now();
-    writeCount.incrementAndGet();
-    writeStats.add(end - start);
+    writeRecorder.recordNanos(toNanos(end - start));
   }
 
   abstract V getFromCache(K key, CacheEntryAdapter<V> adapter);
@@ -33,36 +99,454 @@ public abstract class AbstractCacheWrapper<K, V> implements CacheWrapper<K, V> {
     long start = now();
     V value = getFromCache(key, adapter);
     long end = now();
-    readCount.incrementAndGet();
-    readStats.add(end - start);
+    readRecorder.recordNanos(toNanos(end - start));
     return value;
   }
 
-  private static long now() {
-    return System.currentTimeMillis();
+  abstract protected void removeFromCache(K key);
+
+  /**
+   * Removals are reported as writes.
+   */
+  public void remove(K key) {
+    long start = now();
+    removeFromCache(key);
+    long end = now();
+    writeRecorder.recordNanos(toNanos(end - start));
+  }
+
+  /**
+   * Entry by entry get, caches with a native batch get override it.
+   */
+  protected Map<K, V> getAllFromCache(Collection<K> keys, CacheEntryAdapter<V> adapter) {
+    Map<K, V> values = new HashMap<K, V>(keys.size() * 2);
+    for (K key : keys) {
+      V value = getFromCache(key, adapter);
+      if (value != null) {
+        values.put(key, value);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * A batch is recorded as one sample of the batch read latency, so that a stall shows up in its tail instead of
+   * being spread over the keys. Each key still counts as one read in the read count and throughput.
+   */
+  public Map<K, V> getAll(Collection<K> keys, CacheEntryAdapter<V> adapter) {
+    if (keys.isEmpty()) return new HashMap<K, V>();
+    long start = now();
+    Map<K, V> values = getAllFromCache(keys, adapter);
+    long end = now();
+    batchReadRecorder.recordNanos(toNanos(end - start));
+    batchReadEntries.addAndGet(keys.size());
+    return values;
+  }
+
+  /**
+   * Entry by entry put, caches with a native batch put override it.
+   */
+  protected void putAllInCache(Map<K, V> entries, CacheEntryAdapter<V> adapter) {
+    for (Map.Entry<K, V> entry : entries.entrySet()) {
+      putInCache(entry.getKey(), entry.getValue(), adapter);
+    }
+  }
+
+  public void putAll(Map<K, V> entries, CacheEntryAdapter<V> adapter) {
+    if (entries.isEmpty()) return;
+    long start = now();
+    putAllInCache(entries, adapter);
+    long end = now();
+    batchWriteRecorder.recordNanos(toNanos(end - start));
+    batchWriteEntries.addAndGet(entries.size());
+  }
+
+  /**
+   * Entry by entry remove, caches with a native batch remove override it.
+   */
+  protected void removeAllFromCache(Collection<K> keys) {
+    for (K key : keys) {
+      removeFromCache(key);
+    }
+  }
+
+  public void removeAll(Collection<K> keys) {
+    if (keys.isEmpty()) return;
+    long start = now();
+    removeAllFromCache(keys);
+    long end = now();
+    batchWriteRecorder.recordNanos(toNanos(end - start));
+    batchWriteEntries.addAndGet(keys.size());
+  }
+
+  /**
+   * Native asynchronous get, the default (null) runs {@link #getFromCache(Object, CacheEntryAdapter)} on the async
+   * executor.
+   */
+  protected Future<V> getFromCacheAsync(K key, CacheEntryAdapter<V> adapter) {
+    return null;
+  }
+
+  public Future<V> getAsync(final K key, final CacheEntryAdapter<V> adapter) {
+    Completion completion = new Completion(readRecorder);
+    boolean started = false;
+    try {
+      Future<V> future = getFromCacheAsync(key, adapter);
+      if (future != null) {
+        future = poll(future, completion);
+      } else {
+        future = submit(new Callable<V>() {
+          public V call() {
+            return getFromCache(key, adapter);
+          }
+        }, completion);
+      }
+      started = true;
+      return future;
+    } finally {
+      if (!started) completion.abort();
+    }
+  }
+
+  /**
+   * Native asynchronous put, the default (null) runs {@link #putInCache(Object, Object, CacheEntryAdapter)} on the
+   * async executor.
+   */
+  protected Future<?> putInCacheAsync(K key, V value, CacheEntryAdapter<V> adapter) {
+    return null;
+  }
+
+  public Future<?> putAsync(final K key, final V value, final CacheEntryAdapter<V> adapter) {
+    Completion completion = new Completion(writeRecorder);
+    boolean started = false;
+    try {
+      Future<?> future = putInCacheAsync(key, value, adapter);
+      if (future != null) {
+        future = poll((Future<Object>) future, completion);
+      } else {
+        future = submit(new Callable<Object>() {
+          public Object call() {
+            putInCache(key, value, adapter);
+            return null;
+          }
+        }, completion);
+      }
+      started = true;
+      return future;
+    } finally {
+      if (!started) completion.abort();
+    }
+  }
+
+  /**
+   * Native asynchronous remove, the default (null) runs {@link #removeFromCache(Object)} on the async executor.
+   */
+  protected Future<?> removeFromCacheAsync(K key) {
+    return null;
+  }
+
+  public Future<?> removeAsync(final K key) {
+    Completion completion = new Completion(writeRecorder);
+    boolean started = false;
+    try {
+      Future<?> future = removeFromCacheAsync(key);
+      if (future != null) {
+        future = poll((Future<Object>) future, completion);
+      } else {
+        future = submit(new Callable<Object>() {
+          public Object call() {
+            removeFromCache(key);
+            return null;
+          }
+        }, completion);
+      }
+      started = true;
+      return future;
+    } finally {
+      if (!started) completion.abort();
+    }
+  }
+
+  private <T> Future<T> submit(Callable<T> callable, final Completion completion) {
+    FutureTask<T> task = new FutureTask<T>(callable) {
+      @Override
+      protected void done() {
+        completion.complete();
+      }
+    };
+    AsyncResources.executor.execute(task);
+    return task;
+  }
+
+  /**
+   * Native futures have no completion callback, the poller completes them once done whether or not the caller ever
+   * looks at them.
+   */
+  private <T> Future<T> poll(Future<T> future, Completion completion) {
+    PolledFuture<T> polled = new PolledFuture<T>(future, completion);
+    AsyncResources.poller.add(polled);
+    return polled;
+  }
+
+  private long now() {
+    return nanoTiming ? System.nanoTime() : System.currentTimeMillis();
+  }
+
+  private long toNanos(long elapsed) {
+    return nanoTiming ? elapsed : elapsed * 1000000L;
+  }
+
+  /**
+   * Closes the current recording interval: the samples recorded since the previous call become the interval stats
+   * and are added to the cumulative ones.
+   */
+  public synchronized void sampleStats() {
+    Stats read = readRecorder.getIntervalStats();
+    Stats write = writeRecorder.getIntervalStats();
+    readStats.add(read);
+    writeStats.add(write);
+    intervalReadStats = read;
+    intervalWriteStats = write;
+
+    Stats batchRead = batchReadRecorder.getIntervalStats();
+    Stats batchWrite = batchWriteRecorder.getIntervalStats();
+    batchReadStats.add(batchRead);
+    batchWriteStats.add(batchWrite);
+    intervalBatchReadStats = batchRead;
+    intervalBatchWriteStats = batchWrite;
+    batchReads += batchReadEntries.getAndSet(0);
+    batchWrites += batchWriteEntries.getAndSet(0);
   }
 
+  /**
+   * @return cumulative read stats as of the last {@link #sampleStats()}
+   */
   public Stats getReadStats() {
     return readStats;
   }
 
+  /**
+   * @return cumulative write stats as of the last {@link #sampleStats()}
+   */
   public Stats getWriteStats() {
     return writeStats;
   }
 
+  public Stats getIntervalReadStats() {
+    return intervalReadStats;
+  }
+
+  public Stats getIntervalWriteStats() {
+    return intervalWriteStats;
+  }
+
+  /**
+   * @return cumulative batch read latencies, one sample per getAll, as of the last {@link #sampleStats()}
+   */
+  public Stats getBatchReadStats() {
+    return batchReadStats;
+  }
+
+  /**
+   * @return cumulative batch write latencies, one sample per putAll/removeAll, as of the last {@link #sampleStats()}
+   */
+  public Stats getBatchWriteStats() {
+    return batchWriteStats;
+  }
+
+  public Stats getIntervalBatchReadStats() {
+    return intervalBatchReadStats;
+  }
+
+  public Stats getIntervalBatchWriteStats() {
+    return intervalBatchWriteStats;
+  }
+
+  /**
+   * @return single key reads plus the keys of the batch reads
+   */
   public int getReadCount() {
-    return readCount.get();
+    return (int) (readStats.getTxnCount() + batchReads);
   }
 
+  /**
+   * @return single key writes plus the entries of the batch writes
+   */
   public int getWriteCount() {
-    return writeCount.get();
+    return (int) (writeStats.getTxnCount() + batchWrites);
+  }
+
+  /**
+   * Takes an in-flight permit when created and gives it back, recording the latency of the request, once completed.
+   * A request that could not be started gives it back through {@link #abort()} without recording anything.
+   */
+  private final class Completion {
+    private final LatencyRecorder recorder;
+    private final long            start;
+    private final AtomicBoolean   completed = new AtomicBoolean();
+
+    Completion(LatencyRecorder recorder) {
+      this.recorder = recorder;
+      AsyncResources.inFlight.acquireUninterruptibly();
+      this.start = now();
+    }
+
+    void complete() {
+      if (completed.compareAndSet(false, true)) {
+        long end = now();
+        AsyncResources.inFlight.release();
+        recorder.recordNanos(toNanos(end - start));
+      }
+    }
+
+    void abort() {
+      if (completed.compareAndSet(false, true)) {
+        AsyncResources.inFlight.release();
+      }
+    }
+  }
+
+  /**
+   * Checked by the {@link CompletionPoller} until done.
+   */
+  private interface Polled {
+    /**
+     * @return true once the request is complete
+     */
+    boolean poll();
+  }
+
+  /**
+   * Future of a native async client, without completion callback: the request is complete when the poller or the
+   * caller, whichever comes first, sees it done.
+   */
+  private final class PolledFuture<T> implements Future<T>, Polled {
+    private final Future<T>  delegate;
+    private final Completion completion;
+
+    PolledFuture(Future<T> delegate, Completion completion) {
+      this.delegate = delegate;
+      this.completion = completion;
+    }
+
+    public boolean poll() {
+      if (!delegate.isDone()) return false;
+      completion.complete();
+      return true;
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = delegate.cancel(mayInterruptIfRunning);
+      completion.complete();
+      return cancelled;
+    }
+
+    public boolean isCancelled() {
+      return delegate.isCancelled();
+    }
+
+    public boolean isDone() {
+      boolean done = delegate.isDone();
+      if (done) completion.complete();
+      return done;
+    }
+
+    public T get() throws InterruptedException, ExecutionException {
+      try {
+        return delegate.get();
+      } finally {
+        if (delegate.isDone()) completion.complete();
+      }
+    }
+
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      try {
+        return delegate.get(timeout, unit);
+      } finally {
+        if (delegate.isDone()) completion.complete();
+      }
+    }
+  }
+
+  /**
+   * Polls the pending native futures every POLL_NANOS, so their latency is recorded within that period of their
+   * completion and their in-flight permit released even if nobody looks at them (e.g. a fire and forget putAsync).
+   */
+  private static final class CompletionPoller implements Runnable {
+    private static final long          POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final BlockingQueue<Polled> added      = new LinkedBlockingQueue<Polled>();
+
+    void add(Polled polled) {
+      added.add(polled);
+    }
+
+    public void run() {
+      List<Polled> pending = new ArrayList<Polled>();
+      while (true) {
+        try {
+          if (pending.isEmpty()) {
+            pending.add(added.take());
+          }
+        } catch (InterruptedException e) {
+          return;
+        }
+        added.drainTo(pending);
+        for (Iterator<Polled> it = pending.iterator(); it.hasNext();) {
+          if (it.next().poll()) {
+            it.remove();
+          }
+        }
+        if (!pending.isEmpty()) {
+          LockSupport.parkNanos(POLL_NANOS);
+        }
+      }
+    }
+
+    static CompletionPoller start() {
+      CompletionPoller poller = new CompletionPoller();
+      Thread t = new Thread(poller, "async-cache-poller");
+      t.setDaemon(true);
+      t.start();
+      return poller;
+    }
+  }
+
+  /**
+   * Created on the first async request, so nothing is started by the tests running synchronously.
+   */
+  private static final class AsyncResources {
+    static final Semaphore        inFlight = new Semaphore(maxInFlight);
+    static final CompletionPoller poller   = CompletionPoller.start();
+    static final ExecutorService  executor = Executors.newFixedThreadPool(asyncThreads, new ThreadFactory() {
+                                             private int count = 0;
+
+                                             public synchronized Thread newThread(Runnable r) {
+                                               Thread t = new Thread(r, "async-cache-" + (count++));
+                                               t.setDaemon(true);
+                                               return t;
+                                             }
+                                           });
   }
 
-  public void reset(){
-    readCount.set(0);
-    writeCount.set(0);
+  public synchronized void reset(){
+    // drain whatever was recorded so far so it does not show up in the next interval
+    readRecorder.getIntervalStats();
+    writeRecorder.getIntervalStats();
     readStats.reset();
     writeStats.reset();
+    intervalReadStats = new Stats();
+    intervalWriteStats = new Stats();
+    batchReadRecorder.getIntervalStats();
+    batchWriteRecorder.getIntervalStats();
+    batchReadEntries.set(0);
+    batchWriteEntries.set(0);
+    batchReadStats.reset();
+    batchWriteStats.reset();
+    intervalBatchReadStats = new Stats();
+    intervalBatchWriteStats = new Stats();
+    batchReads = 0;
+    batchWrites = 0;
   }
 
 }
@@ -5,18 +5,34 @@ import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
-import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
+import org.apache.commons.httpclient.methods.DeleteMethod;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PutMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
 import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.springframework.samples.petclinic.CacheEntryAdapter;
 
-import java.io.ByteArrayOutputStream;
+import com.terracotta.cache.codec.ByteArrayBuffer;
+import com.terracotta.cache.codec.ByteArrayReader;
+import com.terracotta.cache.codec.CompactCodec;
+import com.terracotta.cache.codec.PayloadCodec;
+import com.terracotta.cache.codec.SerializationCodec;
+
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * A simple example Java client which uses the commons HTTPClient.
@@ -30,6 +46,26 @@ public class ApacheRestEhCacheWrapper<K, V> extends AbstractCacheWrapper<K, V>{
   // shared across all caches and threads
   private final static HttpClient client;
 
+  // the REST API has no bulk operation, the requests of a batch are issued in parallel
+  private final static ExecutorService batchExecutor;
+
+  // ehcache.server.codec: serialization (default), compact or the class name of a PayloadCodec
+  private final static PayloadCodec    codec;
+
+  // per thread buffers, reused by every request of the thread
+  private final static ThreadLocal<ByteArrayBuffer> buffers = new ThreadLocal<ByteArrayBuffer>() {
+                                                              @Override
+                                                              protected ByteArrayBuffer initialValue() {
+                                                                return new ByteArrayBuffer(4096);
+                                                              }
+                                                            };
+  private final static ThreadLocal<ByteArrayReader> readers = new ThreadLocal<ByteArrayReader>() {
+                                                              @Override
+                                                              protected ByteArrayReader initialValue() {
+                                                                return new ByteArrayReader();
+                                                              }
+                                                            };
+
   static {
     properties = loadProperties(EHCACHE_SERVER_PROPS_FILE);
 
@@ -43,6 +79,29 @@ public class ApacheRestEhCacheWrapper<K, V> extends AbstractCacheWrapper<K, V>{
     conParams.setMaxTotalConnections(maxTotalConn);
     conParams.setStaleCheckingEnabled(false);
     client.setHttpConnectionManager(manager);
+
+    int batchThreads = Integer.parseInt(properties.getProperty("ehcache.server.batch.threads", "" + maxConnPerHost));
+    batchExecutor = Executors.newFixedThreadPool(batchThreads, new ThreadFactory() {
+      private int count = 0;
+
+      public synchronized Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "rest-batch-" + (count++));
+        t.setDaemon(true);
+        return t;
+      }
+    });
+
+    codec = createCodec(properties.getProperty("ehcache.server.codec", "serialization").trim());
+  }
+
+  private static PayloadCodec createCodec(final String name) {
+    if ("serialization".equals(name)) return new SerializationCodec();
+    if ("compact".equals(name)) return new CompactCodec();
+    try {
+      return (PayloadCodec) Class.forName(name).newInstance();
+    } catch (Exception e) {
+      throw new RuntimeException("Unknown ehcache.server.codec: " + name, e);
+    }
   }
 
   private final String            URL;
@@ -81,13 +140,9 @@ public class ApacheRestEhCacheWrapper<K, V> extends AbstractCacheWrapper<K, V>{
   public void putInCache(final K key, final V value, final CacheEntryAdapter<V> adapter) {
     PutMethod put = new PutMethod(URL + cacheName + "/" + key);
     try {
-      ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      ObjectOutputStream oos = new ObjectOutputStream(baos);
-      oos.writeObject(value);
-      oos.close();
-
-      byte[] toSend = baos.toByteArray();
-      put.setRequestEntity(new ByteArrayRequestEntity(toSend));
+      ByteArrayBuffer buffer = buffers.get().reset();
+      codec.encode(value, buffer);
+      put.setRequestEntity(new BufferRequestEntity(buffer));
       int statusCode = client.executeMethod(put);
 
       if (statusCode != HttpStatus.SC_OK) {
@@ -117,8 +172,8 @@ public class ApacheRestEhCacheWrapper<K, V> extends AbstractCacheWrapper<K, V>{
         return null;
       }
 
-      ObjectInputStream ois = new ObjectInputStream(method.getResponseBodyAsStream());
-      return (V) ois.readObject();
+      ByteArrayBuffer buffer = buffers.get().readFrom(method.getResponseBodyAsStream());
+      return (V) codec.decode(readers.get().reset(buffer.array(), 0, buffer.size()));
 
     } catch (HttpException e) {
       System.err.println("Fatal protocol violation: " + e.getMessage());
@@ -126,14 +181,119 @@ public class ApacheRestEhCacheWrapper<K, V> extends AbstractCacheWrapper<K, V>{
     } catch (IOException e) {
       System.err.println("Fatal transport error: " + e.getMessage());
       e.printStackTrace();
-    } catch (ClassNotFoundException e) {
-      e.printStackTrace();
     } finally {
       method.releaseConnection();
     }
     return null;
   }
 
+  @Override
+  protected void removeFromCache(final K key) {
+    DeleteMethod delete = new DeleteMethod(URL + cacheName + "/" + key);
+    try {
+      client.executeMethod(delete);
+    } catch (HttpException e) {
+      System.err.println("Fatal protocol violation: " + e.getMessage());
+      e.printStackTrace();
+    } catch (IOException e) {
+      System.err.println("Fatal transport error: " + e.getMessage());
+      e.printStackTrace();
+    } finally {
+      delete.releaseConnection();
+    }
+  }
+
+  @Override
+  protected Map<K, V> getAllFromCache(final Collection<K> keys, final CacheEntryAdapter<V> adapter) {
+    List<Future<V>> futures = new ArrayList<Future<V>>(keys.size());
+    for (final K key : keys) {
+      futures.add(batchExecutor.submit(new Callable<V>() {
+        public V call() {
+          return getFromCache(key, adapter);
+        }
+      }));
+    }
+    Map<K, V> values = new HashMap<K, V>(keys.size() * 2);
+    int i = 0;
+    for (K key : keys) {
+      V value = await(futures.get(i++));
+      if (value != null) {
+        values.put(key, value);
+      }
+    }
+    return values;
+  }
+
+  @Override
+  protected void putAllInCache(final Map<K, V> entries, final CacheEntryAdapter<V> adapter) {
+    List<Future<Object>> futures = new ArrayList<Future<Object>>(entries.size());
+    for (final Map.Entry<K, V> entry : entries.entrySet()) {
+      futures.add(batchExecutor.submit(new Callable<Object>() {
+        public Object call() {
+          putInCache(entry.getKey(), entry.getValue(), adapter);
+          return null;
+        }
+      }));
+    }
+    for (Future<Object> future : futures) {
+      await(future);
+    }
+  }
+
+  @Override
+  protected void removeAllFromCache(final Collection<K> keys) {
+    List<Future<Object>> futures = new ArrayList<Future<Object>>(keys.size());
+    for (final K key : keys) {
+      futures.add(batchExecutor.submit(new Callable<Object>() {
+        public Object call() {
+          removeFromCache(key);
+          return null;
+        }
+      }));
+    }
+    for (Future<Object> future : futures) {
+      await(future);
+    }
+  }
+
+  private static <T> T await(final Future<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Sends the encoded bytes straight from the thread buffer, the request is done before the buffer is reused.
+   */
+  private static class BufferRequestEntity implements RequestEntity {
+    private final ByteArrayBuffer buffer;
+
+    BufferRequestEntity(ByteArrayBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    public boolean isRepeatable() {
+      return true;
+    }
+
+    public void writeRequest(OutputStream out) throws IOException {
+      buffer.writeTo(out);
+    }
+
+    public long getContentLength() {
+      return buffer.size();
+    }
+
+    public String getContentType() {
+      return codec.getContentType();
+    }
+  }
+
   public Object getUnderlyingCache() {
     return this;
   }
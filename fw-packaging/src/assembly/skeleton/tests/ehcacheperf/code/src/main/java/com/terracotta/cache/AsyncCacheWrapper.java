@@ -0,0 +1,24 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.cache;
+
+import org.springframework.samples.petclinic.CacheEntryAdapter;
+
+import java.util.concurrent.Future;
+
+/**
+ * Non blocking variant of {@link CacheWrapper}, letting one thread keep several requests in flight.
+ * <p>
+ * The number of outstanding requests of a node is capped (async.maxInFlight): issuing a request blocks while the cap
+ * is reached. Latencies are recorded when the request completes, in the same read/write stats as the synchronous
+ * operations.
+ */
+public interface AsyncCacheWrapper<K, V> extends CacheWrapper<K, V> {
+
+  Future<V> getAsync(K key, CacheEntryAdapter<V> adapter);
+
+  Future<?> putAsync(K key, V value, CacheEntryAdapter<V> adapter);
+
+  Future<?> removeAsync(K key);
+}
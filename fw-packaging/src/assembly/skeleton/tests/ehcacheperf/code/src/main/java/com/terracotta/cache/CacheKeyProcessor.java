@@ -0,0 +1,14 @@
+package com.terracotta.cache;
+
+/**
+ * Visits the keys a cache may hold for a range of owners, see
+ * {@link org.springframework.samples.petclinic.Clinic#processCacheKeys(int, int, CacheKeyProcessor)}.
+ */
+public interface CacheKeyProcessor {
+
+  /**
+   * @param keys generated on iteration, some of them may not be in the cache
+   */
+  public void processCacheKeys(CacheWrapper cacheWrapper, Iterable<?> keys);
+
+}
@@ -0,0 +1,273 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.cache;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+
+import org.apache.log4j.Logger;
+
+import com.terracotta.cache.codec.ByteArrayBuffer;
+import com.terracotta.cache.codec.ByteArrayReader;
+import com.terracotta.cache.codec.CompactCodec;
+import com.terracotta.util.Stats;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contents of warmed caches dumped to a memory-mapped file, to be put back in the caches by later runs on the same
+ * data set instead of generating and loading every entity again.
+ * <p>
+ * The file is a sequence of records: an int length followed by a record kind and its fields, keys and values being
+ * encoded with the {@link CompactCodec}. The first record holds the signature of the data set, a restore only happens
+ * when it matches. The file is mapped in segments, a record never spans two of them: a 0 length (or less than 4 bytes
+ * left) moves on to the next segment.
+ * <p>
+ * Elements are dumped and restored as stored in the caches (i.e. dehydrated), straight through the Ehcache API.
+ */
+public class CacheSnapshot {
+
+  private static final Logger log          = Logger.getLogger(CacheSnapshot.class);
+
+  private static final int    SEGMENT_SIZE = 64 * 1024 * 1024;
+  private static final int    BATCH_SIZE   = 1000;
+
+  private static final int    SIGNATURE    = 1;
+  private static final int    CACHE        = 2;
+  private static final int    ENTRY        = 3;
+  private static final int    END          = 4;
+
+  private final File          file;
+  private final String        signature;
+  private final CompactCodec  codec        = new CompactCodec();
+
+  /**
+   * @param signature describes the data set, a snapshot is only restored with the same signature
+   */
+  public CacheSnapshot(File file, String signature) {
+    this.file = file;
+    this.signature = signature;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Dumps the elements of the given keys, looked up one by one so that a node only goes through its share of clustered
+   * caches. Keys not in their cache are skipped.
+   *
+   * @return number of elements dumped
+   */
+  public long write(Map<Ehcache, Iterable<?>> keys) throws IOException {
+    File tmp = new File(file.getPath() + ".tmp");
+    Writer writer = new Writer(tmp);
+    long count = 0;
+    try {
+      writer.buffer.write(SIGNATURE);
+      writer.buffer.writeUTF8(signature);
+      writer.flush();
+      for (Map.Entry<Ehcache, Iterable<?>> cache : keys.entrySet()) {
+        writer.buffer.write(CACHE);
+        writer.buffer.writeUTF8(cache.getKey().getName());
+        writer.flush();
+        for (Object key : cache.getValue()) {
+          Element element = cache.getKey().getQuiet(key);
+          if (element == null) continue;
+          writer.buffer.write(ENTRY);
+          codec.encode(key, writer.buffer);
+          codec.encode(element.getObjectValue(), writer.buffer);
+          writer.flush();
+          count++;
+        }
+      }
+      writer.buffer.write(END);
+      writer.buffer.writeVarLong(count);
+      writer.flush();
+    } finally {
+      writer.close();
+    }
+    if (file.exists() && !file.delete()) { throw new IOException("Cannot replace " + file); }
+    if (!tmp.renameTo(file)) { throw new IOException("Cannot rename " + tmp + " to " + file); }
+    return count;
+  }
+
+  /**
+   * @return true when the file exists and was dumped from the same data set
+   */
+  public boolean canRestore() {
+    if (!file.isFile()) return false;
+    try {
+      Reader reader = new Reader(file);
+      try {
+        ByteArrayReader record = reader.next();
+        if (record == null || record.readByte() != SIGNATURE) return false;
+        String dumped = record.readUTF8();
+        if (!signature.equals(dumped)) {
+          log.info("Snapshot " + file + " is of another data set: " + dumped);
+          return false;
+        }
+        return true;
+      } finally {
+        reader.close();
+      }
+    } catch (IOException e) {
+      log.warn("Cannot read snapshot " + file, e);
+      return false;
+    }
+  }
+
+  /**
+   * Puts the dumped elements back in the caches of the same name, in batches.
+   *
+   * @param putAllStats records the latency of each batch
+   * @return number of elements restored
+   */
+  public long restore(Map<String, Ehcache> caches, Stats putAllStats) throws IOException {
+    Reader reader = new Reader(file);
+    long count = 0;
+    try {
+      Ehcache cache = null;
+      List<Element> batch = new ArrayList<Element>(BATCH_SIZE);
+      ByteArrayReader record;
+      while ((record = reader.next()) != null) {
+        int kind = record.readByte();
+        if (kind == SIGNATURE) {
+          continue;
+        } else if (kind == CACHE) {
+          putAll(cache, batch, putAllStats);
+          String name = record.readUTF8();
+          cache = caches.get(name);
+          if (cache == null) {
+            log.warn("Cache " + name + " of snapshot " + file + " not found, skipping its entries");
+          }
+        } else if (kind == ENTRY) {
+          if (cache == null) continue;
+          Object key = codec.decode(record);
+          batch.add(new Element(key, codec.decode(record)));
+          count++;
+          if (batch.size() == BATCH_SIZE) {
+            putAll(cache, batch, putAllStats);
+          }
+        } else if (kind == END) {
+          putAll(cache, batch, putAllStats);
+          long dumped = record.readVarLong();
+          if (dumped != count) {
+            log.warn("Restored " + count + " of the " + dumped + " elements of " + file);
+          }
+          return count;
+        } else {
+          throw new IOException("Unknown record " + kind + " in " + file);
+        }
+      }
+      throw new IOException("Truncated snapshot " + file);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static void putAll(Ehcache cache, List<Element> batch, Stats putAllStats) {
+    if (cache != null && !batch.isEmpty()) {
+      long start = System.nanoTime();
+      cache.putAll(batch);
+      putAllStats.addNanos(System.nanoTime() - start);
+    }
+    batch.clear();
+  }
+
+  private static class Writer {
+    private final RandomAccessFile file;
+    private final FileChannel      channel;
+    private final ByteArrayBuffer  buffer  = new ByteArrayBuffer(4096);
+    private long                   segmentStart;
+    private MappedByteBuffer       segment;
+
+    Writer(File path) throws IOException {
+      this.file = new RandomAccessFile(path, "rw");
+      this.channel = file.getChannel();
+      this.segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+    }
+
+    /**
+     * Appends the buffer as one record.
+     */
+    void flush() throws IOException {
+      int length = buffer.size();
+      if (length + 4 > SEGMENT_SIZE) { throw new IOException("Record of " + length + " bytes too large for a segment"); }
+      if (segment.remaining() < length + 4) {
+        if (segment.remaining() >= 4) {
+          segment.putInt(0);
+        }
+        segment.force();
+        segmentStart += SEGMENT_SIZE;
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, segmentStart, SEGMENT_SIZE);
+      }
+      segment.putInt(length);
+      segment.put(buffer.array(), 0, length);
+      buffer.reset();
+    }
+
+    void close() throws IOException {
+      try {
+        segment.force();
+        long end = segmentStart + segment.position();
+        segment = null;
+        channel.truncate(end);
+      } finally {
+        file.close();
+      }
+    }
+  }
+
+  private static class Reader {
+    private final RandomAccessFile file;
+    private final FileChannel      channel;
+    private final long             size;
+    private final ByteArrayReader  record = new ByteArrayReader();
+    private byte[]                 bytes  = new byte[4096];
+    private long                   segmentStart;
+    private MappedByteBuffer       segment;
+
+    Reader(File path) throws IOException {
+      this.file = new RandomAccessFile(path, "r");
+      this.channel = file.getChannel();
+      this.size = channel.size();
+      this.segment = map(0);
+    }
+
+    private MappedByteBuffer map(long start) throws IOException {
+      return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+    }
+
+    /**
+     * @return the next record, null at the end of the file
+     */
+    ByteArrayReader next() throws IOException {
+      int length = (segment.remaining() >= 4) ? segment.getInt() : 0;
+      if (length == 0) {
+        segmentStart += SEGMENT_SIZE;
+        if (segmentStart >= size) return null;
+        segment = map(segmentStart);
+        length = segment.getInt();
+      }
+      if (length > bytes.length) {
+        bytes = new byte[Math.max(length, bytes.length * 2)];
+      }
+      segment.get(bytes, 0, length);
+      return record.reset(bytes, 0, length);
+    }
+
+    void close() throws IOException {
+      segment = null;
+      file.close();
+    }
+  }
+}
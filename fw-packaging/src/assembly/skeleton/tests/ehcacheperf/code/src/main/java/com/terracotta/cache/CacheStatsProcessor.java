@@ -5,6 +5,9 @@ package com.terracotta.cache;
 
 import com.terracotta.util.Stats;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class CacheStatsProcessor implements CacheProcessor {
@@ -13,6 +16,11 @@ public class CacheStatsProcessor implements CacheProcessor {
 
   private final AtomicInteger read, write;
   private final Stats readStat, writeStat;
+  private final Stats periodReadStat, periodWriteStat;
+  // one sample per batch call, the entries of the batches are counted in read and write
+  private final Stats batchReadStat, batchWriteStat;
+  private final Stats periodBatchReadStat, periodBatchWriteStat;
+  private final Map<String, AbstractCacheWrapper> wrappers = new ConcurrentHashMap<String, AbstractCacheWrapper>();
 
   private CacheStatsProcessor(){
     read = new AtomicInteger();
@@ -20,6 +28,12 @@ public class CacheStatsProcessor implements CacheProcessor {
 
     readStat = new Stats();
     writeStat = new Stats();
+    periodReadStat = new Stats();
+    periodWriteStat = new Stats();
+    batchReadStat = new Stats();
+    batchWriteStat = new Stats();
+    periodBatchReadStat = new Stats();
+    periodBatchWriteStat = new Stats();
   }
 
   public static CacheStatsProcessor getInstance(){
@@ -29,10 +43,18 @@ public class CacheStatsProcessor implements CacheProcessor {
   public void processCache(CacheWrapper cacheWrapper) {
     if (cacheWrapper instanceof AbstractCacheWrapper){
       AbstractCacheWrapper wrapper = (AbstractCacheWrapper) cacheWrapper;
+      wrapper.sampleStats();
+      wrappers.put(wrapper.getName(), wrapper);
       read.addAndGet(wrapper.getReadCount());
       write.addAndGet(wrapper.getWriteCount());
       readStat.add(wrapper.getReadStats());
       writeStat.add(wrapper.getWriteStats());
+      periodReadStat.add(wrapper.getIntervalReadStats());
+      periodWriteStat.add(wrapper.getIntervalWriteStats());
+      batchReadStat.add(wrapper.getBatchReadStats());
+      batchWriteStat.add(wrapper.getBatchWriteStats());
+      periodBatchReadStat.add(wrapper.getIntervalBatchReadStats());
+      periodBatchWriteStat.add(wrapper.getIntervalBatchWriteStats());
     }
   }
 
@@ -52,11 +74,76 @@ public class CacheStatsProcessor implements CacheProcessor {
     return writeStat;
   }
 
+  /**
+   * @return the wrappers processed so far, to report per cache stats
+   */
+  public Collection<AbstractCacheWrapper> getCacheWrappers() {
+    return wrappers.values();
+  }
+
+  /**
+   * @return read latencies recorded since the previous call to processCache
+   */
+  public Stats getPeriodReadStat() {
+    return periodReadStat;
+  }
+
+  /**
+   * @return write latencies recorded since the previous call to processCache
+   */
+  public Stats getPeriodWriteStat() {
+    return periodWriteStat;
+  }
+
+  /**
+   * @return getAll latencies, one sample per batch
+   */
+  public Stats getBatchReadStat() {
+    return batchReadStat;
+  }
+
+  /**
+   * @return putAll/removeAll latencies, one sample per batch
+   */
+  public Stats getBatchWriteStat() {
+    return batchWriteStat;
+  }
+
+  /**
+   * @return getAll latencies recorded since the previous call to processCache
+   */
+  public Stats getPeriodBatchReadStat() {
+    return periodBatchReadStat;
+  }
+
+  /**
+   * @return putAll/removeAll latencies recorded since the previous call to processCache
+   */
+  public Stats getPeriodBatchWriteStat() {
+    return periodBatchWriteStat;
+  }
+
+  /**
+   * @return a new Stats merging read and write latencies (and histograms)
+   */
+  public Stats getTotalStat() {
+    Stats total = new Stats();
+    total.add(readStat);
+    total.add(writeStat);
+    return total;
+  }
+
   public void reset(){
     read.set(0);
     write.set(0);
     readStat.reset();
     writeStat.reset();
+    periodReadStat.reset();
+    periodWriteStat.reset();
+    batchReadStat.reset();
+    batchWriteStat.reset();
+    periodBatchReadStat.reset();
+    periodBatchWriteStat.reset();
   }
 
 }
\ No newline at end of file
@@ -2,6 +2,9 @@ package com.terracotta.cache;
 
 import org.springframework.samples.petclinic.CacheEntryAdapter;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * @author Alex Snaps
  */
@@ -11,6 +14,17 @@ public interface CacheWrapper<K, V> {
 
   V get(K key, CacheEntryAdapter<V> adapter);
 
+  void remove(K key);
+
+  /**
+   * Batch get, keys not present in the cache are absent from the returned map.
+   */
+  Map<K, V> getAll(Collection<K> keys, CacheEntryAdapter<V> adapter);
+
+  void putAll(Map<K, V> entries, CacheEntryAdapter<V> adapter);
+
+  void removeAll(Collection<K> keys);
+
   Object getUnderlyingCache();
   
   int getSize();
@@ -4,8 +4,15 @@ import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
 
+import org.springframework.samples.petclinic.ByteArrayEntryAdapter;
 import org.springframework.samples.petclinic.CacheEntryAdapter;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * @author Alex Snaps
  */
@@ -25,21 +32,61 @@ public class EhCacheWrapper<K, V> extends AbstractCacheWrapper<K, V> {
   }
 
   protected Element getElement(final K key, final V value, final CacheEntryAdapter<V> adapter) {
-    return new Element(key, adapter == null ? value : adapter.dehydrate(value));
+    if (adapter == null) {
+      return new Element(key, value);
+    } else if (adapter instanceof ByteArrayEntryAdapter) {
+      // stored as is, no need for the Object[] wrapper
+      return new Element(key, ((ByteArrayEntryAdapter<V>) adapter).toBytes(value));
+    } else {
+      return new Element(key, adapter.dehydrate(value));
+    }
   }
 
   @Override
   public V getFromCache(final K key, CacheEntryAdapter<V> adapter) {
     Element element = getCache().get(key);
-    V v = null;
-    if (element != null) {
-      if (adapter == null) {
-        v = (V) element.getValue();
-      } else {
-        v = adapter.hydrate((Object[]) element.getValue());
+    return element == null ? null : getValue(element, adapter);
+  }
+
+  protected V getValue(final Element element, final CacheEntryAdapter<V> adapter) {
+    if (adapter == null) {
+      return (V) element.getValue();
+    } else if (adapter instanceof ByteArrayEntryAdapter) {
+      return ((ByteArrayEntryAdapter<V>) adapter).fromBytes((byte[]) element.getValue());
+    } else {
+      return adapter.hydrate((Object[]) element.getValue());
+    }
+  }
+
+  @Override
+  protected void removeFromCache(final K key) {
+    getCache().remove(key);
+  }
+
+  @Override
+  protected Map<K, V> getAllFromCache(final Collection<K> keys, final CacheEntryAdapter<V> adapter) {
+    Map<Object, Element> elements = getCache().getAll(keys);
+    Map<K, V> values = new HashMap<K, V>(elements.size() * 2);
+    for (Map.Entry<Object, Element> entry : elements.entrySet()) {
+      if (entry.getValue() != null) {
+        values.put((K) entry.getKey(), getValue(entry.getValue(), adapter));
       }
     }
-    return v;
+    return values;
+  }
+
+  @Override
+  protected void putAllInCache(final Map<K, V> entries, final CacheEntryAdapter<V> adapter) {
+    List<Element> elements = new ArrayList<Element>(entries.size());
+    for (Map.Entry<K, V> entry : entries.entrySet()) {
+      elements.add(getElement(entry.getKey(), entry.getValue(), adapter));
+    }
+    getCache().putAll(elements);
+  }
+
+  @Override
+  protected void removeAllFromCache(final Collection<K> keys) {
+    getCache().removeAll(keys);
   }
 
   public Object getUnderlyingCache() {
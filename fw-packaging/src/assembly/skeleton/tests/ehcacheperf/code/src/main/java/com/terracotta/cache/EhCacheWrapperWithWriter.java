@@ -7,6 +7,8 @@ import org.springframework.samples.petclinic.CacheEntryAdapter;
 import org.springframework.samples.petclinic.Owner;
 import org.springframework.samples.petclinic.Visit;
 
+import java.util.Map;
+
 /**
  * @author Alex Snaps
  */
@@ -24,4 +26,17 @@ public class EhCacheWrapperWithWriter<K, V> extends EhCacheWrapper<K, V> {
       getCache().put(element);
     }
   }
+
+  @Override
+  protected void putAllInCache(final Map<K, V> entries, final CacheEntryAdapter<V> adapter) {
+    // there is no batch putWithWriter, owners and visits still go one by one through the writer
+    V value = entries.values().iterator().next();
+    if (value instanceof Owner || value instanceof Visit) {
+      for (Map.Entry<K, V> entry : entries.entrySet()) {
+        putInCache(entry.getKey(), entry.getValue(), adapter);
+      }
+    } else {
+      super.putAllInCache(entries, adapter);
+    }
+  }
 }
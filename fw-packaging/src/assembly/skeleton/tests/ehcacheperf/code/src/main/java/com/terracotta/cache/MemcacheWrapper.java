@@ -9,6 +9,9 @@ import com.googlecode.hibernate.memcached.spymemcached.SpyMemcacheClientFactory;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 public class MemcacheWrapper<K, V> extends AbstractCacheWrapper<K, V> {
@@ -43,6 +46,33 @@ public class MemcacheWrapper<K, V> extends AbstractCacheWrapper<K, V> {
     return (V) memcache.get(cacheName + key);
   }
 
+  @Override
+  protected void removeFromCache(final K key) {
+    memcache.delete(cacheName + key);
+  }
+
+  /**
+   * One multi get, sets and deletes are not acknowledged by the client so they are already pipelined one by one.
+   */
+  @Override
+  protected Map<K, V> getAllFromCache(final Collection<K> keys, final CacheEntryAdapter<V> adapter) {
+    String[] memcacheKeys = new String[keys.size()];
+    int i = 0;
+    for (K key : keys) {
+      memcacheKeys[i++] = cacheName + key;
+    }
+    Map<String, Object> found = memcache.getMulti(memcacheKeys);
+    Map<K, V> values = new HashMap<K, V>(found.size() * 2);
+    i = 0;
+    for (K key : keys) {
+      Object value = found.get(memcacheKeys[i++]);
+      if (value != null) {
+        values.put(key, (V) value);
+      }
+    }
+    return values;
+  }
+
   public Object getUnderlyingCache() {
     return this;
   }
@@ -7,6 +7,11 @@ import org.springframework.samples.petclinic.CacheEntryAdapter;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -55,6 +60,84 @@ public class SpyMemcacheWrapper<K, V> extends AbstractCacheWrapper<K, V> {
     return (V) obj;
   }
 
+  @Override
+  protected void removeFromCache(final K key) {
+    Future f = client.delete(cacheName + key);
+    try {
+      f.get();
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    } catch (ExecutionException e) {
+      e.printStackTrace();
+    }
+  }
+
+  @Override
+  protected Future<V> getFromCacheAsync(final K key, final CacheEntryAdapter<V> adapter) {
+    return (Future<V>) client.asyncGet(cacheName + key);
+  }
+
+  @Override
+  protected Future<?> putInCacheAsync(final K key, final V value, final CacheEntryAdapter<V> adapter) {
+    return client.set(cacheName + key, 0, value);
+  }
+
+  @Override
+  protected Future<?> removeFromCacheAsync(final K key) {
+    return client.delete(cacheName + key);
+  }
+
+  @Override
+  protected Map<K, V> getAllFromCache(final Collection<K> keys, final CacheEntryAdapter<V> adapter) {
+    List<String> memcacheKeys = new ArrayList<String>(keys.size());
+    for (K key : keys) {
+      memcacheKeys.add(cacheName + key);
+    }
+    Map<String, Object> found = client.getBulk(memcacheKeys);
+    Map<K, V> values = new HashMap<K, V>(found.size() * 2);
+    int i = 0;
+    for (K key : keys) {
+      Object value = found.get(memcacheKeys.get(i++));
+      if (value != null) {
+        values.put(key, (V) value);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * All the sets are sent before waiting for the first acknowledgement.
+   */
+  @Override
+  protected void putAllInCache(final Map<K, V> entries, final CacheEntryAdapter<V> adapter) {
+    List<Future> futures = new ArrayList<Future>(entries.size());
+    for (Map.Entry<K, V> entry : entries.entrySet()) {
+      futures.add(client.set(cacheName + entry.getKey(), 0, entry.getValue()));
+    }
+    waitFor(futures);
+  }
+
+  @Override
+  protected void removeAllFromCache(final Collection<K> keys) {
+    List<Future> futures = new ArrayList<Future>(keys.size());
+    for (K key : keys) {
+      futures.add(client.delete(cacheName + key));
+    }
+    waitFor(futures);
+  }
+
+  private static void waitFor(final List<Future> futures) {
+    for (Future f : futures) {
+      try {
+        f.get();
+      } catch (InterruptedException e) {
+        e.printStackTrace();
+      } catch (ExecutionException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
   public Object getUnderlyingCache() {
     return this;
   }
@@ -0,0 +1,185 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.cache.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Growable byte array meant to be reused, one per thread, for encoding payloads: {@link #reset()} keeps the backing
+ * array so a thread stops allocating once its buffer fits the largest payload it has seen.
+ * <p>
+ * Besides raw bytes it writes unsigned LEB128 varints, zigzag encoded nullable numbers and null-safe UTF-8 strings,
+ * read back by {@link ByteArrayReader}.
+ */
+public class ByteArrayBuffer extends OutputStream {
+
+  private byte[] buf;
+  private int    count;
+
+  public ByteArrayBuffer(int initialCapacity) {
+    this.buf = new byte[Math.max(16, initialCapacity)];
+  }
+
+  public ByteArrayBuffer reset() {
+    count = 0;
+    return this;
+  }
+
+  /**
+   * @return the backing array, valid up to {@link #size()}
+   */
+  public byte[] array() {
+    return buf;
+  }
+
+  public int size() {
+    return count;
+  }
+
+  @Override
+  public void write(int b) {
+    ensureCapacity(1);
+    buf[count++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    ensureCapacity(len);
+    System.arraycopy(b, off, buf, count, len);
+    count += len;
+  }
+
+  public void writeVarInt(int value) {
+    writeVarLong(value & 0xFFFFFFFFL);
+  }
+
+  public void writeVarLong(long value) {
+    ensureCapacity(10);
+    while ((value & ~0x7FL) != 0) {
+      buf[count++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buf[count++] = (byte) value;
+  }
+
+  /**
+   * Zigzag encoded so that small negative values stay short, 0 stands for null.
+   */
+  public void writeNullableInt(Integer value) {
+    writeVarLong(value == null ? 0 : zigzag(value.longValue()) + 1);
+  }
+
+  public void writeNullableLong(Long value) {
+    writeVarLong(value == null ? 0 : zigzag(value.longValue()) + 1);
+  }
+
+  public void writeInt(int value) {
+    writeVarLong(zigzag(value));
+  }
+
+  /**
+   * Byte length + 1 (0 for null) followed by the UTF-8 bytes, encoded straight into the buffer.
+   */
+  public void writeUTF8(String value) {
+    if (value == null) {
+      writeVarInt(0);
+      return;
+    }
+    int length = value.length();
+    int utf8Length = length;
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= 0x80) {
+        utf8Length += (c < 0x800 || isSurrogate(c)) ? 1 : 2;
+      }
+    }
+    writeVarInt(utf8Length + 1);
+    ensureCapacity(utf8Length);
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        buf[count++] = (byte) c;
+      } else if (c < 0x800) {
+        buf[count++] = (byte) (0xC0 | (c >> 6));
+        buf[count++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buf[count++] = (byte) (0xF0 | (codePoint >> 18));
+        buf[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        buf[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        buf[count++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else if (isSurrogate(c)) {
+        // unpaired surrogate, two bytes were counted for it
+        buf[count++] = (byte) '?';
+        buf[count++] = (byte) '?';
+      } else {
+        buf[count++] = (byte) (0xE0 | (c >> 12));
+        buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buf[count++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  /**
+   * Replaces the content of the buffer with everything left in the stream.
+   */
+  public ByteArrayBuffer readFrom(InputStream in) throws IOException {
+    count = 0;
+    if (in == null) return this;
+    int read;
+    do {
+      ensureCapacity(1);
+      read = in.read(buf, count, buf.length - count);
+      if (read > 0) count += read;
+    } while (read >= 0);
+    return this;
+  }
+
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(buf, 0, count);
+  }
+
+  private void ensureCapacity(int extra) {
+    if (count + extra > buf.length) {
+      byte[] bigger = new byte[Math.max(buf.length << 1, count + extra)];
+      System.arraycopy(buf, 0, bigger, 0, count);
+      buf = bigger;
+    }
+  }
+
+  private static boolean isSurrogate(char c) {
+    return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+  }
+
+  public static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  public static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * @return number of bytes taken by the value written with {@link #writeVarLong(long)}
+   */
+  public static int varLongSize(long value) {
+    int size = 1;
+    while ((value & ~0x7FL) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  /**
+   * @return a copy of the content, sized to it
+   */
+  public byte[] toByteArray() {
+    byte[] copy = new byte[count];
+    System.arraycopy(buf, 0, copy, 0, count);
+    return copy;
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.cache.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Reads what {@link ByteArrayBuffer} writes. Meant to be reused, one per thread, the char scratch array used to decode
+ * strings grows to the longest string read.
+ */
+public class ByteArrayReader {
+
+  private byte[] buf;
+  private int    pos;
+  private int    limit;
+  private char[] chars = new char[64];
+
+  public ByteArrayReader reset(byte[] data, int offset, int length) {
+    this.buf = data;
+    this.pos = offset;
+    this.limit = offset + length;
+    return this;
+  }
+
+  public byte[] array() {
+    return buf;
+  }
+
+  public int position() {
+    return pos;
+  }
+
+  public int remaining() {
+    return limit - pos;
+  }
+
+  public int readByte() throws IOException {
+    if (pos >= limit) throw new EOFException();
+    return buf[pos++] & 0xFF;
+  }
+
+  public void readBytes(byte[] bytes) throws IOException {
+    if (bytes.length > remaining()) throw new EOFException();
+    System.arraycopy(buf, pos, bytes, 0, bytes.length);
+    pos += bytes.length;
+  }
+
+  public void skip(int length) throws IOException {
+    if (length > remaining()) throw new EOFException();
+    pos += length;
+  }
+
+  public long readVarLong() throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) return value;
+    }
+    throw new IOException("malformed varint");
+  }
+
+  public int readVarInt() throws IOException {
+    return (int) readVarLong();
+  }
+
+  public Integer readNullableInt() throws IOException {
+    long value = readVarLong();
+    return value == 0 ? null : Integer.valueOf((int) ByteArrayBuffer.unzigzag(value - 1));
+  }
+
+  public Long readNullableLong() throws IOException {
+    long value = readVarLong();
+    return value == 0 ? null : Long.valueOf(ByteArrayBuffer.unzigzag(value - 1));
+  }
+
+  public int readInt() throws IOException {
+    return (int) ByteArrayBuffer.unzigzag(readVarLong());
+  }
+
+  public String readUTF8() throws IOException {
+    int length = readVarInt() - 1;
+    if (length < 0) return null;
+    if (length > remaining()) throw new EOFException();
+    if (chars.length < length) {
+      chars = new char[Math.max(length, chars.length << 1)];
+    }
+    int end = pos + length;
+    int n = 0;
+    while (pos < end) {
+      int b = buf[pos++] & 0xFF;
+      if (b < 0x80) {
+        chars[n++] = (char) b;
+      } else if (b < 0xE0) {
+        chars[n++] = (char) (((b & 0x1F) << 6) | (buf[pos++] & 0x3F));
+      } else if (b < 0xF0) {
+        chars[n++] = (char) (((b & 0x0F) << 12) | ((buf[pos++] & 0x3F) << 6) | (buf[pos++] & 0x3F));
+      } else {
+        int codePoint = ((b & 0x07) << 18) | ((buf[pos++] & 0x3F) << 12) | ((buf[pos++] & 0x3F) << 6)
+                        | (buf[pos++] & 0x3F);
+        n += Character.toChars(codePoint, chars, n);
+      }
+    }
+    return new String(chars, 0, n);
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.cache.codec;
+
+import org.springframework.samples.petclinic.Owner;
+import org.springframework.samples.petclinic.Pet;
+import org.springframework.samples.petclinic.PetType;
+import org.springframework.samples.petclinic.Visit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Hand-written binary encoding of the petclinic values: a type tag followed by the fields as varints and UTF-8
+ * strings. Like the CacheEntryAdapters of the DAOs only the columns are encoded, not the associations (the pets of an
+ * owner or the visits of a pet are cached on their own).
+ * <p>
+ * Strings, Integers, Dates, byte[] and Object[] of those (the entries stored by the CacheEntryAdapters) have their own
+ * tags too. Values of any other type are Java serialized behind their own tag and length.
+ */
+public class CompactCodec implements PayloadCodec {
+
+  private static final int         NULL       = 0;
+  private static final int         OWNER      = 1;
+  private static final int         PET        = 2;
+  private static final int         VISIT      = 3;
+  private static final int         PET_TYPE   = 4;
+  private static final int         INT_LIST   = 5;
+  private static final int         STRING     = 6;
+  private static final int         INTEGER    = 7;
+  private static final int         DATE       = 8;
+  private static final int         ARRAY      = 9;
+  private static final int         BYTES      = 10;
+  private static final int         SERIALIZED = 127;
+
+  private final SerializationCodec fallback   = new SerializationCodec();
+
+  public void encode(Object value, ByteArrayBuffer out) throws IOException {
+    if (value == null) {
+      out.write(NULL);
+    } else if (value instanceof Owner) {
+      Owner owner = (Owner) value;
+      out.write(OWNER);
+      out.writeNullableInt(owner.getId());
+      out.writeNullableInt(owner.getAccount());
+      out.writeUTF8(owner.getFirstName());
+      out.writeUTF8(owner.getLastName());
+      out.writeUTF8(owner.getAddress());
+      out.writeUTF8(owner.getCity());
+      out.writeUTF8(owner.getTelephone());
+    } else if (value instanceof Pet) {
+      Pet pet = (Pet) value;
+      out.write(PET);
+      out.writeNullableInt(pet.getId());
+      out.writeUTF8(pet.getName());
+      out.writeNullableLong(pet.getBirthDate() == null ? null : pet.getBirthDate().getTime());
+      out.writeInt(pet.getTypeFK());
+      out.writeInt(pet.getOwnerFK());
+    } else if (value instanceof Visit) {
+      Visit visit = (Visit) value;
+      out.write(VISIT);
+      out.writeNullableInt(visit.getId());
+      out.writeInt(visit.getPetFK());
+      out.writeNullableLong(visit.getDate() == null ? null : visit.getDate().getTime());
+      out.writeUTF8(visit.getDescription());
+    } else if (value instanceof PetType) {
+      PetType type = (PetType) value;
+      out.write(PET_TYPE);
+      out.writeNullableInt(type.getId());
+      out.writeUTF8(type.getName());
+    } else if (isIntegerList(value)) {
+      List<Integer> ids = (List<Integer>) value;
+      out.write(INT_LIST);
+      out.writeVarInt(ids.size());
+      for (Integer id : ids) {
+        out.writeInt(id);
+      }
+    } else if (value instanceof String) {
+      out.write(STRING);
+      out.writeUTF8((String) value);
+    } else if (value instanceof Integer) {
+      out.write(INTEGER);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Date) {
+      out.write(DATE);
+      out.writeVarLong(ByteArrayBuffer.zigzag(((Date) value).getTime()));
+    } else if (value.getClass() == Object[].class) {
+      // the dehydrated entries of the CacheEntryAdapters
+      Object[] values = (Object[]) value;
+      out.write(ARRAY);
+      out.writeVarInt(values.length);
+      for (Object element : values) {
+        encode(element, out);
+      }
+    } else if (value instanceof byte[]) {
+      byte[] bytes = (byte[]) value;
+      out.write(BYTES);
+      out.writeVarInt(bytes.length);
+      out.write(bytes, 0, bytes.length);
+    } else {
+      // length prefixed so that more values can follow, e.g. in an Object[]
+      out.write(SERIALIZED);
+      int start = out.size();
+      out.write(new byte[4], 0, 4);
+      fallback.encode(value, out);
+      int length = out.size() - start - 4;
+      byte[] buf = out.array();
+      buf[start] = (byte) (length >>> 24);
+      buf[start + 1] = (byte) (length >>> 16);
+      buf[start + 2] = (byte) (length >>> 8);
+      buf[start + 3] = (byte) length;
+    }
+  }
+
+  private static boolean isIntegerList(Object value) {
+    if (!(value instanceof List)) return false;
+    for (Object element : (List) value) {
+      if (!(element instanceof Integer)) return false;
+    }
+    return true;
+  }
+
+  public Object decode(ByteArrayReader in) throws IOException {
+    int tag = in.readByte();
+    switch (tag) {
+      case NULL:
+        return null;
+      case OWNER: {
+        Owner owner = new Owner();
+        owner.setId(in.readNullableInt());
+        owner.setAccount(in.readNullableInt());
+        owner.setFirstName(in.readUTF8());
+        owner.setLastName(in.readUTF8());
+        owner.setAddress(in.readUTF8());
+        owner.setCity(in.readUTF8());
+        owner.setTelephone(in.readUTF8());
+        return owner;
+      }
+      case PET: {
+        Pet pet = new Pet();
+        pet.setId(in.readNullableInt());
+        pet.setName(in.readUTF8());
+        pet.setBirthDate(toDate(in.readNullableLong()));
+        pet.setTypeFK(in.readInt());
+        pet.setOwnerFK(in.readInt());
+        return pet;
+      }
+      case VISIT: {
+        Visit visit = new Visit();
+        visit.setId(in.readNullableInt());
+        visit.setPetFK(in.readInt());
+        visit.setDate(toDate(in.readNullableLong()));
+        visit.setDescription(in.readUTF8());
+        return visit;
+      }
+      case PET_TYPE: {
+        PetType type = new PetType();
+        type.setId(in.readNullableInt());
+        type.setName(in.readUTF8());
+        return type;
+      }
+      case INT_LIST: {
+        int size = in.readVarInt();
+        List<Integer> ids = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+          ids.add(in.readInt());
+        }
+        return ids;
+      }
+      case STRING:
+        return in.readUTF8();
+      case INTEGER:
+        return in.readInt();
+      case DATE:
+        return new Date(ByteArrayBuffer.unzigzag(in.readVarLong()));
+      case ARRAY: {
+        Object[] values = new Object[in.readVarInt()];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = decode(in);
+        }
+        return values;
+      }
+      case BYTES: {
+        byte[] bytes = new byte[in.readVarInt()];
+        in.readBytes(bytes);
+        return bytes;
+      }
+      case SERIALIZED: {
+        int length = (in.readByte() << 24) | (in.readByte() << 16) | (in.readByte() << 8) | in.readByte();
+        Object value = fallback.decode(new ByteArrayReader().reset(in.array(), in.position(), length));
+        in.skip(length);
+        return value;
+      }
+      default:
+        throw new IOException("Unknown payload type: " + tag);
+    }
+  }
+
+  private static Date toDate(Long time) {
+    return time == null ? null : new Date(time);
+  }
+
+  public String getContentType() {
+    return "application/octet-stream";
+  }
+}
@@ -0,0 +1,22 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.cache.codec;
+
+import java.io.IOException;
+
+/**
+ * Encodes the values sent to a remote cache. Implementations must be thread-safe, the buffers are owned by the
+ * calling thread.
+ */
+public interface PayloadCodec {
+
+  void encode(Object value, ByteArrayBuffer out) throws IOException;
+
+  Object decode(ByteArrayReader in) throws IOException;
+
+  /**
+   * @return MIME type sent along with the encoded values
+   */
+  String getContentType();
+}
@@ -0,0 +1,34 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.cache.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Plain Java serialization, what the REST wrapper always used.
+ */
+public class SerializationCodec implements PayloadCodec {
+
+  public void encode(Object value, ByteArrayBuffer out) throws IOException {
+    ObjectOutputStream oos = new ObjectOutputStream(out);
+    oos.writeObject(value);
+    oos.close();
+  }
+
+  public Object decode(ByteArrayReader in) throws IOException {
+    ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(in.array(), in.position(), in.remaining()));
+    try {
+      return ois.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Cannot deserialize payload: " + e.getMessage());
+    }
+  }
+
+  public String getContentType() {
+    return "application/x-java-serialized-object";
+  }
+}
@@ -14,6 +14,15 @@ public class Configuration {
 
   private static final Logger log = Logger.getLogger(Configuration.class);
 
+  /**
+   * Properties the warmed data set depends on
+   */
+  private static final String DEFAULT_SIGNATURE_KEYS = "testCase,elementNum,numOfNodes,cache,search.enabled,"
+                                                       + "keyPaddingInBytes,valuePaddingInBytes,variableValue,"
+                                                       + "valuePaddingDistribution,valuePaddingParams,"
+                                                       + "valuePaddingPoolSize,entryEncoding,data.seed,"
+                                                       + "data.petsPerOwner,data.visitsPerPet";
+
   private final boolean    standalone;
   private final int        nodesNum;
   private final int        threadNum;
@@ -37,6 +46,39 @@ public class Configuration {
   private final int       addOwnersCount;
   private final boolean   addOwnersEnabled;
 
+  private final int       targetOpsPerSec;
+  private final int       asyncInFlight;
+
+  private final int       virtualUsers;
+  private final int       carrierThreads;
+  private final String    thinkTime;
+  private final String    sessionLength;
+  private final String    sessionPause;
+  private final String    loadProfile;
+
+  private final boolean   saturationSearch;
+  private final int       saturationMinOpsPerSec;
+  private final int       saturationStepSecs;
+  private final int       saturationSettleSecs;
+  private final double    saturationSlaP99Millis;
+  private final long      saturationSlaMaxErrors;
+  private final double    saturationResolution;
+  private final int       saturationMaxSteps;
+
+  private final int       warmupChunkSize;
+  private final String    warmupSnapshotDir;
+  private final String    datasetSignature;
+
+  private final boolean   timeSeriesEnabled;
+  private final String    timeSeriesDir;
+
+  private final String    keyDistribution;
+  private final long      randomSeed;
+
+  private final boolean   traceRecordEnabled;
+  private final String    traceDir;
+  private final double    traceReplaySpeed;
+
   private HotSetConfiguration       hotSetConfiguration;
 
   private final int elementNum;
@@ -65,8 +107,48 @@ public class Configuration {
     this.addOwnersEnabled = getBoolean("addOwners.enabled", false);
     this.addOwnersPeriodInSecs = getInteger("addOwnersPeriodInSecs", 20);
 
+    this.targetOpsPerSec = getInteger("openLoop.targetOpsPerSec", 0);
+    this.asyncInFlight = getInteger("async.inFlight", 0);
+
+    this.virtualUsers = getInteger("virtualUsers", 0);
+    this.carrierThreads = getInteger("virtualUsers.carrierThreads", threadNum);
+    this.thinkTime = getString("session.thinkTime", "0");
+    this.sessionLength = getString("session.length", "0");
+    this.sessionPause = getString("session.pause", "0");
+    this.loadProfile = getString("loadProfile", "flat");
+
+    this.saturationSearch = getBoolean("saturation.search", false);
+    this.saturationMinOpsPerSec = getInteger("saturation.minOpsPerSec", 100);
+    this.saturationStepSecs = getInteger("saturation.stepSecs", 30);
+    this.saturationSettleSecs = getInteger("saturation.settleSecs", 5);
+    this.saturationSlaP99Millis = Double.parseDouble(getString("saturation.sla.p99Millis", "10"));
+    this.saturationSlaMaxErrors = getLong("saturation.sla.maxErrors", 0);
+    this.saturationResolution = Double.parseDouble(getString("saturation.resolution", "0.05"));
+    this.saturationMaxSteps = getInteger("saturation.maxSteps", 12);
+
+    this.warmupChunkSize = getInteger("warmup.chunkSize", 1000);
+    this.warmupSnapshotDir = getString("warmup.snapshot.dir", "");
+    this.datasetSignature = buildSignature(getString("warmup.snapshot.signature", DEFAULT_SIGNATURE_KEYS));
+
+    this.timeSeriesEnabled = getBoolean("timeseries.enabled", true);
+    // fw.logs.dir is set by the framework to the client logs directory, which gets collected at the end of the run
+    this.timeSeriesDir = getString("timeseries.dir", System.getProperty("fw.logs.dir", "."));
+
+    this.keyDistribution = getString("key.distribution", "uniform").trim();
+    this.randomSeed = getLong("random.seed", System.currentTimeMillis());
+
+    this.traceRecordEnabled = getBoolean("trace.record", false);
+    this.traceDir = getString("trace.dir", this.timeSeriesDir);
+    this.traceReplaySpeed = Double.parseDouble(getString("trace.replay.speed", "1.0"));
+
     this.searchEnabled = getBoolean("search.enabled", false);
     com.terracotta.ehcache.perf.FakeWriteBehindFactory.millisToSleep = TimeUnit.SECONDS.toMillis(getInteger("writer.maxWriteDelay", 0)) / 2;
+    com.terracotta.util.Stats.histogramSignificantDigits = getInteger("stats.histogram.significantDigits", 2);
+    com.terracotta.util.Stats.histogramHighestTrackableNanos = TimeUnit.MILLISECONDS
+        .toNanos(getLong("stats.histogram.highestTrackableMillis", TimeUnit.HOURS.toMillis(1)));
+    com.terracotta.cache.AbstractCacheWrapper.perThreadRecording = !"shared".equalsIgnoreCase(getString("stats.recorder", "perThread"));
+    com.terracotta.cache.AbstractCacheWrapper.maxInFlight = getInteger("async.maxInFlight", 1000);
+    com.terracotta.cache.AbstractCacheWrapper.asyncThreads = getInteger("async.threads", 64);
 
     getBoolean("ehcache.clustered" , true);
   }
@@ -185,6 +267,202 @@ public class Configuration {
     return addOwnersEnabled;
   }
 
+  /**
+   * @return target test iterations/sec for this node in open-loop mode, 0 when the test runs closed-loop
+   */
+  public int getTargetOpsPerSec() {
+    return targetOpsPerSec;
+  }
+
+  public boolean isOpenLoop() {
+    return targetOpsPerSec > 0;
+  }
+
+  /**
+   * @return test iterations each thread keeps in flight in pipelined mode, 0 when the iterations run one at a time
+   */
+  public int getAsyncInFlight() {
+    return asyncInFlight;
+  }
+
+  public boolean isPipelined() {
+    return asyncInFlight > 0 && !isOpenLoop() && !isVirtualUsers();
+  }
+
+  /**
+   * @return simulated users of this node in virtual users mode, 0 when each test thread runs as one user
+   */
+  public int getVirtualUsers() {
+    return virtualUsers;
+  }
+
+  public boolean isVirtualUsers() {
+    return virtualUsers > 0 && !isOpenLoop();
+  }
+
+  /**
+   * @return threads running the virtual users, numOfThreads by default
+   */
+  public int getCarrierThreads() {
+    return carrierThreads;
+  }
+
+  /**
+   * @return distribution of the milliseconds a user waits between two iterations of a session, see
+   *         {@link com.terracotta.util.SessionModel.Delay#parse(String)}
+   */
+  public String getThinkTime() {
+    return thinkTime;
+  }
+
+  /**
+   * @return distribution of the iterations of a user session, 0 for endless sessions
+   */
+  public String getSessionLength() {
+    return sessionLength;
+  }
+
+  /**
+   * @return distribution of the milliseconds a user waits between two sessions
+   */
+  public String getSessionPause() {
+    return sessionPause;
+  }
+
+  /**
+   * @return load level over the test, driving the open-loop rate or the number of active users, see
+   *         {@link com.terracotta.util.LoadProfile#parse(String, long)}
+   */
+  public String getLoadProfile() {
+    return loadProfile;
+  }
+
+  /**
+   * @return true when the test searches the highest open-loop rate within the SLA instead of running for duration,
+   *         openLoop.targetOpsPerSec being the highest rate tried
+   */
+  public boolean isSaturationSearch() {
+    return saturationSearch && isOpenLoop();
+  }
+
+  /**
+   * @return lowest iterations/sec per node tried by the saturation search
+   */
+  public int getSaturationMinOpsPerSec() {
+    return saturationMinOpsPerSec;
+  }
+
+  /**
+   * @return seconds each rate of the saturation search is measured for
+   */
+  public int getSaturationStepSecs() {
+    return saturationStepSecs;
+  }
+
+  /**
+   * @return seconds ignored at the start of each step of the saturation search, while the cluster adapts to the rate
+   */
+  public int getSaturationSettleSecs() {
+    return saturationSettleSecs;
+  }
+
+  public double getSaturationSlaP99Millis() {
+    return saturationSlaP99Millis;
+  }
+
+  public long getSaturationSlaMaxErrors() {
+    return saturationSlaMaxErrors;
+  }
+
+  /**
+   * @return the search stops once the rate range is narrower than this fraction of its upper bound
+   */
+  public double getSaturationResolution() {
+    return saturationResolution;
+  }
+
+  public int getSaturationMaxSteps() {
+    return saturationMaxSteps;
+  }
+
+  /**
+   * @return owners loaded together by each warmup thread
+   */
+  public int getWarmupChunkSize() {
+    return warmupChunkSize;
+  }
+
+  /**
+   * @return directory of the warm-data snapshots, empty when the L2 warmup always loads the data
+   */
+  public String getWarmupSnapshotDir() {
+    return warmupSnapshotDir;
+  }
+
+  public boolean isWarmupSnapshotEnabled() {
+    return warmupSnapshotDir.length() > 0;
+  }
+
+  /**
+   * @return values of the warmup.snapshot.signature properties, a snapshot is only restored by a run with the same
+   */
+  public String getDatasetSignature() {
+    return datasetSignature;
+  }
+
+  private String buildSignature(String keys) {
+    StringBuilder signature = new StringBuilder();
+    for (String key : keys.split(",")) {
+      key = key.trim();
+      if (key.length() == 0) continue;
+      if (signature.length() > 0) signature.append(';');
+      String value = props.getProperty(key);
+      signature.append(key).append('=').append(value == null ? "" : value.trim());
+    }
+    return signature.toString();
+  }
+
+  public boolean isTimeSeriesEnabled() {
+    return timeSeriesEnabled;
+  }
+
+  public String getTimeSeriesDir() {
+    return timeSeriesDir;
+  }
+
+  /**
+   * @return name of the {@link com.terracotta.ehcache.perf.test.hotset.DistributionType} used by
+   *         {@link com.terracotta.ehcache.perf.test.AbstractTest#nextKey()}
+   */
+  public String getKeyDistribution() {
+    return keyDistribution;
+  }
+
+  /**
+   * @return base seed of the test random streams, each node and test thread derives its own stream from it
+   */
+  public long getRandomSeed() {
+    return randomSeed;
+  }
+
+  public boolean isTraceRecordEnabled() {
+    return traceRecordEnabled;
+  }
+
+  /**
+   * @return directory the traces are recorded to and replayed from
+   */
+  public String getTraceDir() {
+    return traceDir;
+  }
+
+  /**
+   * @return replay speed relative to the recording, 0 replays as fast as possible
+   */
+  public double getTraceReplaySpeed() {
+    return traceReplaySpeed;
+  }
+
   @Override
   public String toString() {
 
@@ -205,6 +483,20 @@ public class Configuration {
     .append("\n  bulkLoad \t= ").append(bulkLoadEnabled)
     .append("\n  transactionManager \t= ").append(transactionManager)
     .append("\n  noDB \t= ").append(noDB)
+    .append("\n  targetOpsPerSec \t= ").append(targetOpsPerSec)
+    .append("\n  asyncInFlight \t= ").append(asyncInFlight)
+    .append("\n  virtualUsers \t= ").append(virtualUsers)
+    .append("\n  carrierThreads \t= ").append(carrierThreads)
+    .append("\n  thinkTime \t= ").append(thinkTime)
+    .append("\n  sessionLength \t= ").append(sessionLength)
+    .append("\n  sessionPause \t= ").append(sessionPause)
+    .append("\n  loadProfile \t= ").append(loadProfile)
+    .append("\n  saturationSearch \t= ").append(saturationSearch)
+    .append("\n  warmupChunkSize \t= ").append(warmupChunkSize)
+    .append("\n  warmupSnapshotDir \t= ").append(warmupSnapshotDir)
+    .append("\n  keyDistribution \t= ").append(keyDistribution)
+    .append("\n  randomSeed \t= ").append(randomSeed)
+    .append("\n  traceRecord \t= ").append(traceRecordEnabled)
     .append("\n}").append(hotSetConfiguration).toString();
 
   }
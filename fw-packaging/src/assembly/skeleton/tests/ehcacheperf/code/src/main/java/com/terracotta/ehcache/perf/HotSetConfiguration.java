@@ -10,18 +10,33 @@ public class HotSetConfiguration {
   private final boolean       debugDistribution;
   private final Configuration config;
   private final int           movingHotsetPeriod;
+  private final double        zipfianSkew;
+  private final double        exponentialPercentile;
+  private final double        exponentialFraction;
+  private final String        hotspots;
 
   public static HotSetConfiguration getHotSetConfig(Configuration config, Properties properties) {
     return new HotSetConfiguration(config, getStringProperty(properties, "hotset.distribution-type","simple"),
                                    getBooleanProperty(properties, "hotset.debug-distribution", true),
                                    getIntProperty(properties, "hotset.simple-distribution.hotPercent", 90),
                                    getIntProperty(properties, "hotset.simple-distribution.hotSetDataPercent", 70),
-                                   getIntProperty(properties, "hotset.simple-moving-distribution.hotsetPeriodInSecs", 5)
+                                   getIntProperty(properties, "hotset.simple-moving-distribution.hotsetPeriodInSecs", 5),
+                                   getDoubleProperty(properties, "hotset.zipfian.skew", 0.99),
+                                   getDoubleProperty(properties, "hotset.exponential.percentile", 95),
+                                   getDoubleProperty(properties, "hotset.exponential.fraction", 10),
+                                   getStringProperty(properties, "hotset.hotspots", "0:10:90")
     );
   }
 
   public HotSetConfiguration(Configuration config, String hotSetDistributionType, boolean debugDistribution,
                              int hotPercent, int hotSetDataPercent, int hotsetPeriod) {
+    this(config, hotSetDistributionType, debugDistribution, hotPercent, hotSetDataPercent, hotsetPeriod, 0.99, 95, 10,
+         "0:10:90");
+  }
+
+  public HotSetConfiguration(Configuration config, String hotSetDistributionType, boolean debugDistribution,
+                             int hotPercent, int hotSetDataPercent, int hotsetPeriod, double zipfianSkew,
+                             double exponentialPercentile, double exponentialFraction, String hotspots) {
     super();
     this.config = config;
     this.hotSetDistributionType = hotSetDistributionType;
@@ -29,6 +44,10 @@ public class HotSetConfiguration {
     this.hotPercent = hotPercent;
     this.hotSetDataPercent = hotSetDataPercent;
     this.movingHotsetPeriod = hotsetPeriod;
+    this.zipfianSkew = zipfianSkew;
+    this.exponentialPercentile = exponentialPercentile;
+    this.exponentialFraction = exponentialFraction;
+    this.hotspots = hotspots;
   }
 
   public int getTotalDataSetSize() {
@@ -55,6 +74,22 @@ public class HotSetConfiguration {
     return debugDistribution;
   }
 
+  public double getZipfianSkew() {
+    return zipfianSkew;
+  }
+
+  public double getExponentialPercentile() {
+    return exponentialPercentile;
+  }
+
+  public double getExponentialFractionPercent() {
+    return exponentialFraction;
+  }
+
+  public String getHotspots() {
+    return hotspots;
+  }
+
   public static boolean getBooleanProperty(Properties props, String name, boolean def) {
     String result = getStringProperty(props, name, def + "");
     return Boolean.valueOf(result);
@@ -66,6 +101,11 @@ public class HotSetConfiguration {
     return result;
   }
 
+  public static double getDoubleProperty(Properties props, String name, double def) {
+    String val = getStringProperty(props, name, String.valueOf(def));
+    return Double.parseDouble(val);
+  }
+
   public static String getStringProperty(Properties props, String name, String def) {
     String result = props.getProperty(name, def).trim();
     return result;
@@ -88,6 +128,10 @@ public class HotSetConfiguration {
     .append("\n\thotset.simple-distribution.hotPercent =  ").append(hotPercent)
     .append("\n\thotset.simple-distribution.hotSetDataPercent =   ").append(hotSetDataPercent)
     .append("\n\thotset.simple-moving-distribution.hotsetPeriodInSecs =  ").append(movingHotsetPeriod)
+    .append("\n\thotset.zipfian.skew =  ").append(zipfianSkew)
+    .append("\n\thotset.exponential.percentile =  ").append(exponentialPercentile)
+    .append("\n\thotset.exponential.fraction =  ").append(exponentialFraction)
+    .append("\n\thotset.hotspots =  ").append(hotspots)
     .append("\n}");
     return sb.toString();
   }
@@ -10,18 +10,29 @@ import org.springframework.samples.petclinic.Clinic;
 import org.terracotta.util.ClusteredAtomicLong;
 
 import com.terracotta.EhCachePerfTest;
+import com.terracotta.cache.CacheKeyProcessor;
 import com.terracotta.cache.CacheProcessor;
+import com.terracotta.cache.CacheSnapshot;
 import com.terracotta.cache.CacheStatsProcessor;
 import com.terracotta.cache.CacheWrapper;
 import com.terracotta.cache.EhCacheWrapper;
 import com.terracotta.cache.ResetCacheStatsProcessor;
-import com.terracotta.util.StatReporter;
-
-import java.util.ArrayList;
+import com.terracotta.ehcache.perf.Configuration;
+import com.terracotta.ehcache.perf.test.hotset.Distribution;
+import com.terracotta.ehcache.perf.test.hotset.DistributionType;
+import com.terracotta.util.OperationStats;
+import com.terracotta.util.RandomStreams;
+import com.terracotta.util.RangeUtil;
+import com.terracotta.util.Stats;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * @author Alex Snaps
@@ -34,7 +45,6 @@ public abstract class AbstractTest {
   protected int               nodeId;
   protected int               numberOfNodes;
 
-  protected Random            random    = new Random();
   protected int               threadNum = 5;
   protected boolean           singleThreadedWarmup = false;
   protected int               maxKeyValue;
@@ -42,8 +52,26 @@ public abstract class AbstractTest {
   protected EhCachePerfTest   driver;
   protected int               writePercentage = 2;
 
+  private volatile RandomStreams randomStreams;
+  private volatile Distribution  keyDistribution;
+  private volatile ChunkedLoader warmupLoader;
+
   public abstract void doTestBody();
 
+  /**
+   * One test iteration in pipelined mode (async.inFlight), the driver keeps several of them in flight per thread.
+   * Tests without a non blocking body run {@link #doTestBody()} and return an already completed future.
+   */
+  public Future<?> doTestBodyAsync() {
+    FutureTask<Object> iteration = new FutureTask<Object>(new Runnable() {
+      public void run() {
+        doTestBody();
+      }
+    }, null);
+    iteration.run();
+    return iteration;
+  }
+
   public Clinic getClinic() {
     return clinic;
   }
@@ -74,6 +102,103 @@ public abstract class AbstractTest {
     }
   }
   
+  /**
+   * Restores the share of this node of the warm-data snapshot (warmup.snapshot.dir), if one was dumped from the same
+   * data set.
+   *
+   * @param putAllStats records the latency of each putAll of the restore, which bypasses the cache wrappers
+   * @return number of elements restored, -1 when not restored in which case the L2 warmup must run
+   */
+  public long restoreWarmupSnapshot(Stats putAllStats) {
+    Configuration conf = driver.getConfiguration();
+    if (!conf.isWarmupSnapshotEnabled()) return -1;
+    CacheSnapshot snapshot = getWarmupSnapshot();
+    if (!snapshot.canRestore()) {
+      log.info("No warm-data snapshot to restore at " + snapshot.getFile());
+      return -1;
+    }
+    long start = now();
+    try {
+      long count = snapshot.restore(getSnapshotCaches(), putAllStats);
+      log.info(String.format("Restored %d elements from %s in %.1f seconds", count, snapshot.getFile(),
+                             since(start) / 1000.0));
+      return count;
+    } catch (IOException e) {
+      log.error("Cannot restore " + snapshot.getFile() + ", warming up instead", e);
+      putAllStats.reset();
+      return -1;
+    }
+  }
+
+  /**
+   * Dumps the share of this node of the warmed caches to the warm-data snapshot, once all the nodes are warmed. The
+   * owner ids 0 (pet types) to maxKeyValue are sliced evenly over the nodes whichever node warmed them, and each node
+   * only looks up the keys of its slice.
+   */
+  public void writeWarmupSnapshot() {
+    if (!driver.getConfiguration().isWarmupSnapshotEnabled()) return;
+    CacheSnapshot snapshot = getWarmupSnapshot();
+    int fromOwnerId = (int) ((maxKeyValue + 1L) * nodeId / numberOfNodes);
+    int toOwnerId = (int) ((maxKeyValue + 1L) * (nodeId + 1) / numberOfNodes);
+    long start = now();
+    try {
+      Map<Ehcache, Iterable<?>> keys = getSnapshotKeys(fromOwnerId, toOwnerId);
+      snapshot.getFile().getParentFile().mkdirs();
+      long count = snapshot.write(keys);
+      log.info(String.format("Dumped %d elements of owners %d to %d to %s in %.1f seconds", count, fromOwnerId,
+                             toOwnerId - 1, snapshot.getFile(), since(start) / 1000.0));
+    } catch (UnsupportedOperationException e) {
+      log.warn("No warm-data snapshot, it requires the nodb DAOs: " + e.getMessage());
+    } catch (IOException e) {
+      log.error("Cannot dump the warm-data snapshot " + snapshot.getFile(), e);
+    }
+  }
+
+  private CacheSnapshot getWarmupSnapshot() {
+    Configuration conf = driver.getConfiguration();
+    String signature = conf.getDatasetSignature();
+    String name = "ehcacheperf-" + Integer.toHexString(signature.hashCode()) + "-node" + nodeId + "-of"
+                  + numberOfNodes + ".snapshot";
+    return new CacheSnapshot(new File(conf.getWarmupSnapshotDir(), name), signature);
+  }
+
+  /**
+   * @return the Ehcaches of the clinic by name, other caches are not snapshotted
+   */
+  private Map<String, Ehcache> getSnapshotCaches() {
+    final Map<String, Ehcache> caches = new LinkedHashMap<String, Ehcache>();
+    clinic.processAllCaches(new CacheProcessor() {
+      public void processCache(CacheWrapper cacheWrapper) {
+        if (cacheWrapper instanceof EhCacheWrapper) {
+          Ehcache cache = ((EhCacheWrapper) cacheWrapper).getCache();
+          caches.put(cache.getName(), cache);
+        } else {
+          log.warn("Cache of type " + cacheWrapper.getUnderlyingCache().getClass().getName()
+                   + " is not part of the warm-data snapshot");
+        }
+      }
+    });
+    return caches;
+  }
+
+  /**
+   * @return the keys the Ehcaches of the clinic may hold for the owners fromOwnerId to toOwnerId - 1
+   */
+  private Map<Ehcache, Iterable<?>> getSnapshotKeys(int fromOwnerId, int toOwnerId) {
+    final Map<Ehcache, Iterable<?>> keys = new LinkedHashMap<Ehcache, Iterable<?>>();
+    clinic.processCacheKeys(fromOwnerId, toOwnerId, new CacheKeyProcessor() {
+      public void processCacheKeys(CacheWrapper cacheWrapper, Iterable<?> cacheKeys) {
+        if (cacheWrapper instanceof EhCacheWrapper) {
+          keys.put(((EhCacheWrapper) cacheWrapper).getCache(), cacheKeys);
+        } else {
+          log.warn("Cache of type " + cacheWrapper.getUnderlyingCache().getClass().getName()
+                   + " is not part of the warm-data snapshot");
+        }
+      }
+    });
+    return keys;
+  }
+
   public void flushAllPutsToServer() {
     clinic.cacheGetSizes();
     return;
@@ -97,56 +222,46 @@ public abstract class AbstractTest {
   }
 
   protected void loadOwnerKeyRange(final int start, final int end, final boolean isL1Warmup) {
-    if(start == end)
+    if(start >= end)
       return;
 
     log.info("Warming cache with keys from " + start + " to " + end);
 
-    final AtomicLong counter = new AtomicLong();
-    StatReporter reporter = new StatReporter("Loading", counter);
-    reporter.untilValue(end - start);
-    reporter.doSummaryReport();
-
-    final AtomicInteger readCount = new AtomicInteger(start);
-
-    List<Thread> workers = new ArrayList<Thread>();
-    for (int i = 0; i < threadNum; i++) {
-      workers.add(new Thread(new Runnable() {
-        public void run() {
-          int key;
-          while ((key = readCount.getAndIncrement()) <= end) {
-            try {
-              if(isL1Warmup)
-                clinic.getOwner(key);
-              else
-                clinic.loadOwner(key);
-              counter.incrementAndGet();
-            }
-            catch (NonStopCacheException t) {
-              log.fatal("NonstopCacheException...", t);
-            }
-            catch (Throwable t) {
-              log.fatal("Error in warm up", t);
-              System.exit(-1);
-            }
-          }
+    getWarmupLoader().load(new RangeUtil(start, end), new ChunkedLoader.ChunkLoader() {
+      public void load(List<Integer> ids) {
+        try {
+          if(isL1Warmup)
+            clinic.getOwners(ids);
+          else
+            clinic.loadOwners(ids);
         }
-      }, "WARM UP THREAD #" + i));
-    }
-
-    reporter.startReporting();
+        catch (NonStopCacheException t) {
+          log.fatal("NonstopCacheException...", t);
+        }
+        catch (Throwable t) {
+          log.fatal("Error in warm up", t);
+          System.exit(-1);
+        }
+      }
+    });
+  }
 
-    for (Thread worker : workers) {
-      worker.start();
-    }
-    for (Thread worker : workers) {
-      try {
-        worker.join();
-      } catch (InterruptedException e) {
-        throw new RuntimeException(e);
+  /**
+   * Warmup threads, kept for all the warmup ranges of the test. Each chunk of warmup.chunkSize owners is loaded with
+   * one batch call, itself split in getAll/putAll of batchSize entries by the DAOs.
+   */
+  protected ChunkedLoader getWarmupLoader() {
+    ChunkedLoader loader = warmupLoader;
+    if (loader == null) {
+      synchronized (this) {
+        loader = warmupLoader;
+        if (loader == null) {
+          warmupLoader = loader = new ChunkedLoader("Loading", threadNum, driver.getConfiguration()
+              .getWarmupChunkSize());
+        }
       }
     }
-    reporter.completeWithSummary();
+    return loader;
   }
 
   public void logMisses(boolean logMisses) {
@@ -206,8 +321,68 @@ public abstract class AbstractTest {
     log.info("### Added new owners. Current owners count: " + currKeyCount.get() + " ###");
   }
 
+  /**
+   * Per-thread random streams of this test, shared by {@link #random()} and the key distributions. The streams of a
+   * node are derived from random.seed and the node id.
+   */
+  protected RandomStreams getRandomStreams() {
+    RandomStreams streams = randomStreams;
+    if (streams == null) {
+      synchronized (this) {
+        streams = randomStreams;
+        if (streams == null) {
+          long seed = driver.getConfiguration().getRandomSeed();
+          randomStreams = streams = new RandomStreams(RandomStreams.streamSeed(seed, nodeId));
+        }
+      }
+    }
+    return streams;
+  }
+
+  /**
+   * Called by each perf test thread before anything else, so that its random stream only depends on random.seed, the
+   * node id and the thread index.
+   */
+  public void bindRandomStream(int threadIndex) {
+    getRandomStreams().bind(threadIndex);
+  }
+
+  /**
+   * @return the random of the calling thread, never shared with other threads
+   */
+  protected Random random() {
+    return getRandomStreams().get();
+  }
+
+  /**
+   * Distribution of the keys read by the test, selected with key.distribution. Samples are in [0, maxKeyValue).
+   */
+  protected Distribution getKeyDistribution() {
+    Distribution distribution = keyDistribution;
+    if (distribution == null) {
+      synchronized (this) {
+        distribution = keyDistribution;
+        if (distribution == null) {
+          Configuration conf = driver.getConfiguration();
+          DistributionType type = DistributionType.valueOf(conf.getKeyDistribution());
+          log.info("Key distribution: " + type);
+          keyDistribution = distribution = type.create(conf.getHotSetConfiguration(), false, maxKeyValue, currKeyCount,
+                                                       getRandomStreams());
+        }
+      }
+    }
+    return distribution;
+  }
+
+  /**
+   * @return next owner id to read, between 1 and maxKeyValue (or the current key count for the latest distribution)
+   */
+  protected int nextKey() {
+    return getKeyDistribution().getNextSample() + 1;
+  }
+
   protected boolean doWrite() {
-    boolean isWrite = random.nextInt(100) < writePercentage;
+    boolean isWrite = random().nextInt(100) < writePercentage;
     return isWrite;
   }
 
@@ -247,11 +422,13 @@ public abstract class AbstractTest {
   public void processCacheStats(){
     CacheProcessor cacheDetails = CacheStatsProcessor.getInstance();
     clinic.processAllCaches(cacheDetails);
+    OperationStats.getInstance().sample();
   }
 
   public void resetCacheStats(){
     CacheProcessor processor = new ResetCacheStatsProcessor();
     clinic.processAllCaches(processor);
+    OperationStats.getInstance().reset();
   }
 
   // called at end of test, after all test threads are complete, by the main thread
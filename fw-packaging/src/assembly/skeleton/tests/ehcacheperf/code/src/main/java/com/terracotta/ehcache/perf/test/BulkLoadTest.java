@@ -14,6 +14,7 @@ import com.terracotta.ehcache.perf.Configuration;
 import com.terracotta.util.Util;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +26,7 @@ public class BulkLoadTest extends AbstractTest implements CacheProcessor {
   private static final Logger log                        = Logger.getLogger(BulkLoadTest.class);
 
   private static final String BULK_LOAD_TEST_VERIFY_MODE = "bulkLoadTest.verify";
+  private static final String BULK_LOAD_TEST_BATCH_SIZE  = "bulkLoadTest.batchSize";
 
   private final AtomicInteger loadOwnerRange             = new AtomicInteger();
   private int                 startId;
@@ -33,6 +35,7 @@ public class BulkLoadTest extends AbstractTest implements CacheProcessor {
   private long                startTime                  = 0;
   private int                 numThreads;
   private int                 total;
+  private int                 batchSize;
   private final AtomicBoolean testComplete               = new AtomicBoolean(false);
 
   @Override
@@ -46,6 +49,8 @@ public class BulkLoadTest extends AbstractTest implements CacheProcessor {
     } else {
       log.info("Not running bulk load verify mode");
     }
+    batchSize = Math.max(1, config.getInteger(BULK_LOAD_TEST_BATCH_SIZE, 1));
+    log.info("Loading owners in batches of " + batchSize);
   }
 
   @Override
@@ -65,11 +70,18 @@ public class BulkLoadTest extends AbstractTest implements CacheProcessor {
 
   @Override
   public void doTestBody() {
-    int currentOwnerId = loadOwnerRange.getAndIncrement();
-    if (currentOwnerId <= endId) {
+    int currentOwnerId = loadOwnerRange.getAndAdd(batchSize);
+    if (currentOwnerId > endId) {
+      driver.completeTest();
+    } else if (batchSize == 1) {
       clinic.loadOwner(currentOwnerId);
     } else {
-      driver.completeTest();
+      int lastOwnerId = Math.min(currentOwnerId + batchSize - 1, endId);
+      List<Integer> ids = new ArrayList<Integer>(lastOwnerId - currentOwnerId + 1);
+      for (int id = currentOwnerId; id <= lastOwnerId; id++) {
+        ids.add(id);
+      }
+      clinic.loadOwners(ids);
     }
   }
 
@@ -102,7 +114,7 @@ public class BulkLoadTest extends AbstractTest implements CacheProcessor {
   @Override
   public void doPeriodReport() {
     log.info("Running test since: " + Util.formatTimeInSecondsToWords((now() - startTime) / 1000));
-    int loaded = loadOwnerRange.get() - startId + 1;
+    int loaded = Math.min(loadOwnerRange.get() - startId, total);
     double pc = ((double) loaded * 100) / total;
     log.info("Complete: " + String.format("%3.2f", pc) + "%, loaded: " + loaded + "/" + total);
   }
@@ -168,6 +180,12 @@ public class BulkLoadTest extends AbstractTest implements CacheProcessor {
       throw new RuntimeException("This operation should not be invoked");
     }
 
+    @Override
+    public Map<Object, Element> getAll(Collection<?> keys) throws IllegalStateException, CacheException,
+        NullPointerException {
+      throw new RuntimeException("This operation should not be invoked");
+    }
+
     @Override
     public Map getAllWithLoader(Collection keys, Object loaderArgument) throws CacheException {
       throw new RuntimeException("This operation should not be invoked");
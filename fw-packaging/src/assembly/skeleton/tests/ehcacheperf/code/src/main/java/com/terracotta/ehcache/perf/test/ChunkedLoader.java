@@ -0,0 +1,132 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.ehcache.perf.test;
+
+import org.apache.log4j.Logger;
+
+import com.terracotta.util.RangeUtil;
+import com.terracotta.util.StatReporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads a range of keys in chunks on a pool of threads kept for the lifetime of the loader.
+ * <p>
+ * The range is split with {@link RangeUtil#subrange(int, int)} in one sub-range per thread, itself split in chunks
+ * of chunkSize keys queued in the thread's own deque. A thread takes its chunks from the head of its deque and, once
+ * done, steals chunks from the tail of the other deques, so threads that are slowed down (e.g. by a slow server
+ * stripe) don't hold back the whole load. Each chunk is handed to the {@link ChunkLoader} as one batch.
+ */
+public class ChunkedLoader {
+
+  private static final Logger log = Logger.getLogger(ChunkedLoader.class);
+
+  public interface ChunkLoader {
+    /**
+     * @param ids consecutive keys of one chunk
+     */
+    void load(List<Integer> ids);
+  }
+
+  private final String          name;
+  private final int             threads;
+  private final int             chunkSize;
+  private final ExecutorService executor;
+
+  public ChunkedLoader(final String name, int threads, int chunkSize) {
+    if (threads < 1) { throw new IllegalArgumentException("threads must be >= 1: " + threads); }
+    if (chunkSize < 1) { throw new IllegalArgumentException("chunkSize must be >= 1: " + chunkSize); }
+    this.name = name;
+    this.threads = threads;
+    this.chunkSize = chunkSize;
+    this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, name + " THREAD #" + count.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Loads all the keys of the range, reporting the throughput as it goes, and returns once they are all loaded.
+   */
+  public void load(final RangeUtil range, final ChunkLoader loader) {
+    int workers = (int) Math.min(threads, range.size());
+    final List<LinkedBlockingDeque<RangeUtil>> deques = new ArrayList<LinkedBlockingDeque<RangeUtil>>(workers);
+    for (int i = 0; i < workers; i++) {
+      RangeUtil subrange = range.subrange(i, workers);
+      int chunks = (int) ((subrange.size() + chunkSize - 1) / chunkSize);
+      LinkedBlockingDeque<RangeUtil> deque = new LinkedBlockingDeque<RangeUtil>();
+      for (int j = 0; j < chunks; j++) {
+        deque.addLast(subrange.subrange(j, chunks));
+      }
+      deques.add(deque);
+    }
+
+    final AtomicLong counter = new AtomicLong();
+    final AtomicLong stolen = new AtomicLong();
+    StatReporter reporter = new StatReporter(name, counter);
+    reporter.untilValue(range.size());
+    reporter.doSummaryReport();
+    reporter.startReporting();
+
+    List<Future<?>> futures = new ArrayList<Future<?>>(workers);
+    for (int i = 0; i < workers; i++) {
+      final int worker = i;
+      futures.add(executor.submit(new Runnable() {
+        public void run() {
+          RangeUtil chunk;
+          while ((chunk = deques.get(worker).pollFirst()) != null || (chunk = steal(deques, worker, stolen)) != null) {
+            List<Integer> ids = new ArrayList<Integer>((int) chunk.size());
+            while (chunk.hasNext()) {
+              ids.add((int) chunk.next());
+            }
+            loader.load(ids);
+            counter.addAndGet(ids.size());
+          }
+        }
+      }));
+    }
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      reporter.completeWithSummary();
+    }
+    log.info(name + ": " + stolen.get() + " chunks of " + chunkSize + " keys stolen");
+  }
+
+  private static RangeUtil steal(List<LinkedBlockingDeque<RangeUtil>> deques, int thief, AtomicLong stolen) {
+    for (int i = 1; i < deques.size(); i++) {
+      RangeUtil chunk = deques.get((thief + i) % deques.size()).pollLast();
+      if (chunk != null) {
+        stolen.incrementAndGet();
+        return chunk;
+      }
+    }
+    return null;
+  }
+
+  public void shutdown() {
+    executor.shutdown();
+  }
+}
@@ -6,7 +6,6 @@ import org.springframework.samples.petclinic.Pet;
 import org.springframework.samples.petclinic.Visit;
 
 import java.util.List;
-import java.util.Random;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
@@ -26,13 +25,6 @@ public class EvictionTest extends AbstractTest {
 
   private final Timer                        offsetTimer     = new Timer("offset_timer");
 
-  private final ThreadLocal<Random>          randomLocal     = new ThreadLocal<Random>() {
-                                                               @Override
-                                                               public Random initialValue() {
-                                                                 return new Random();
-                                                               }
-                                                             };
-
   @Override
   public void doL1WarmUp() {
     // no-op
@@ -74,7 +66,7 @@ public class EvictionTest extends AbstractTest {
     if (owner == null) { throw new RuntimeException("Key '" + key + "' has no value in the cache"); }
     if (doWrite()) {
       // This action now mutates the Owner and adds a visit.
-      owner.setTelephone(random.nextInt(999999999) + "");
+      owner.setTelephone(random().nextInt(999999999) + "");
       List<Pet> pets = owner.getPets();
       // add a visit
       if (pets.size() > 0) {
@@ -92,8 +84,7 @@ public class EvictionTest extends AbstractTest {
   }
 
   private int getNextKey() {
-    Random randomloc = randomLocal.get();
-    int key = randomloc.nextInt(HOT_SET_SIZE);
+    int key = random().nextInt(HOT_SET_SIZE);
     Integer offset = offsetMap.get(Thread.currentThread().getId());
     if (offset == null) {
       Integer cOffset = currentOffset.get();
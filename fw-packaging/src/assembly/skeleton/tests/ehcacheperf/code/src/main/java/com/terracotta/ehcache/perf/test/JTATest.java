@@ -33,10 +33,10 @@ public class JTATest extends AbstractTest {
   }
 
   private void doTransaction(){
-    Owner owner = clinic.getOwner(random.nextInt(maxKeyValue) + 1);
+    Owner owner = clinic.getOwner(random().nextInt(maxKeyValue) + 1);
     if (doWrite()) {
       // This action now mutates the Owner and adds a visit.
-      owner.setTelephone(random.nextInt(999999999) + "");
+      owner.setTelephone(random().nextInt(999999999) + "");
       List<Pet> pets = owner.getPets();
       // add a visit
       if (pets.size() > 0) {
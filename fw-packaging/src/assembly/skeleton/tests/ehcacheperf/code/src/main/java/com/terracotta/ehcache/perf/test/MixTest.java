@@ -0,0 +1,128 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.ehcache.perf.test;
+
+import org.apache.log4j.Logger;
+import org.springframework.samples.petclinic.Owner;
+
+import com.terracotta.ehcache.perf.Configuration;
+import com.terracotta.util.AliasTable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a weighted mix of operations defined in the test properties, e.g.
+ *
+ * <pre>
+ * mix.getOwner: 70
+ * mix.storeOwner: 20
+ * mix.removeOwner: 5
+ * mix.search: 5
+ * </pre>
+ *
+ * Weights are relative and operations without a weight are not run. Every iteration picks one operation from a
+ * precomputed {@link AliasTable} and runs it on a key of the key distribution (key.distribution).
+ */
+public class MixTest extends AbstractTest {
+
+  private static final Logger log = Logger.getLogger(MixTest.class);
+
+  public enum Op {
+    getOwner {
+      @Override
+      void run(MixTest test, int key) {
+        test.clinic.getOwner(key);
+      }
+    },
+    loadOwner {
+      @Override
+      void run(MixTest test, int key) {
+        test.clinic.loadOwner(key);
+      }
+    },
+    storeOwner {
+      @Override
+      void run(MixTest test, int key) {
+        Owner owner = test.clinic.getOwner(key);
+        owner.setTelephone(test.random().nextInt(999999999) + "");
+        test.clinic.storeOwner(owner);
+      }
+    },
+    refreshCache {
+      @Override
+      void run(MixTest test, int key) {
+        test.clinic.refreshCache(test.clinic.getOwner(key));
+      }
+    },
+    removeOwner {
+      @Override
+      void run(MixTest test, int key) {
+        test.clinic.removeOwner(key);
+      }
+    },
+    /**
+     * Owners are generated with last name Owner_Last_Name_(account / 1000), needs a searchable cache (search.enabled)
+     * with the nodb DAOs.
+     */
+    search {
+      @Override
+      void run(MixTest test, int key) {
+        test.clinic.findOwners("Owner_Last_Name_" + (key / 1000));
+      }
+    },
+    /**
+     * Reads mix.bulkGet.size owners in one {@link org.springframework.samples.petclinic.Clinic#getOwners}, the first
+     * one being the sampled key. The DAOs split it in getAll calls of batchSize entries.
+     */
+    bulkGet {
+      @Override
+      void run(MixTest test, int key) {
+        List<Integer> ids = new ArrayList<Integer>(test.bulkSize);
+        ids.add(key);
+        for (int i = 1; i < test.bulkSize; i++) {
+          ids.add(test.nextKey());
+        }
+        test.clinic.getOwners(ids);
+      }
+    };
+
+    abstract void run(MixTest test, int key);
+  }
+
+  private Op[]       ops;
+  private AliasTable table;
+  private int        bulkSize;
+
+  @Override
+  public void beforeTest() {
+    super.beforeTest();
+    Configuration conf = driver.getConfiguration();
+    List<Op> selected = new ArrayList<Op>();
+    List<Double> weights = new ArrayList<Double>();
+    StringBuilder mix = new StringBuilder();
+    for (Op op : Op.values()) {
+      double weight = Double.parseDouble(conf.getString("mix." + op.name(), "0"));
+      if (weight > 0) {
+        selected.add(op);
+        weights.add(weight);
+        mix.append(mix.length() == 0 ? "" : ", ").append(op).append(": ").append(weight);
+      }
+    }
+    if (selected.isEmpty()) { throw new RuntimeException("No operation in the mix, set at least one mix.<op> weight"); }
+    double[] w = new double[weights.size()];
+    for (int i = 0; i < w.length; i++) {
+      w[i] = weights.get(i);
+    }
+    this.ops = selected.toArray(new Op[selected.size()]);
+    this.table = new AliasTable(w);
+    this.bulkSize = conf.getInteger("mix.bulkGet.size", 10);
+    log.info("Operation mix: " + mix);
+  }
+
+  @Override
+  public void doTestBody() {
+    ops[table.next(random())].run(this, nextKey());
+  }
+}
@@ -35,14 +35,14 @@ public class MovingKeySetTest extends AbstractTest {
       }
     }
 
-    int key = start + this.random.nextInt(maxKeyValue);
+    int key = start + random().nextInt(maxKeyValue);
     Owner owner = clinic.getOwner(key);
     if (owner == null && key > startKey) {
       clinic.loadOwner(key);
     } else {
       if (doWrite()) {
         // This action now mutates the Owner and adds a visit.
-        owner.setTelephone(random.nextInt(999999999) + "");
+        owner.setTelephone(random().nextInt(999999999) + "");
         List<Pet> pets = owner.getPets();
         // add a visit
         if (pets.size() > 0) {
@@ -6,7 +6,7 @@ package com.terracotta.ehcache.perf.test;
 public class NonStopCacheTest extends AbstractTest {
 
   public void doTestBody() {
-    int key = this.random.nextInt(maxKeyValue);
+    int key = random().nextInt(maxKeyValue);
     if (clinic.getOwner(key + 1) == null) { throw new RuntimeException("Key '" + key + "' has no value in the cache"); }
   }
 }
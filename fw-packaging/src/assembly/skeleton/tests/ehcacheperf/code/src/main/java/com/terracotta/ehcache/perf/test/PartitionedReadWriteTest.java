@@ -19,13 +19,13 @@ public class PartitionedReadWriteTest extends PartitionedTest {
 
   @Override
   public void doTestBody() {
-    int key = partitionStart + this.random.nextInt((partitionEnd - partitionStart));
+    int key = partitionStart + random().nextInt((partitionEnd - partitionStart));
     // log.info("Key = " + key + " partitionStart# " + partitionStart + " partitionEnd# " + partitionEnd );
     Owner owner = clinic.getOwner(key + 1);
     if (owner == null) { throw new RuntimeException("Key '" + key + "' has no value in the cache"); }
     if (doWrite()) {
       // This action now mutates the Owner and adds a visit.
-      owner.setTelephone(random.nextInt(999999999) + "");
+      owner.setTelephone(random().nextInt(999999999) + "");
       List<Pet> pets = owner.getPets();
       // add a visit
       if (pets.size() > 0) {
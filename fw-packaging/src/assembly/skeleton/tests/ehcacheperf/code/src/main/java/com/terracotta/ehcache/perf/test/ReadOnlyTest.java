@@ -1,13 +1,23 @@
 package com.terracotta.ehcache.perf.test;
 
+import java.util.concurrent.Future;
+
 /**
  * @author Alex Snaps
  */
 public class ReadOnlyTest extends AbstractTest {
 
   public void doTestBody() {
-    int key = this.random.nextInt(maxKeyValue);
-    if (clinic.getOwner(key + 1) == null) { throw new RuntimeException("Key '" + key + "' has no value in the cache"); }
+    int key = nextKey();
+    if (clinic.getOwner(key) == null) { throw new RuntimeException("Key '" + key + "' has no value in the cache"); }
+  }
+
+  /**
+   * Only reads the owner entry, not the pets and visits graph of {@link #doTestBody()}.
+   */
+  @Override
+  public Future<?> doTestBodyAsync() {
+    return clinic.getOwnerAsync(nextKey());
   }
 
 }
@@ -35,13 +35,13 @@ public class ReadWriteBehindTest extends PartitionedReadWriteTest {
 
   @Override
   public void doTestBody() {
-    int key = partitionStart + this.random.nextInt((partitionEnd - partitionStart));
+    int key = partitionStart + random().nextInt((partitionEnd - partitionStart));
     // log.info("Key = " + key + " partitionStart# " + partitionStart + " partitionEnd# " + partitionEnd );
     Owner owner = clinic.loadOwner(key + 1);
     if (owner == null) { throw new RuntimeException("Key '" + key + "' has no value in the cache"); }
     // This action now mutates the Owner and adds a visit.
     if (doWrite()) {
-      owner.setTelephone(random.nextInt(999999999) + "");
+      owner.setTelephone(random().nextInt(999999999) + "");
       List<Pet> pets = owner.getPets();
       // add a visit
       if (pets.size() > 0) {
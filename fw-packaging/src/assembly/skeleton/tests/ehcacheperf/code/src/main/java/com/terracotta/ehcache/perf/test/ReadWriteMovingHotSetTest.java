@@ -9,8 +9,9 @@ import org.springframework.samples.petclinic.Pet;
 import org.springframework.samples.petclinic.Visit;
 
 import com.terracotta.ehcache.perf.Configuration;
+import com.terracotta.ehcache.perf.HotSetConfiguration;
+import com.terracotta.ehcache.perf.test.hotset.DistributionType;
 import com.terracotta.ehcache.perf.test.hotset.HotSetDataTest;
-import com.terracotta.ehcache.perf.test.hotset.SimpleMovingDistribution;
 
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -28,20 +29,20 @@ public class ReadWriteMovingHotSetTest extends HotSetDataTest {
     Configuration conf = driver.getConfiguration();
     if (conf.isAddOwnersEnabled()){
       log.info("Setting Simple Moving Distribution w/ increasing key size.");
-      setDistribution(SimpleMovingDistribution
-                      .getSimpleMovingDistribution( conf.getHotSetConfiguration(),
-                                                    currKeyCount));
+      HotSetConfiguration hotsetConf = conf.getHotSetConfiguration();
+      setDistribution(DistributionType.simpleMoving.create(hotsetConf, hotsetConf.isDebugDistributionEnabled(),
+                                                           currKeyCount.get(), currKeyCount, getRandomStreams()));
     }
   }
 
   @Override
   public void doTestBody() {
-    int key = this.random.nextInt((int)currKeyCount.get());
+    int key = random().nextInt((int)currKeyCount.get());
     Owner owner = clinic.getOwner(key + 1);
     if (owner == null) { throw new RuntimeException("Key '" + key + "' has no value in the cache"); }
     if (doWrite()) {
       // This action now mutates the Owner and adds a visit.
-      owner.setTelephone(random.nextInt(999999999) + "");
+      owner.setTelephone(random().nextInt(999999999) + "");
       List<Pet> pets = owner.getPets();
       // add a visit
       if (pets.size() > 0) {
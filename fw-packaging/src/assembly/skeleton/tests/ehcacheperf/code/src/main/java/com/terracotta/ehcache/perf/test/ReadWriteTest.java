@@ -19,12 +19,12 @@ public class ReadWriteTest extends AbstractTest {
 
   @Override
   public void doTestBody() {
-    int key = this.random.nextInt(maxKeyValue);
-    Owner owner = clinic.getOwner(key + 1);
+    int key = nextKey();
+    Owner owner = clinic.getOwner(key);
     if (owner == null) { throw new RuntimeException("Key '" + key + "' has no value in the cache"); }
     if (doWrite()) {
       // This action now mutates the Owner and adds a visit.
-      owner.setTelephone(random.nextInt(999999999) + "");
+      owner.setTelephone(random().nextInt(999999999) + "");
       List<Pet> pets = owner.getPets();
       // add a visit
       if (pets.size() > 0) {
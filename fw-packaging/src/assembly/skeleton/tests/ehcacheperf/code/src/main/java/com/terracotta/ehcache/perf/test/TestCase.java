@@ -23,7 +23,9 @@ public enum TestCase {
   readWriteMovingHotSetTest,
   movingKeySetTest,
   cacheGetSizeTest,
-  cacheClearTest;
+  cacheClearTest,
+  traceReplayTest,
+  mixTest;
 
   public AbstractTest getTest() {
     return SpringFactory.getBean(name());
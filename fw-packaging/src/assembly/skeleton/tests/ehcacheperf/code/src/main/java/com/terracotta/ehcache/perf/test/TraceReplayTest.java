@@ -0,0 +1,169 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.ehcache.perf.test;
+
+import org.apache.log4j.Logger;
+import org.springframework.samples.petclinic.Owner;
+
+import com.terracotta.ehcache.perf.Configuration;
+import com.terracotta.ehcache.perf.trace.TraceReader;
+import com.terracotta.ehcache.perf.trace.TraceRecord;
+import com.terracotta.ehcache.perf.trace.TraceRecorder;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays the Clinic operations recorded with trace.record=true, one trace file per test thread, at the recorded pace
+ * scaled by trace.replay.speed (0 replays as fast as possible). A trace is replayed from the start again when it runs
+ * out before the end of the test.
+ * <p>
+ * Each node replays its own traces; when there are none (e.g. recorded on fewer nodes), the traces of all the nodes are
+ * shared out between the nodes.
+ */
+public class TraceReplayTest extends AbstractTest {
+
+  private static final Logger           log       = Logger.getLogger(TraceReplayTest.class);
+
+  private final AtomicInteger           nextTrace = new AtomicInteger();
+  private final ThreadLocal<Replayer>   replayers = new ThreadLocal<Replayer>();
+  private File[]                        traces;
+  private double                        speed;
+  private long                          replayStartNanos;
+
+  @Override
+  public void beforeTest() {
+    super.beforeTest();
+    Configuration conf = driver.getConfiguration();
+    speed = conf.getTraceReplaySpeed();
+    traces = findTraces(new File(conf.getTraceDir()));
+    if (traces.length == 0) { throw new RuntimeException("No trace file found in " + conf.getTraceDir()); }
+    log.info("Replaying " + traces.length + " traces at speed " + (speed > 0 ? String.valueOf(speed) : "max")
+             + ": " + Arrays.toString(traces));
+    if (traces.length != conf.getThreadNum()) {
+      log.warn(traces.length + " traces for " + conf.getThreadNum() + " threads: some traces are "
+               + (traces.length > conf.getThreadNum() ? "not replayed" : "replayed by more than one thread"));
+    }
+    replayStartNanos = System.nanoTime();
+  }
+
+  private File[] findTraces(File dir) {
+    final String prefix = TraceRecorder.fileNamePrefix(nodeId);
+    File[] own = listTraces(dir, prefix);
+    if (own.length > 0) return own;
+
+    File[] all = listTraces(dir, "trace-node");
+    List<File> share = new ArrayList<File>();
+    for (int i = nodeId; i < all.length; i += numberOfNodes) {
+      share.add(all[i]);
+    }
+    return share.toArray(new File[share.size()]);
+  }
+
+  private static File[] listTraces(File dir, final String prefix) {
+    File[] files = dir.listFiles(new FilenameFilter() {
+      public boolean accept(File d, String name) {
+        return name.startsWith(prefix) && name.endsWith(".bin");
+      }
+    });
+    if (files == null) return new File[0];
+    Arrays.sort(files);
+    return files;
+  }
+
+  @Override
+  public void doTestBody() {
+    Replayer replayer = replayers.get();
+    if (replayer == null) {
+      File trace = traces[nextTrace.getAndIncrement() % traces.length];
+      try {
+        replayer = new Replayer(new TraceReader(trace));
+      } catch (IOException e) {
+        throw new RuntimeException("Cannot open trace " + trace, e);
+      }
+      replayers.set(replayer);
+    }
+    try {
+      replayer.replayNext();
+    } catch (IOException e) {
+      throw new RuntimeException("Error reading trace " + replayer.reader.getFile(), e);
+    }
+  }
+
+  @Override
+  public void afterTestForEachAppThread() {
+    Replayer replayer = replayers.get();
+    if (replayer != null) {
+      try {
+        replayer.reader.close();
+      } catch (IOException e) {
+        log.warn("Error closing trace " + replayer.reader.getFile(), e);
+      }
+    }
+  }
+
+  private class Replayer {
+    private final TraceReader reader;
+    private final TraceRecord record = new TraceRecord();
+    private long              startNanos = replayStartNanos;
+    private Owner             owner;
+
+    Replayer(TraceReader reader) {
+      this.reader = reader;
+    }
+
+    void replayNext() throws IOException {
+      if (!reader.next(record)) {
+        log.info("End of trace " + reader.getFile().getName() + ", replaying it again");
+        reader.rewind();
+        startNanos = System.nanoTime();
+        if (!reader.next(record)) { throw new RuntimeException("Empty trace " + reader.getFile()); }
+      }
+      if (speed > 0) {
+        long due = startNanos + (long) (record.getNanos() / speed);
+        long wait;
+        while ((wait = due - System.nanoTime()) > 0) {
+          LockSupport.parkNanos(wait);
+        }
+      }
+      int key = record.getKey();
+      switch (record.getOp()) {
+        case getOwner:
+          owner = clinic.getOwner(key);
+          break;
+        case loadOwner:
+          owner = clinic.loadOwner(key);
+          break;
+        case storeOwner:
+          clinic.storeOwner(ownerFor(key));
+          break;
+        case refreshCache:
+          clinic.refreshCache(ownerFor(key));
+          break;
+        case removeOwner:
+          clinic.removeOwner(key);
+          owner = null;
+          break;
+        default:
+          throw new AssertionError(record.getOp());
+      }
+    }
+
+    /**
+     * Writes are recorded after the read of the same owner, so the last owner read is reused when it matches.
+     */
+    private Owner ownerFor(int key) {
+      if (owner == null || owner.getId() == null || owner.getId().intValue() != key) {
+        owner = clinic.getOwner(key);
+      }
+      return owner;
+    }
+  }
+}
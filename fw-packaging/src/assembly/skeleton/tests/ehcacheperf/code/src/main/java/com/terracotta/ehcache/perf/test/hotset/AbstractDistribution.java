@@ -0,0 +1,52 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.ehcache.perf.test.hotset;
+
+import com.terracotta.util.RandomStreams;
+
+import java.util.Random;
+
+/**
+ * Base class of the distributions drawing from per-thread random streams. Samples are in [0, dataSetSize).
+ */
+public abstract class AbstractDistribution implements Distribution {
+
+  protected final long            dataSetSize;
+  private final RandomStreams     randoms;
+  private final boolean           debugDistributionEnabled;
+  private final DistributionDebug distribution;
+
+  protected AbstractDistribution(boolean debugDistributionEnabled, long dataSetSize, RandomStreams randoms) {
+    if (dataSetSize <= 0 || dataSetSize > Integer.MAX_VALUE) { throw new IllegalArgumentException(
+                                                                                                  "invalid data set size: "
+                                                                                                      + dataSetSize); }
+    this.dataSetSize = dataSetSize;
+    this.randoms = randoms;
+    this.debugDistributionEnabled = debugDistributionEnabled;
+    this.distribution = new DistributionDebug(dataSetSize);
+  }
+
+  protected Random random() {
+    return randoms.get();
+  }
+
+  /**
+   * Records the sample for debugging, if enabled, and returns it. Samples beyond the initial data set size (keys added
+   * during the test) are not recorded.
+   */
+  protected int sampled(long sample, boolean hot) {
+    if (debugDistributionEnabled && sample < dataSetSize) {
+      distribution.addSample(sample, hot);
+    }
+    return (int) sample;
+  }
+
+  public boolean isDebugDistributionEnabled() {
+    return debugDistributionEnabled;
+  }
+
+  public DistributionDebug getDistributionDebug() {
+    return distribution;
+  }
+}
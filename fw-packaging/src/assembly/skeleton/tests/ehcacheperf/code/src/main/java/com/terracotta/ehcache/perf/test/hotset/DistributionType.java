@@ -0,0 +1,62 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.ehcache.perf.test.hotset;
+
+import org.terracotta.util.ClusteredAtomicLong;
+
+import com.terracotta.ehcache.perf.HotSetConfiguration;
+import com.terracotta.util.DefaultAtomicLongImpl;
+import com.terracotta.util.RandomStreams;
+
+/**
+ * Key distributions selectable with hotset.distribution-type (hotset tests) or key.distribution (other tests).
+ */
+public enum DistributionType {
+  simple,
+  simpleMoving,
+  uniform,
+  zipfian,
+  scrambledZipfian,
+  latest,
+  exponential,
+  multiHotspot;
+
+  /**
+   * @param debug whether samples are recorded in the {@link DistributionDebug} of the distribution
+   * @param dataSetSize samples are in [0, dataSetSize)
+   * @param keyCount current number of keys, only used by the moving and latest distributions; may be null, in which
+   *        case it is fixed to dataSetSize
+   */
+  public Distribution create(HotSetConfiguration config, boolean debug, long dataSetSize,
+                             ClusteredAtomicLong keyCount, RandomStreams randoms) {
+    if (keyCount == null) {
+      keyCount = new DefaultAtomicLongImpl();
+      keyCount.set(dataSetSize);
+    }
+    switch (this) {
+      case simple:
+        return new SimpleDistribution(debug, config.getSimpleDistributionHotPercent(), config
+            .getSimpleDistributionHotSetDataPercent(), dataSetSize, randoms);
+      case simpleMoving:
+        return new SimpleMovingDistribution(debug, config.getSimpleDistributionHotPercent(), config
+            .getSimpleDistributionHotSetDataPercent(), keyCount, config.getHotsetPeriod(), randoms);
+      case uniform:
+        return new UniformDistribution(debug, dataSetSize, randoms);
+      case zipfian:
+      case scrambledZipfian:
+        return new ZipfianDistribution(debug, dataSetSize, config.getZipfianSkew(), this == scrambledZipfian, config
+            .getSimpleDistributionHotSetDataPercent(), randoms);
+      case latest:
+        return new LatestDistribution(debug, keyCount, config.getZipfianSkew(), config
+            .getSimpleDistributionHotSetDataPercent(), randoms);
+      case exponential:
+        return new ExponentialDistribution(debug, dataSetSize, config.getExponentialPercentile(), config
+            .getExponentialFractionPercent(), randoms);
+      case multiHotspot:
+        return new MultiHotspotDistribution(debug, dataSetSize, config.getHotspots(), randoms);
+      default:
+        throw new AssertionError(this);
+    }
+  }
+}
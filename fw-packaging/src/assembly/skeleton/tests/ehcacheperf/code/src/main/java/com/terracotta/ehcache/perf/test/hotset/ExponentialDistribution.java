@@ -0,0 +1,36 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.ehcache.perf.test.hotset;
+
+import com.terracotta.util.RandomStreams;
+
+/**
+ * Exponentially decaying popularity from the lowest keys: percentile % of the samples fall in the first
+ * fractionPercent % of the key space (e.g. 95 and 10).
+ */
+public class ExponentialDistribution extends AbstractDistribution {
+
+  private final double gamma;
+  private final long   hotLimit;
+
+  public ExponentialDistribution(boolean debugDistributionEnabled, long dataSetSize, double percentile,
+                                 double fractionPercent, RandomStreams randoms) {
+    super(debugDistributionEnabled, dataSetSize, randoms);
+    if (percentile <= 0 || percentile >= 100) { throw new IllegalArgumentException("percentile must be in (0, 100): "
+                                                                                   + percentile); }
+    if (fractionPercent <= 0 || fractionPercent > 100) { throw new IllegalArgumentException(
+                                                                                            "fraction must be in (0, 100]: "
+                                                                                                + fractionPercent); }
+    this.hotLimit = Math.max(1, (long) (dataSetSize * fractionPercent / 100));
+    this.gamma = -Math.log(1.0 - percentile / 100.0) / hotLimit;
+  }
+
+  public int getNextSample() {
+    long sample;
+    do {
+      sample = (long) (-Math.log(1.0 - random().nextDouble()) / gamma);
+    } while (sample >= dataSetSize);
+    return sampled(sample, sample < hotLimit);
+  }
+}
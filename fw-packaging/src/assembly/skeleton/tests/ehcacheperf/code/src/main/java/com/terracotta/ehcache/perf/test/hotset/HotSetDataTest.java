@@ -12,19 +12,14 @@ import com.terracotta.ehcache.perf.test.AbstractTest;
  */
 public abstract class HotSetDataTest extends AbstractTest {
 
-  enum DistributionType {
-    simple,
-    simpleMoving
-  }
   private Distribution distribution;
 
   public Distribution getDistribution() {
     if(distribution == null) {
       HotSetConfiguration hotsetConf = driver.getConfiguration().getHotSetConfiguration();
-      if (hotsetConf.getDistributionType().equals(DistributionType.simpleMoving))
-        distribution = SimpleMovingDistribution.getSimpleMovingDistribution(hotsetConf);
-      else
-        distribution = SimpleDistribution.getSimpleDistribution(hotsetConf);
+      DistributionType type = DistributionType.valueOf(hotsetConf.getDistributionType());
+      distribution = type.create(hotsetConf, hotsetConf.isDebugDistributionEnabled(), hotsetConf
+          .getTotalDataSetSize(), null, getRandomStreams());
     }
     return distribution;
   }
@@ -0,0 +1,35 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.ehcache.perf.test.hotset;
+
+import org.terracotta.util.ClusteredAtomicLong;
+
+import com.terracotta.util.RandomStreams;
+
+/**
+ * Favors the most recently inserted keys: a zipfian rank is subtracted from the current key count, which grows when
+ * owners get added during the test (addOwners.enabled).
+ */
+public class LatestDistribution extends AbstractDistribution {
+
+  private final ZipfianGenerator    zipfian;
+  private final ClusteredAtomicLong keyCount;
+  private final long                hotRanks;
+
+  public LatestDistribution(boolean debugDistributionEnabled, ClusteredAtomicLong keyCount, double skew,
+                            int hotSetDataPercent, RandomStreams randoms) {
+    super(debugDistributionEnabled, keyCount.get(), randoms);
+    this.keyCount = keyCount;
+    this.zipfian = new ZipfianGenerator(keyCount.get(), skew);
+    this.hotRanks = (keyCount.get() * hotSetDataPercent) / 100;
+  }
+
+  public int getNextSample() {
+    long latest = keyCount.get();
+    long rank = zipfian.nextRank(random());
+    long sample = latest - 1 - rank;
+    if (sample < 0) sample += latest;
+    return sampled(sample, rank < hotRanks);
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.ehcache.perf.test.hotset;
+
+import com.terracotta.util.RandomStreams;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Several hot ranges, each receiving a share of the accesses; the remaining accesses are uniform over the whole key
+ * space.
+ * <p>
+ * Hotspots are given as a comma separated list of <code>startPercent:sizePercent:accessPercent</code>, e.g.
+ * <code>0:5:40,50:10:30</code> sends 40% of the accesses to the first 5% of the keys, 30% to the 10% of keys starting
+ * in the middle and the remaining 30% anywhere.
+ */
+public class MultiHotspotDistribution extends AbstractDistribution {
+
+  private final long[] starts;
+  private final long[] sizes;
+  // cumulative access share of the hotspots, in percent
+  private final double[] cumulativeAccess;
+
+  public MultiHotspotDistribution(boolean debugDistributionEnabled, long dataSetSize, String hotspots,
+                                  RandomStreams randoms) {
+    super(debugDistributionEnabled, dataSetSize, randoms);
+    List<double[]> specs = parse(hotspots);
+    starts = new long[specs.size()];
+    sizes = new long[specs.size()];
+    cumulativeAccess = new double[specs.size()];
+    double access = 0;
+    for (int i = 0; i < specs.size(); i++) {
+      double[] spec = specs.get(i);
+      starts[i] = Math.min(dataSetSize - 1, (long) (dataSetSize * spec[0] / 100));
+      sizes[i] = Math.max(1, Math.min(dataSetSize - starts[i], (long) (dataSetSize * spec[1] / 100)));
+      access += spec[2];
+      cumulativeAccess[i] = access;
+    }
+    if (access > 100) { throw new IllegalArgumentException("hotspots access percentages add up to more than 100: "
+                                                           + hotspots); }
+  }
+
+  private static List<double[]> parse(String hotspots) {
+    List<double[]> specs = new ArrayList<double[]>();
+    for (String hotspot : hotspots.split(",")) {
+      if (hotspot.trim().length() == 0) continue;
+      String[] parts = hotspot.trim().split(":");
+      if (parts.length != 3) { throw new IllegalArgumentException(
+                                                                  "hotspot must be startPercent:sizePercent:accessPercent: "
+                                                                      + hotspot); }
+      specs.add(new double[] { Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+          Double.parseDouble(parts[2]) });
+    }
+    if (specs.isEmpty()) { throw new IllegalArgumentException("no hotspot defined"); }
+    return specs;
+  }
+
+  public int getNextSample() {
+    Random random = random();
+    double dice = random.nextDouble() * 100;
+    for (int i = 0; i < cumulativeAccess.length; i++) {
+      if (dice < cumulativeAccess[i]) { return sampled(starts[i] + (long) (random.nextDouble() * sizes[i]), true); }
+    }
+    return sampled((long) (random.nextDouble() * dataSetSize), false);
+  }
+}
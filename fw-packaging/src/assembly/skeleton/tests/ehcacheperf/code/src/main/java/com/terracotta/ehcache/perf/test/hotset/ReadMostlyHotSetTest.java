@@ -28,7 +28,7 @@ public class ReadMostlyHotSetTest extends HotSetDataTest {
     if (owner == null) { throw new RuntimeException("Key '" + key + "' has no value in the cache"); }
     if (doWrite()) {
       // This action now mutates the Owner and adds a visit.
-      owner.setTelephone(random.nextInt(999999999) + "");
+      owner.setTelephone(random().nextInt(999999999) + "");
       List<Pet> pets = owner.getPets();
       // add a visit
       if (pets.size() > 0) {
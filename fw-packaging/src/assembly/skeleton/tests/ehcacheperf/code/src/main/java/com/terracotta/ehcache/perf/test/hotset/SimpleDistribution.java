@@ -7,6 +7,7 @@ package com.terracotta.ehcache.perf.test.hotset;
 import java.util.Random;
 
 import com.terracotta.ehcache.perf.HotSetConfiguration;
+import com.terracotta.util.RandomStreams;
 import com.terracotta.util.RangeUtil;
 
 /**
@@ -17,7 +18,7 @@ public class SimpleDistribution implements Distribution {
   private final int         hotPercent;
   private final RangeUtil   hotData;
   private final RangeUtil   nonHotData;
-  private final Random      random = new Random(System.currentTimeMillis());
+  private final RandomStreams randoms;
   private final boolean     debugDistributionEnabled;
   private DistributionDebug distribution;
 
@@ -27,6 +28,13 @@ public class SimpleDistribution implements Distribution {
   }
 
   public SimpleDistribution(boolean debugDistributionEnabled, int hotPercent, int hotsetDataPercent, long dataSetSize) {
+    this(debugDistributionEnabled, hotPercent, hotsetDataPercent, dataSetSize,
+         new RandomStreams(System.currentTimeMillis()));
+  }
+
+  public SimpleDistribution(boolean debugDistributionEnabled, int hotPercent, int hotsetDataPercent, long dataSetSize,
+                            RandomStreams randoms) {
+    this.randoms = randoms;
     this.hotPercent = hotPercent;
     long hotSetMax = (hotsetDataPercent * dataSetSize) / 100;
     this.hotData = new RangeUtil(0, hotSetMax);
@@ -35,17 +43,21 @@ public class SimpleDistribution implements Distribution {
     this.distribution = new DistributionDebug(dataSetSize);
   }
 
+  private Random random() {
+    return randoms.get();
+  }
+
   public int getNextSample() {
     int rv;
     boolean hot;
-    if ((random.nextInt(100) + 1) > hotPercent) {
+    if ((random().nextInt(100) + 1) > hotPercent) {
       // hit a nonHot data
-      int rand = random.nextInt((int) (nonHotData.getMax() - nonHotData.getMin() + 1));
+      int rand = random().nextInt((int) (nonHotData.getMax() - nonHotData.getMin() + 1));
       rv = (int) (nonHotData.getMin() + rand);
       hot = false;
     } else {
       // hit a hot data
-      rv = random.nextInt((int) hotData.getMax() + 1);
+      rv = random().nextInt((int) hotData.getMax() + 1);
       hot = true;
     }
     if (debugDistributionEnabled) {
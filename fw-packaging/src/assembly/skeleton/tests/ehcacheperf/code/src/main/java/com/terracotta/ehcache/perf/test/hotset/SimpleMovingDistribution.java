@@ -7,6 +7,7 @@ import org.terracotta.util.ClusteredAtomicLong;
 
 import com.terracotta.ehcache.perf.HotSetConfiguration;
 import com.terracotta.util.DefaultAtomicLongImpl;
+import com.terracotta.util.RandomStreams;
 import com.terracotta.util.RangeUtil;
 
 import java.util.Random;
@@ -14,7 +15,7 @@ import java.util.Random;
 public class SimpleMovingDistribution implements Distribution {
 
   private final int         hotPercent;
-  private final Random      random = new Random(System.currentTimeMillis());
+  private final RandomStreams randoms;
   private final boolean     debugDistributionEnabled;
   private final int         hotsetPeriodInSecs;
   private final int         hotsetDataPercent;
@@ -38,6 +39,13 @@ public class SimpleMovingDistribution implements Distribution {
   }
 
   public SimpleMovingDistribution(boolean debugDistributionEnabled, int hotPercent, int hotsetDataPercent, ClusteredAtomicLong dataSetSize, int hotsetPeriod) {
+    this(debugDistributionEnabled, hotPercent, hotsetDataPercent, dataSetSize, hotsetPeriod,
+         new RandomStreams(System.currentTimeMillis()));
+  }
+
+  public SimpleMovingDistribution(boolean debugDistributionEnabled, int hotPercent, int hotsetDataPercent,
+                                  ClusteredAtomicLong dataSetSize, int hotsetPeriod, RandomStreams randoms) {
+    this.randoms = randoms;
     this.hotPercent = hotPercent;
     this.dataSetSize = dataSetSize;
     this.hotsetDataPercent = hotsetDataPercent;
@@ -82,15 +90,19 @@ public class SimpleMovingDistribution implements Distribution {
    * rnd = 25 (> hotRange1): sample = 30 + 25 - 5 = 50
    */
 
+  private Random random() {
+    return randoms.get();
+  }
+
   public int getNextSample() {
     int rv;
     boolean hot;
-    if ((random.nextInt(100) + 1) > hotPercent) {
+    if ((random().nextInt(100) + 1) > hotPercent) {
       // hit a nonHot data
       long nonHotDataRange1 = nonHotData[0].getMax() - nonHotData[0].getMin();
       long nonHotDataRange2 = nonHotData[1].getMax() - nonHotData[1].getMin();
 
-      int rand = random.nextInt((int) (nonHotDataRange1 + nonHotDataRange2));
+      int rand = random().nextInt((int) (nonHotDataRange1 + nonHotDataRange2));
       rv = (int) ((rand > nonHotDataRange1)? nonHotData[1].getMin() + rand - nonHotDataRange1: nonHotData[0].getMin() + rand);
       hot = false;
     } else {
@@ -98,7 +110,7 @@ public class SimpleMovingDistribution implements Distribution {
       long hotDataRange1 = hotData[0].getMax() - hotData[0].getMin();
       long hotDataRange2 = hotData[1].getMax() - hotData[1].getMin();
 
-      int rand = random.nextInt((int) (hotDataRange1 + hotDataRange2));
+      int rand = random().nextInt((int) (hotDataRange1 + hotDataRange2));
       rv = (int) ((rand > hotDataRange1)? hotData[1].getMin() + rand - hotDataRange1: hotData[0].getMin() + rand);
       hot = true;
     }
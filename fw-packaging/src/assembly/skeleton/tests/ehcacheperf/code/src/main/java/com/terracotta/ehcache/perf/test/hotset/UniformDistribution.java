@@ -0,0 +1,20 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.ehcache.perf.test.hotset;
+
+import com.terracotta.util.RandomStreams;
+
+/**
+ * Every key is equally likely. All samples are reported as hot.
+ */
+public class UniformDistribution extends AbstractDistribution {
+
+  public UniformDistribution(boolean debugDistributionEnabled, long dataSetSize, RandomStreams randoms) {
+    super(debugDistributionEnabled, dataSetSize, randoms);
+  }
+
+  public int getNextSample() {
+    return sampled(random().nextInt((int) dataSetSize), true);
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.ehcache.perf.test.hotset;
+
+import com.terracotta.util.RandomStreams;
+
+/**
+ * Zipfian over the key space, the lowest keys being the most popular. When scrambled, ranks are hashed over the key
+ * space so that popular keys are spread out instead of clustered at the start of the range (and of each partition).
+ * <p>
+ * Samples of rank lower than hotSetDataPercent of the data set are reported as hot.
+ */
+public class ZipfianDistribution extends AbstractDistribution {
+
+  private static final long      FNV_OFFSET_BASIS_64 = 0xCBF29CE484222325L;
+  private static final long      FNV_PRIME_64        = 1099511628211L;
+
+  private final ZipfianGenerator zipfian;
+  private final boolean          scrambled;
+  private final long             hotRanks;
+
+  public ZipfianDistribution(boolean debugDistributionEnabled, long dataSetSize, double skew, boolean scrambled,
+                             int hotSetDataPercent, RandomStreams randoms) {
+    super(debugDistributionEnabled, dataSetSize, randoms);
+    this.zipfian = new ZipfianGenerator(dataSetSize, skew);
+    this.scrambled = scrambled;
+    this.hotRanks = (dataSetSize * hotSetDataPercent) / 100;
+  }
+
+  public int getNextSample() {
+    long rank = zipfian.nextRank(random());
+    long sample = scrambled ? (fnvHash64(rank) % dataSetSize) : rank;
+    return sampled(sample, rank < hotRanks);
+  }
+
+  static long fnvHash64(long value) {
+    long hash = FNV_OFFSET_BASIS_64;
+    for (int i = 0; i < 8; i++) {
+      hash ^= value & 0xFF;
+      hash *= FNV_PRIME_64;
+      value >>>= 8;
+    }
+    return Math.abs(hash == Long.MIN_VALUE ? 0 : hash);
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.ehcache.perf.test.hotset;
+
+import java.util.Random;
+
+/**
+ * Zipfian ranks in [0, items): rank 0 is the most popular, the popularity of rank i is proportional to 1 / (i + 1)^skew.
+ * <p>
+ * Uses the constant time algorithm from Gray et al., "Quickly Generating Billion-Record Synthetic Databases" (also
+ * used by YCSB); only the construction is linear in the number of items. Stateless once built, so it can be shared
+ * by all threads.
+ */
+public class ZipfianGenerator {
+
+  private final long   items;
+  private final double skew;
+  private final double alpha;
+  private final double zetan;
+  private final double eta;
+  private final double halfPowSkew;
+
+  /**
+   * @param skew between 0 (exclusive, close to uniform) and 1 (exclusive, very skewed), 0.99 is the usual value
+   */
+  public ZipfianGenerator(long items, double skew) {
+    if (items < 1) { throw new IllegalArgumentException("items must be >= 1: " + items); }
+    if (skew <= 0 || skew >= 1) { throw new IllegalArgumentException("skew must be in (0, 1): " + skew); }
+    this.items = items;
+    this.skew = skew;
+    this.alpha = 1.0 / (1.0 - skew);
+    this.zetan = zeta(items, skew);
+    double zeta2 = zeta(2, skew);
+    this.eta = (1 - Math.pow(2.0 / items, 1 - skew)) / (1 - zeta2 / zetan);
+    this.halfPowSkew = 1 + Math.pow(0.5, skew);
+  }
+
+  private static double zeta(long n, double theta) {
+    double sum = 0;
+    for (long i = 1; i <= n; i++) {
+      sum += 1 / Math.pow(i, theta);
+    }
+    return sum;
+  }
+
+  public long nextRank(Random random) {
+    double u = random.nextDouble();
+    double uz = u * zetan;
+    if (uz < 1.0) return 0;
+    if (uz < halfPowSkew) return Math.min(1, items - 1);
+    long rank = (long) (items * Math.pow(eta * u - eta + 1, alpha));
+    return Math.min(rank, items - 1);
+  }
+
+  public long getItems() {
+    return items;
+  }
+
+  public double getSkew() {
+    return skew;
+  }
+}
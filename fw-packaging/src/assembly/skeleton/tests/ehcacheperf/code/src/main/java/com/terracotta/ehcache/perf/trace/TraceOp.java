@@ -0,0 +1,22 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.ehcache.perf.trace;
+
+/**
+ * Clinic operations captured in a trace. The ordinal is what gets written, so new operations must be appended.
+ */
+public enum TraceOp {
+  getOwner,
+  loadOwner,
+  storeOwner,
+  refreshCache,
+  removeOwner;
+
+  private static final TraceOp[] VALUES = values();
+
+  public static TraceOp fromCode(int code) {
+    if (code < 0 || code >= VALUES.length) { throw new IllegalArgumentException("unknown trace op: " + code); }
+    return VALUES[code];
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.ehcache.perf.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Streams the records of a trace file written by {@link TraceWriter}, mapping it read-only one window at a time.
+ * Not thread safe: every replaying thread owns its reader.
+ */
+public class TraceReader {
+
+  private static final long    WINDOW_SIZE = (64L * 1024 * 1024 / TraceRecord.SIZE) * TraceRecord.SIZE;
+
+  private final File           file;
+  private final RandomAccessFile raf;
+  private final FileChannel    channel;
+  private final long           startMillis;
+  private final long           recordCount;
+  private MappedByteBuffer     window;
+  private long                 windowPosition;
+  private long                 read;
+
+  public TraceReader(File file) throws IOException {
+    this.file = file;
+    this.raf = new RandomAccessFile(file, "r");
+    this.channel = raf.getChannel();
+    long length = channel.size();
+    if (length < TraceWriter.HEADER_SIZE) { throw new IOException("Not a trace file (too short): " + file); }
+    MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, TraceWriter.HEADER_SIZE);
+    if (header.getInt() != TraceWriter.MAGIC) { throw new IOException("Not a trace file: " + file); }
+    int version = header.getInt();
+    if (version != TraceWriter.VERSION) { throw new IOException("Unsupported trace version " + version + ": " + file); }
+    this.startMillis = header.getLong();
+    this.recordCount = (length - TraceWriter.HEADER_SIZE) / TraceRecord.SIZE;
+    rewind();
+  }
+
+  /**
+   * Restarts from the first record.
+   */
+  public void rewind() throws IOException {
+    read = 0;
+    windowPosition = TraceWriter.HEADER_SIZE;
+    mapWindow();
+  }
+
+  private void mapWindow() throws IOException {
+    long remaining = (recordCount - read) * TraceRecord.SIZE;
+    window = channel.map(FileChannel.MapMode.READ_ONLY, windowPosition, Math.min(remaining, WINDOW_SIZE));
+  }
+
+  /**
+   * Reads the next record into the given one.
+   *
+   * @return false when the end of the trace has been reached
+   */
+  public boolean next(TraceRecord record) throws IOException {
+    if (read == recordCount) return false;
+    if (!window.hasRemaining()) {
+      windowPosition += window.capacity();
+      mapWindow();
+    }
+    record.nanos = window.getLong();
+    record.key = window.getInt();
+    record.valueSize = window.getInt();
+    record.op = TraceOp.fromCode(window.get());
+    read++;
+    return true;
+  }
+
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * @return wall-clock time the trace was started at, in millis since epoch
+   */
+  public long getStartMillis() {
+    return startMillis;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public void close() throws IOException {
+    window = null;
+    raf.close();
+  }
+}
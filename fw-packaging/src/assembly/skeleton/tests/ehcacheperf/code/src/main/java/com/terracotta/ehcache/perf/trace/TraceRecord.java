@@ -0,0 +1,50 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.ehcache.perf.trace;
+
+/**
+ * One traced operation. Instances are reused by {@link TraceReader} to keep the replay loop allocation free.
+ */
+public class TraceRecord {
+
+  /**
+   * Size of a record in the trace file: timestamp (long), key (int), value size (int), op (byte)
+   */
+  public static final int SIZE = 8 + 4 + 4 + 1;
+
+  long                    nanos;
+  int                     key;
+  int                     valueSize;
+  TraceOp                 op;
+
+  /**
+   * @return nanoseconds since the start of the trace
+   */
+  public long getNanos() {
+    return nanos;
+  }
+
+  /**
+   * @return owner id
+   */
+  public int getKey() {
+    return key;
+  }
+
+  /**
+   * @return number of cache entries making up the owner (owner, pets and visits), 0 when unknown
+   */
+  public int getValueSize() {
+    return valueSize;
+  }
+
+  public TraceOp getOp() {
+    return op;
+  }
+
+  @Override
+  public String toString() {
+    return op + "(" + key + ") size: " + valueSize + " at " + nanos + "ns";
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.ehcache.perf.trace;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records the Clinic operations of the test threads, one {@link TraceWriter} per thread, so the exact workload can be
+ * replayed later by the traceReplayTest.
+ * <p>
+ * Files are named trace-node&lt;id&gt;-&lt;thread name&gt;.bin. I/O errors are logged and stop the recording, they never fail
+ * the test.
+ */
+public class TraceRecorder {
+
+  private static final Logger              log       = Logger.getLogger(TraceRecorder.class);
+  private static final TraceRecorder       _instance = new TraceRecorder();
+
+  private final List<TraceWriter>          writers   = new CopyOnWriteArrayList<TraceWriter>();
+  private final ThreadLocal<TraceWriter>   local     = new ThreadLocal<TraceWriter>();
+  private volatile boolean                 recording;
+  private File                             dir;
+  private int                              nodeId;
+  private long                             startMillis;
+  private long                             startNanos;
+
+  public static TraceRecorder getInstance() {
+    return _instance;
+  }
+
+  public static String fileNamePrefix(int nodeId) {
+    return "trace-node" + nodeId + "-";
+  }
+
+  public boolean isRecording() {
+    return recording;
+  }
+
+  public synchronized void start(File traceDir, int node) {
+    if (recording) return;
+    if (!traceDir.isDirectory() && !traceDir.mkdirs()) {
+      log.error("Cannot create trace directory " + traceDir.getAbsolutePath() + ", not recording");
+      return;
+    }
+    this.dir = traceDir;
+    this.nodeId = node;
+    this.startMillis = System.currentTimeMillis();
+    this.startNanos = System.nanoTime();
+    this.recording = true;
+    log.info("Recording traces to " + traceDir.getAbsolutePath());
+  }
+
+  /**
+   * @param nanoTime {@link System#nanoTime()} at the start of the operation
+   */
+  public void record(TraceOp op, int key, int valueSize, long nanoTime) {
+    if (!recording) return;
+    TraceWriter writer = local.get();
+    try {
+      if (writer == null) {
+        writer = newWriter();
+        if (writer == null) return;
+        local.set(writer);
+      }
+      writer.append(op, key, valueSize, nanoTime);
+    } catch (IOException e) {
+      log.error("Error writing trace, recording stopped", e);
+      recording = false;
+    }
+  }
+
+  private synchronized TraceWriter newWriter() throws IOException {
+    if (!recording) return null;
+    File file = new File(dir, fileNamePrefix(nodeId) + Thread.currentThread().getName() + ".bin");
+    TraceWriter writer = new TraceWriter(file, startMillis, startNanos);
+    writers.add(writer);
+    return writer;
+  }
+
+  /**
+   * Stops recording and closes all the trace files.
+   */
+  public synchronized void stop() {
+    if (writers.isEmpty() && !recording) return;
+    recording = false;
+    long total = 0;
+    for (TraceWriter writer : writers) {
+      try {
+        writer.close();
+        total += writer.getRecordCount();
+      } catch (IOException e) {
+        log.error("Error closing trace " + writer.getFile(), e);
+      }
+    }
+    log.info(String.format("Recorded %d operations in %d trace files", total, writers.size()));
+    writers.clear();
+  }
+}
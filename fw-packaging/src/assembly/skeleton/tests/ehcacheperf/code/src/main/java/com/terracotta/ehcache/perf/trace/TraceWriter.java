@@ -0,0 +1,83 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.ehcache.perf.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Appends records to a trace file through a memory-mapped window, so recording is a few stores in the page cache and
+ * never a system call on the hot path. The file grows by one window at a time and is truncated to its content on
+ * {@link #close()}.
+ * <p>
+ * A trace file starts with a header: magic (int), version (int), wall-clock start time in millis (long).
+ */
+public class TraceWriter {
+
+  public static final int      MAGIC       = 0x54524345;                               // "TRCE"
+  public static final int      VERSION     = 1;
+  public static final int      HEADER_SIZE = 4 + 4 + 8;
+
+  private static final int     WINDOW_SIZE = (16 * 1024 * 1024 / TraceRecord.SIZE) * TraceRecord.SIZE;
+
+  private final File           file;
+  private final long           startNanos;
+  private final RandomAccessFile raf;
+  private final FileChannel    channel;
+  private MappedByteBuffer     window;
+  private long                 windowPosition;
+  private long                 records;
+  private boolean              closed;
+
+  /**
+   * @param startNanos {@link System#nanoTime()} value the record timestamps are relative to
+   */
+  public TraceWriter(File file, long startMillis, long startNanos) throws IOException {
+    this.file = file;
+    this.startNanos = startNanos;
+    this.raf = new RandomAccessFile(file, "rw");
+    this.raf.setLength(0);
+    this.channel = raf.getChannel();
+    this.windowPosition = 0;
+    this.window = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + WINDOW_SIZE);
+    window.putInt(MAGIC).putInt(VERSION).putLong(startMillis);
+  }
+
+  public synchronized void append(TraceOp op, int key, int valueSize, long nanoTime) throws IOException {
+    if (closed) return;
+    if (window.remaining() < TraceRecord.SIZE) {
+      windowPosition += window.position();
+      window = channel.map(FileChannel.MapMode.READ_WRITE, windowPosition, WINDOW_SIZE);
+    }
+    window.putLong(nanoTime - startNanos).putInt(key).putInt(valueSize).put((byte) op.ordinal());
+    records++;
+  }
+
+  public synchronized long getRecordCount() {
+    return records;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public synchronized void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    long length = windowPosition + window.position();
+    window.force();
+    window = null;
+    try {
+      channel.truncate(length);
+    } catch (IOException e) {
+      // the mapping may still be in place (e.g. on Windows), readers stop at the last complete record anyway
+      raf.setLength(length);
+    } finally {
+      raf.close();
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * Samples indexes according to fixed weights in constant time, whatever the number of weights (Vose's alias method):
+ * one random int picks a column, one random double decides between the column and its alias.
+ */
+public class AliasTable {
+
+  private final double[] probability;
+  private final int[]    alias;
+
+  /**
+   * @param weights non negative weights, at least one of them positive
+   */
+  public AliasTable(double[] weights) {
+    int n = weights.length;
+    if (n == 0) { throw new IllegalArgumentException("no weights"); }
+    double total = 0;
+    for (double weight : weights) {
+      if (weight < 0 || Double.isNaN(weight)) { throw new IllegalArgumentException("invalid weight: " + weight); }
+      total += weight;
+    }
+    if (total <= 0) { throw new IllegalArgumentException("weights add up to 0"); }
+
+    probability = new double[n];
+    alias = new int[n];
+    double[] scaled = new double[n];
+    Deque<Integer> small = new ArrayDeque<Integer>();
+    Deque<Integer> large = new ArrayDeque<Integer>();
+    for (int i = 0; i < n; i++) {
+      scaled[i] = weights[i] * n / total;
+      if (scaled[i] < 1.0) {
+        small.push(i);
+      } else {
+        large.push(i);
+      }
+    }
+    while (!small.isEmpty() && !large.isEmpty()) {
+      int less = small.pop();
+      int more = large.pop();
+      probability[less] = scaled[less];
+      alias[less] = more;
+      scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+      if (scaled[more] < 1.0) {
+        small.push(more);
+      } else {
+        large.push(more);
+      }
+    }
+    // what is left is 1 give or take rounding errors
+    while (!large.isEmpty()) {
+      probability[large.pop()] = 1.0;
+    }
+    while (!small.isEmpty()) {
+      probability[small.pop()] = 1.0;
+    }
+  }
+
+  public int next(Random random) {
+    int column = random.nextInt(probability.length);
+    return random.nextDouble() < probability[column] ? column : alias[column];
+  }
+
+  public int size() {
+    return probability.length;
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed rate schedule of intended start times for open-loop load generation.
+ * <p>
+ * Start times are derived from the schedule only, never from when the previous operation completed: a thread that
+ * falls behind (slow server, GC pause...) issues the late operations back to back, and the latency measured from
+ * the intended start time includes the time they spent waiting for their turn.
+ */
+public class IntendedStartSchedule {
+
+  private static final double MAX_INTERVAL_NANOS = TimeUnit.DAYS.toNanos(1);
+
+  private final long          intervalNanos;
+  private long                lastStart;
+  private long                nextStart;
+
+  /**
+   * @param opsPerSec rate of this schedule
+   * @param initialDelayNanos offset of the first start time, used to spread several schedules over one interval
+   */
+  public IntendedStartSchedule(double opsPerSec, long initialDelayNanos) {
+    if (opsPerSec <= 0) { throw new IllegalArgumentException("opsPerSec must be > 0: " + opsPerSec); }
+    this.intervalNanos = Math.max(1, (long) (1000000000L / opsPerSec));
+    this.nextStart = System.nanoTime() + initialDelayNanos;
+    this.lastStart = nextStart;
+  }
+
+  /**
+   * Waits until the next intended start time, if it is not already past, and returns it.
+   *
+   * @return the intended start time, in {@link System#nanoTime()} units
+   */
+  public long awaitNext() {
+    return awaitNext(1.0);
+  }
+
+  /**
+   * Same as {@link #awaitNext()}, the start after this one being scheduled at the rate of the schedule times level.
+   *
+   * @param level rate multiplier, > 0
+   */
+  public long awaitNext(double level) {
+    reschedule(level);
+    long intendedStart = nextStart;
+    lastStart = intendedStart;
+    nextStart += interval(level);
+    long delay;
+    while ((delay = intendedStart - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(delay);
+    }
+    return intendedStart;
+  }
+
+  /**
+   * Waits for at most maxWaitNanos until the next intended start time, to let a caller with a changing level wait in
+   * slices and check it in between, instead of parking for the whole interval of a tiny level.
+   *
+   * @param level current rate multiplier, > 0
+   * @return true when the next start time is reached, {@link #awaitNext(double)} then returns without waiting
+   */
+  public boolean awaitDue(double level, long maxWaitNanos) {
+    reschedule(level);
+    long delay = nextStart - System.nanoTime();
+    if (delay > maxWaitNanos) {
+      LockSupport.parkNanos(maxWaitNanos);
+      return false;
+    }
+    while (delay > 0) {
+      LockSupport.parkNanos(delay);
+      delay = nextStart - System.nanoTime();
+    }
+    return true;
+  }
+
+  /**
+   * Brings the next start forward when the level rose since it was scheduled, to no earlier than now: the starts the
+   * lower level did not schedule are not a backlog. A start already past is left as is.
+   */
+  private void reschedule(double level) {
+    long now = System.nanoTime();
+    long start = lastStart + interval(level);
+    if (start - nextStart < 0 && nextStart - now > 0) {
+      nextStart = (start - now > 0) ? start : now;
+    }
+  }
+
+  private long interval(double level) {
+    // capped so that tiny levels cannot overflow the nanoTime arithmetic
+    return (level == 1.0) ? intervalNanos : Math.max(1, (long) Math.min(MAX_INTERVAL_NANOS, intervalNanos / level));
+  }
+
+  /**
+   * Moves the next start to now, dropping the starts missed while the schedule was paused.
+   */
+  public void restart() {
+    nextStart = System.nanoTime();
+    lastStart = nextStart;
+  }
+
+  public long getIntervalNanos() {
+    return intervalNanos;
+  }
+}
@@ -0,0 +1,305 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A log-linear latency histogram in the style of HdrHistogram.
+ * <p>
+ * Values are bucketed in power-of-two buckets, each of which is split in linear sub-buckets sized so that the value
+ * reported for any recorded sample is within the configured number of significant decimal digits. The memory
+ * footprint is fixed at construction time and depends only on the highest trackable value and the significant digits,
+ * so histograms can be kept per cache wrapper and merged together cheaply when they share the same configuration.
+ * <p>
+ * Values are unit-less longs; callers decide on the unit (e.g. {@link Stats} records nanoseconds). Values above the
+ * highest trackable value are counted in the last bucket, the exact maximum is always kept separately.
+ */
+public class LatencyHistogram {
+
+  private final long          highestTrackableValue;
+  private final int           significantDigits;
+
+  private final int           subBucketHalfCountMagnitude;
+  private final int           subBucketCount;
+  private final int           subBucketHalfCount;
+  private final long          subBucketMask;
+  private final int           leadingZeroCountBase;
+  private final int           bucketCount;
+
+  private final AtomicLongArray counts;
+  private final AtomicLong    totalCount = new AtomicLong();
+  private final AtomicLong    totalValue = new AtomicLong();
+  private final AtomicLong    minValue   = new AtomicLong(Long.MAX_VALUE);
+  private final AtomicLong    maxValue   = new AtomicLong(0);
+
+  /**
+   * @param highestTrackableValue highest value that is tracked with full precision, must be >= 2
+   * @param significantDigits number of significant decimal digits kept for each value, between 0 and 5
+   */
+  public LatencyHistogram(long highestTrackableValue, int significantDigits) {
+    if (highestTrackableValue < 2) { throw new IllegalArgumentException("highestTrackableValue must be >= 2"); }
+    if (significantDigits < 0 || significantDigits > 5) { throw new IllegalArgumentException(
+                                                                                             "significantDigits must be between 0 and 5"); }
+    this.highestTrackableValue = highestTrackableValue;
+    this.significantDigits = significantDigits;
+
+    long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+    int subBucketCountMagnitude = (int) Math.ceil(Math.log(largestValueWithSingleUnitResolution) / Math.log(2));
+    this.subBucketHalfCountMagnitude = Math.max(subBucketCountMagnitude, 1) - 1;
+    this.subBucketCount = 1 << (subBucketHalfCountMagnitude + 1);
+    this.subBucketHalfCount = subBucketCount / 2;
+    this.subBucketMask = subBucketCount - 1;
+    this.leadingZeroCountBase = 64 - subBucketHalfCountMagnitude - 1;
+
+    long smallestUntrackableValue = subBucketCount;
+    int buckets = 1;
+    while (smallestUntrackableValue <= highestTrackableValue) {
+      if (smallestUntrackableValue > Long.MAX_VALUE / 2) {
+        buckets++;
+        break;
+      }
+      smallestUntrackableValue <<= 1;
+      buckets++;
+    }
+    this.bucketCount = buckets;
+    this.counts = new AtomicLongArray((bucketCount + 1) * subBucketHalfCount);
+  }
+
+  /**
+   * Creates an empty histogram with the same configuration as this one.
+   */
+  public LatencyHistogram copyConfiguration() {
+    return new LatencyHistogram(highestTrackableValue, significantDigits);
+  }
+
+  public void recordValue(long value) {
+    if (value < 0) { throw new IllegalArgumentException("negative value: " + value); }
+    recordValue(value, 1);
+  }
+
+  /**
+   * Records count samples of the same value, e.g. the amortized per-entry latency of a batch operation.
+   */
+  public void recordValues(long value, long count) {
+    if (value < 0) { throw new IllegalArgumentException("negative value: " + value); }
+    if (count < 1) { throw new IllegalArgumentException("count must be >= 1: " + count); }
+    recordValue(value, count);
+  }
+
+  private void recordValue(long value, long count) {
+    long tracked = Math.min(value, highestTrackableValue);
+    counts.addAndGet(countsIndexFor(tracked), count);
+    totalCount.addAndGet(count);
+    totalValue.addAndGet(value * count);
+    updateMin(value);
+    updateMax(value);
+  }
+
+  private void updateMin(long value) {
+    long current;
+    while (value < (current = minValue.get())) {
+      if (minValue.compareAndSet(current, value)) return;
+    }
+  }
+
+  private void updateMax(long value) {
+    long current;
+    while (value > (current = maxValue.get())) {
+      if (maxValue.compareAndSet(current, value)) return;
+    }
+  }
+
+  /**
+   * Adds all the samples of the other histogram to this one. Histograms with the same configuration are merged
+   * bucket by bucket, otherwise every bucket of the other histogram is re-recorded at its equivalent value.
+   */
+  public LatencyHistogram add(LatencyHistogram other) {
+    if (other == this) { throw new IllegalArgumentException("cannot add a histogram to itself"); }
+    if (hasSameConfiguration(other)) {
+      for (int i = 0; i < counts.length(); i++) {
+        long count = other.counts.get(i);
+        if (count > 0) counts.addAndGet(i, count);
+      }
+      totalCount.addAndGet(other.totalCount.get());
+      totalValue.addAndGet(other.totalValue.get());
+    } else {
+      for (int i = 0; i < other.counts.length(); i++) {
+        long count = other.counts.get(i);
+        if (count > 0) {
+          long value = other.valueFromIndex(i);
+          counts.addAndGet(countsIndexFor(Math.min(value, highestTrackableValue)), count);
+          totalCount.addAndGet(count);
+        }
+      }
+      totalValue.addAndGet(other.totalValue.get());
+    }
+    if (other.getTotalCount() > 0) {
+      updateMin(other.minValue.get());
+      updateMax(other.maxValue.get());
+    }
+    return this;
+  }
+
+  private boolean hasSameConfiguration(LatencyHistogram other) {
+    return highestTrackableValue == other.highestTrackableValue && significantDigits == other.significantDigits;
+  }
+
+  public void reset() {
+    for (int i = 0; i < counts.length(); i++) {
+      counts.set(i, 0);
+    }
+    totalCount.set(0);
+    totalValue.set(0);
+    minValue.set(Long.MAX_VALUE);
+    maxValue.set(0);
+  }
+
+  /**
+   * Returns the value below which the given percentage of the recorded samples fall, reported as the highest value
+   * equivalent (within the configured precision) to the recorded one.
+   *
+   * @param percentile between 0 and 100
+   */
+  public long getValueAtPercentile(double percentile) {
+    long total = totalCount.get();
+    if (total == 0) return 0;
+    double requested = Math.min(Math.max(percentile, 0.0), 100.0);
+    long countAtPercentile = Math.max(1, (long) ((requested / 100.0) * total + 0.5));
+    long cumulative = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      cumulative += counts.get(i);
+      if (cumulative >= countAtPercentile) { return Math.min(highestEquivalentValue(valueFromIndex(i)),
+                                                             getMaxValue()); }
+    }
+    return getMaxValue();
+  }
+
+  public long getTotalCount() {
+    return totalCount.get();
+  }
+
+  public double getMean() {
+    long total = totalCount.get();
+    return total == 0 ? 0 : (double) totalValue.get() / total;
+  }
+
+  public long getMinValue() {
+    return totalCount.get() == 0 ? 0 : minValue.get();
+  }
+
+  public long getMaxValue() {
+    return maxValue.get();
+  }
+
+  public long getHighestTrackableValue() {
+    return highestTrackableValue;
+  }
+
+  public int getSignificantDigits() {
+    return significantDigits;
+  }
+
+  /**
+   * Writes the configuration, the totals and the non-empty buckets of this histogram. Should not be called while
+   * values are being recorded.
+   */
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeLong(highestTrackableValue);
+    out.writeInt(significantDigits);
+    out.writeLong(totalValue.get());
+    out.writeLong(minValue.get());
+    out.writeLong(maxValue.get());
+    int nonEmpty = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      if (counts.get(i) > 0) nonEmpty++;
+    }
+    out.writeInt(nonEmpty);
+    for (int i = 0; i < counts.length(); i++) {
+      long count = counts.get(i);
+      if (count > 0) {
+        out.writeInt(i);
+        out.writeLong(count);
+      }
+    }
+  }
+
+  /**
+   * Formats the non-empty buckets as comma separated value:count pairs, the value being the highest equivalent value of
+   * the bucket. Histograms with the same configuration have the same bucket values, so the pairs of several of them
+   * merge by adding up the counts of equal values, without knowing the bucket layout.
+   */
+  public String formatBuckets() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < counts.length(); i++) {
+      long count = counts.get(i);
+      if (count > 0) {
+        if (sb.length() > 0) sb.append(',');
+        sb.append(highestEquivalentValue(valueFromIndex(i))).append(':').append(count);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Reads a histogram written by {@link #writeTo(DataOutput)}.
+   */
+  public static LatencyHistogram readFrom(DataInput in) throws IOException {
+    LatencyHistogram histogram = new LatencyHistogram(in.readLong(), in.readInt());
+    histogram.totalValue.set(in.readLong());
+    histogram.minValue.set(in.readLong());
+    histogram.maxValue.set(in.readLong());
+    int nonEmpty = in.readInt();
+    for (int i = 0; i < nonEmpty; i++) {
+      int index = in.readInt();
+      long count = in.readLong();
+      histogram.counts.set(index, count);
+      histogram.totalCount.addAndGet(count);
+    }
+    return histogram;
+  }
+
+  /**
+   * Size in bytes of the counts array, fixed for the lifetime of this histogram.
+   */
+  public int getEstimatedFootprintInBytes() {
+    return counts.length() * 8;
+  }
+
+  private int countsIndexFor(long value) {
+    int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+    int subBucketIndex = (int) (value >>> bucketIndex);
+    return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + (subBucketIndex - subBucketHalfCount);
+  }
+
+  private long valueFromIndex(int index) {
+    int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+    int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+    if (bucketIndex < 0) {
+      subBucketIndex -= subBucketHalfCount;
+      bucketIndex = 0;
+    }
+    return ((long) subBucketIndex) << bucketIndex;
+  }
+
+  private long highestEquivalentValue(long value) {
+    int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+    int subBucketIndex = (int) (value >>> bucketIndex);
+    int adjustedBucket = (subBucketIndex >= subBucketCount) ? bucketIndex + 1 : bucketIndex;
+    long lowest = ((long) subBucketIndex) << bucketIndex;
+    return lowest + (1L << adjustedBucket) - 1;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count: %d, min: %d, p50: %d, p90: %d, p99: %d, p99.9: %d, p99.99: %d, max: %d",
+                         getTotalCount(), getMinValue(), getValueAtPercentile(50), getValueAtPercentile(90),
+                         getValueAtPercentile(99), getValueAtPercentile(99.9), getValueAtPercentile(99.99),
+                         getMaxValue());
+  }
+}
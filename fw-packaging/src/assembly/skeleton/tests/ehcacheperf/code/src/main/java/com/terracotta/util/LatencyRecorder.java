@@ -0,0 +1,122 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.util;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records operation latencies in nanoseconds.
+ * <p>
+ * In per-thread mode every recording thread gets its own pair of {@link Stats} buffers, so the hot path never shares
+ * a cache line with other application threads. {@link #getIntervalStats()} swaps each thread's active buffer with its
+ * inactive one under a {@link WriterReaderPhaser} and merges the swapped out buffers, so a sample is reported in
+ * exactly one interval and is never lost or half-read.
+ * <p>
+ * In shared mode all threads record into one Stats, which is what the test used to do.
+ */
+public class LatencyRecorder {
+
+  private final boolean                     perThread;
+  private final Stats                       shared;
+  private final List<ThreadRecorder>        recorders = new CopyOnWriteArrayList<ThreadRecorder>();
+  private final ThreadLocal<ThreadRecorder> local     = new ThreadLocal<ThreadRecorder>() {
+                                                        @Override
+                                                        protected ThreadRecorder initialValue() {
+                                                          ThreadRecorder recorder = new ThreadRecorder();
+                                                          recorders.add(recorder);
+                                                          return recorder;
+                                                        }
+                                                      };
+
+  public LatencyRecorder(boolean perThread) {
+    this.perThread = perThread;
+    this.shared = perThread ? null : new Stats();
+  }
+
+  public void recordNanos(long nanos) {
+    if (perThread) {
+      local.get().record(nanos);
+    } else {
+      shared.addNanos(nanos);
+    }
+  }
+
+  /**
+   * Records count samples of nanos each.
+   */
+  public void recordNanos(long nanos, long count) {
+    if (perThread) {
+      local.get().record(nanos, count);
+    } else {
+      shared.addNanos(nanos, count);
+    }
+  }
+
+  /**
+   * Returns the samples recorded since the previous call and starts a new interval.
+   */
+  public synchronized Stats getIntervalStats() {
+    Stats interval = new Stats();
+    if (perThread) {
+      for (Iterator<ThreadRecorder> it = recorders.iterator(); it.hasNext();) {
+        ThreadRecorder recorder = it.next();
+        // checked before the swap: a terminated thread can no longer record, so once swapped it can be forgotten
+        boolean terminated = !recorder.owner.isAlive();
+        recorder.swapInto(interval);
+        if (terminated) {
+          recorders.remove(recorder);
+        }
+      }
+    } else {
+      interval.add(shared);
+      shared.reset();
+    }
+    return interval;
+  }
+
+  public boolean isPerThread() {
+    return perThread;
+  }
+
+  private static class ThreadRecorder {
+    private final Thread             owner  = Thread.currentThread();
+    private final WriterReaderPhaser phaser = new WriterReaderPhaser();
+    private volatile Stats           active = new Stats();
+    private Stats                    inactive = new Stats();
+
+    void record(long nanos) {
+      long criticalValue = phaser.writerCriticalSectionEnter();
+      try {
+        active.addNanos(nanos);
+      } finally {
+        phaser.writerCriticalSectionExit(criticalValue);
+      }
+    }
+
+    void record(long nanos, long count) {
+      long criticalValue = phaser.writerCriticalSectionEnter();
+      try {
+        active.addNanos(nanos, count);
+      } finally {
+        phaser.writerCriticalSectionExit(criticalValue);
+      }
+    }
+
+    void swapInto(Stats target) {
+      phaser.readerLock();
+      try {
+        inactive.reset();
+        Stats tmp = active;
+        active = inactive;
+        inactive = tmp;
+        phaser.flipPhase();
+        target.add(inactive);
+      } finally {
+        phaser.readerUnlock();
+      }
+    }
+  }
+}
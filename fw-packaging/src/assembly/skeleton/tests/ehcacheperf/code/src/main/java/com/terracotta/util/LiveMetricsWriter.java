@@ -0,0 +1,96 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.util;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Rewrites a small properties file with the metrics of the last reporting interval of the node, for the framework
+ * agent to relay them to the master while the test runs. The agent sets the file through the fw.metrics.file system
+ * property, see {@link #fromSystemProperty(int, int)}.
+ * <p>
+ * The file is written aside and renamed so that it is never read half written. Latencies are in milliseconds, errors
+ * are cumulative. The histogram property holds the buckets of the interval latencies in nanoseconds (see
+ * {@link LatencyHistogram#formatBuckets()}), for the framework to merge the percentiles of the nodes. I/O errors are
+ * logged once and disable the writer, they never fail the test.
+ */
+public class LiveMetricsWriter {
+
+  public static final String  FILE_PROPERTY = "fw.metrics.file";
+
+  private static final Logger log           = Logger.getLogger(LiveMetricsWriter.class);
+
+  private final File          file;
+  private final File          tmp;
+  private final int           nodeId;
+  private final int           reportIntervalSecs;
+  private boolean             enabled       = true;
+
+  public LiveMetricsWriter(File file, int nodeId, int reportIntervalSecs) {
+    this.file = file;
+    this.tmp = new File(file.getPath() + ".tmp");
+    this.nodeId = nodeId;
+    this.reportIntervalSecs = reportIntervalSecs;
+    log.info("Writing live metrics to " + file.getAbsolutePath());
+  }
+
+  /**
+   * @return null when the test is not run by the framework
+   */
+  public static LiveMetricsWriter fromSystemProperty(int nodeId, int reportIntervalSecs) {
+    String path = System.getProperty(FILE_PROPERTY);
+    if (path == null || path.trim().length() == 0) return null;
+    return new LiveMetricsWriter(new File(path.trim()), nodeId, reportIntervalSecs);
+  }
+
+  /**
+   * @param timestamp end of the interval, in millis since epoch
+   * @param elapsedMillis time since the test started
+   * @param intervalMillis length of the interval the stats were recorded in
+   * @param stats latencies of the test iterations completed in the interval
+   * @param errors errors since the test started
+   */
+  public synchronized void write(long timestamp, long elapsedMillis, long intervalMillis, Stats stats, long errors) {
+    if (!enabled) return;
+    long count = stats.getTxnCount();
+    Properties props = new Properties();
+    props.setProperty("node", String.valueOf(nodeId));
+    props.setProperty("timestamp", String.valueOf(timestamp));
+    props.setProperty("elapsedSecs", String.valueOf(elapsedMillis / 1000));
+    props.setProperty("reportIntervalSecs", String.valueOf(reportIntervalSecs));
+    props.setProperty("count", String.valueOf(count));
+    props.setProperty("opsPerSec", format(intervalMillis > 0 ? 1000.0 * count / intervalMillis : 0));
+    props.setProperty("mean", format(stats.getAverage()));
+    props.setProperty("p50", format(stats.getPercentile(50)));
+    props.setProperty("p90", format(stats.getPercentile(90)));
+    props.setProperty("p99", format(stats.getPercentile(99)));
+    props.setProperty("max", format(count > 0 ? stats.getMaxLatency() : 0));
+    props.setProperty("errors", String.valueOf(errors));
+    props.setProperty("histogram", stats.getHisto().formatBuckets());
+    try {
+      OutputStream out = new FileOutputStream(tmp);
+      try {
+        props.store(out, null);
+      } finally {
+        out.close();
+      }
+      if (file.exists() && !file.delete()) { throw new IOException("Cannot replace " + file); }
+      if (!tmp.renameTo(file)) { throw new IOException("Cannot rename " + tmp + " to " + file); }
+    } catch (IOException e) {
+      log.error("Live metrics disabled, cannot write to " + file.getAbsolutePath(), e);
+      enabled = false;
+    }
+  }
+
+  private static String format(double value) {
+    return String.format(Locale.US, "%.3f", value);
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.util;
+
+/**
+ * Load level over the test duration, as a multiplier of the configured load (open-loop rate or number of users).
+ * <p>
+ * The test duration is cut in steps, each of them being reported separately: the plateaus of a step profile, the
+ * spikes and the recovery after them, or slices of a ramp or of a sine period.
+ */
+public abstract class LoadProfile {
+
+  private final String spec;
+  private final double maxLevel;
+
+  private LoadProfile(String spec, double maxLevel) {
+    this.spec = spec;
+    this.maxLevel = maxLevel;
+  }
+
+  /**
+   * @return load level at the given time since the test start
+   */
+  public abstract double level(long elapsedMillis);
+
+  /**
+   * @return start of the step following the one the given time since the test start is in, Long.MAX_VALUE if none
+   */
+  public abstract long nextStepStart(long elapsedMillis);
+
+  /**
+   * @return highest level of the profile
+   */
+  public double getMaxLevel() {
+    return maxLevel;
+  }
+
+  @Override
+  public String toString() {
+    return spec;
+  }
+
+  /**
+   * <ul>
+   * <li>flat - always 1, no profile</li>
+   * <li>ramp:from,to[,steps] - linear from from to to over the test duration, reported in steps slices (default 10)</li>
+   * <li>step:l1,l2,...,ln - n plateaus of equal duration</li>
+   * <li>spike:base,peak,periodSecs,spikeSecs - base, except for the last spikeSecs of each period at peak</li>
+   * <li>sine:min,max,periodSecs[,steps] - between min and max, starting at min, reported in steps slices of each
+   * period (default 8)</li>
+   * </ul>
+   *
+   * @return null for a flat profile
+   */
+  public static LoadProfile parse(final String spec, final long durationMillis) {
+    String[] parts = spec.trim().split(":", 2);
+    String type = parts[0].trim();
+    final double[] args = (parts.length > 1) ? parseArgs(parts[1]) : new double[0];
+    if ("flat".equals(type) || type.length() == 0) { return null; }
+    if ("ramp".equals(type)) {
+      checkArgs(spec, args, 2);
+      checkDuration(spec, durationMillis);
+      final double from = args[0];
+      final double to = args[1];
+      final long stepMillis = Math.max(1, durationMillis / Math.max(1, (args.length > 2) ? (int) args[2] : 10));
+      return new LoadProfile(spec, Math.max(from, to)) {
+        @Override
+        public double level(long elapsedMillis) {
+          return from + (to - from) * Math.min(1.0, (double) elapsedMillis / durationMillis);
+        }
+
+        @Override
+        public long nextStepStart(long elapsedMillis) {
+          return nextMultiple(elapsedMillis, stepMillis);
+        }
+      };
+    } else if ("step".equals(type)) {
+      checkArgs(spec, args, 1);
+      checkDuration(spec, durationMillis);
+      final long stepMillis = Math.max(1, durationMillis / args.length);
+      return new LoadProfile(spec, max(args)) {
+        @Override
+        public double level(long elapsedMillis) {
+          return args[(int) Math.min(args.length - 1, Math.max(0, elapsedMillis / stepMillis))];
+        }
+
+        @Override
+        public long nextStepStart(long elapsedMillis) {
+          return nextMultiple(elapsedMillis, stepMillis);
+        }
+      };
+    } else if ("spike".equals(type)) {
+      checkArgs(spec, args, 4);
+      final double base = args[0];
+      final double peak = args[1];
+      final long periodMillis = (long) (args[2] * 1000);
+      final long spikeMillis = (long) (args[3] * 1000);
+      if (spikeMillis <= 0 || spikeMillis >= periodMillis) {
+        throw new IllegalArgumentException("spike must be shorter than its period: " + spec);
+      }
+      final long spikeStart = periodMillis - spikeMillis;
+      return new LoadProfile(spec, Math.max(base, peak)) {
+        @Override
+        public double level(long elapsedMillis) {
+          return (elapsedMillis % periodMillis >= spikeStart) ? peak : base;
+        }
+
+        @Override
+        public long nextStepStart(long elapsedMillis) {
+          long periodStart = elapsedMillis - elapsedMillis % periodMillis;
+          return (elapsedMillis - periodStart < spikeStart) ? periodStart + spikeStart : periodStart + periodMillis;
+        }
+      };
+    } else if ("sine".equals(type)) {
+      checkArgs(spec, args, 3);
+      final double min = args[0];
+      final double max = args[1];
+      final long periodMillis = (long) (args[2] * 1000);
+      if (periodMillis <= 0) { throw new IllegalArgumentException("period must be > 0: " + spec); }
+      final long stepMillis = Math.max(1, periodMillis / Math.max(1, (args.length > 3) ? (int) args[3] : 8));
+      return new LoadProfile(spec, Math.max(min, max)) {
+        @Override
+        public double level(long elapsedMillis) {
+          return min + (max - min) * (1 - Math.cos(2 * Math.PI * elapsedMillis / periodMillis)) / 2;
+        }
+
+        @Override
+        public long nextStepStart(long elapsedMillis) {
+          return nextMultiple(elapsedMillis, stepMillis);
+        }
+      };
+    }
+    throw new IllegalArgumentException("unknown load profile: " + spec);
+  }
+
+  private static long nextMultiple(long value, long step) {
+    return (Math.max(0, value) / step + 1) * step;
+  }
+
+  private static double max(double[] values) {
+    double max = 0;
+    for (double value : values) {
+      max = Math.max(max, value);
+    }
+    return max;
+  }
+
+  private static double[] parseArgs(String args) {
+    String[] values = args.split(",");
+    double[] parsed = new double[values.length];
+    for (int i = 0; i < values.length; i++) {
+      parsed[i] = Double.parseDouble(values[i].trim());
+      if (parsed[i] < 0) { throw new IllegalArgumentException("negative load profile value: " + args); }
+    }
+    return parsed;
+  }
+
+  private static void checkArgs(String spec, double[] args, int count) {
+    if (args.length < count) { throw new IllegalArgumentException("load profile needs " + count + " values: " + spec); }
+  }
+
+  private static void checkDuration(String spec, long durationMillis) {
+    if (durationMillis <= 0) { throw new IllegalArgumentException("load profile needs a test duration: " + spec); }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Final counters and latency histograms of one node, shipped to node 0 as a byte[] so that cluster-wide latencies are
+ * computed by merging histograms rather than by averaging the nodes' averages.
+ */
+public class NodeResults {
+
+  private final Stats warmupStat;
+  private final Stats readStat;
+  private final Stats writeStat;
+  private final Stats batchReadStat;
+  private final Stats batchWriteStat;
+  private final Stats responseTimeStat;
+  private long        errors;
+
+  public NodeResults() {
+    this(new Stats(), new Stats(), new Stats(), new Stats());
+  }
+
+  public NodeResults(Stats warmupStat, Stats readStat, Stats writeStat, Stats responseTimeStat) {
+    this(warmupStat, readStat, writeStat, responseTimeStat, 0);
+  }
+
+  public NodeResults(Stats warmupStat, Stats readStat, Stats writeStat, Stats responseTimeStat, long errors) {
+    this(warmupStat, readStat, writeStat, new Stats(), new Stats(), responseTimeStat, errors);
+  }
+
+  /**
+   * @param batchReadStat getAll latencies, one sample per batch
+   * @param batchWriteStat putAll/removeAll latencies, one sample per batch
+   */
+  public NodeResults(Stats warmupStat, Stats readStat, Stats writeStat, Stats batchReadStat, Stats batchWriteStat,
+                     Stats responseTimeStat, long errors) {
+    this.warmupStat = warmupStat;
+    this.readStat = readStat;
+    this.writeStat = writeStat;
+    this.batchReadStat = batchReadStat;
+    this.batchWriteStat = batchWriteStat;
+    this.responseTimeStat = responseTimeStat;
+    this.errors = errors;
+  }
+
+  public NodeResults add(NodeResults other) {
+    warmupStat.add(other.warmupStat);
+    readStat.add(other.readStat);
+    writeStat.add(other.writeStat);
+    batchReadStat.add(other.batchReadStat);
+    batchWriteStat.add(other.batchWriteStat);
+    responseTimeStat.add(other.responseTimeStat);
+    errors += other.errors;
+    return this;
+  }
+
+  public Stats getWarmupStat() {
+    return warmupStat;
+  }
+
+  public Stats getReadStat() {
+    return readStat;
+  }
+
+  public Stats getWriteStat() {
+    return writeStat;
+  }
+
+  public Stats getBatchReadStat() {
+    return batchReadStat;
+  }
+
+  public Stats getBatchWriteStat() {
+    return batchWriteStat;
+  }
+
+  public Stats getTotalStat() {
+    return new Stats(readStat).add(writeStat);
+  }
+
+  public Stats getResponseTimeStat() {
+    return responseTimeStat;
+  }
+
+  /**
+   * @return test iterations that failed (e.g. NonStopCacheException)
+   */
+  public long getErrors() {
+    return errors;
+  }
+
+  public byte[] toBytes() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      warmupStat.writeTo(out);
+      readStat.writeTo(out);
+      writeStat.writeTo(out);
+      batchReadStat.writeTo(out);
+      batchWriteStat.writeTo(out);
+      responseTimeStat.writeTo(out);
+      out.writeLong(errors);
+      out.flush();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  public static NodeResults fromBytes(byte[] data) {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+    try {
+      return new NodeResults(Stats.readFrom(in), Stats.readFrom(in), Stats.readFrom(in), Stats.readFrom(in),
+                             Stats.readFrom(in), Stats.readFrom(in), in.readLong());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Latency stats of named composite operations (e.g. the Clinic getOwner graph fetch), complementing the per cache
+ * stats kept by the cache wrappers.
+ * <p>
+ * Operations are recorded with a per-thread {@link LatencyRecorder} each; {@link #sample()} closes the current
+ * interval the same way CacheStatsProcessor does for the caches.
+ */
+public class OperationStats {
+
+  private static final OperationStats            _instance  = new OperationStats();
+
+  private final ConcurrentMap<String, LatencyRecorder> recorders = new ConcurrentHashMap<String, LatencyRecorder>();
+  private final Map<String, Stats>               interval   = new TreeMap<String, Stats>();
+  private final Map<String, Stats>               cumulative = new TreeMap<String, Stats>();
+
+  public static OperationStats getInstance() {
+    return _instance;
+  }
+
+  public void recordNanos(String operation, long nanos) {
+    LatencyRecorder recorder = recorders.get(operation);
+    if (recorder == null) {
+      recorder = new LatencyRecorder(true);
+      LatencyRecorder existing = recorders.putIfAbsent(operation, recorder);
+      if (existing != null) recorder = existing;
+    }
+    recorder.recordNanos(nanos);
+  }
+
+  /**
+   * Closes the current interval and adds it to the cumulative stats.
+   */
+  public synchronized void sample() {
+    for (Map.Entry<String, LatencyRecorder> entry : recorders.entrySet()) {
+      Stats stats = entry.getValue().getIntervalStats();
+      interval.put(entry.getKey(), stats);
+      Stats total = cumulative.get(entry.getKey());
+      if (total == null) {
+        cumulative.put(entry.getKey(), new Stats(stats));
+      } else {
+        total.add(stats);
+      }
+    }
+  }
+
+  /**
+   * @return stats of the operations recorded in the last sampled interval, sorted by name
+   */
+  public synchronized Map<String, Stats> getIntervalStats() {
+    return new TreeMap<String, Stats>(interval);
+  }
+
+  /**
+   * @return stats of the operations since the last reset, as of the last {@link #sample()}, sorted by name
+   */
+  public synchronized Map<String, Stats> getCumulativeStats() {
+    return new TreeMap<String, Stats>(cumulative);
+  }
+
+  public synchronized void reset() {
+    for (LatencyRecorder recorder : recorders.values()) {
+      recorder.getIntervalStats();
+    }
+    interval.clear();
+    cumulative.clear();
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.util;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Independent, reproducible random streams derived from one seed.
+ * <p>
+ * {@link #get()} hands every thread its own Random, so threads never contend on a shared seed. Stream seeds are
+ * derived from the base seed and a stream index with a 64-bit mixing function, so nearby indexes give unrelated
+ * streams.
+ * <p>
+ * A thread gets a reproducible stream by calling {@link #bind(int)} with a stable index (e.g. its thread number)
+ * before its first use. Unbound threads get streams in first-use order, from negative indexes so they never share a
+ * stream with a bound thread.
+ */
+public class RandomStreams {
+
+  private final long                seed;
+  private final AtomicInteger       nextStream = new AtomicInteger();
+  private final ThreadLocal<Random> local      = new ThreadLocal<Random>() {
+                                                 @Override
+                                                 protected Random initialValue() {
+                                                   return newStream(-1L - nextStream.getAndIncrement());
+                                                 }
+                                               };
+
+  public RandomStreams(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Sets the stream of the calling thread to the one of the given index.
+   */
+  public void bind(int stream) {
+    if (stream < 0) { throw new IllegalArgumentException("negative stream index: " + stream); }
+    local.set(newStream(stream));
+  }
+
+  /**
+   * @return the stream of the calling thread
+   */
+  public Random get() {
+    return local.get();
+  }
+
+  /**
+   * @return a new Random for the given stream index, always the same sequence for the same seed and index
+   */
+  public Random newStream(long stream) {
+    return new Random(streamSeed(seed, stream));
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * SplitMix64 finalizer applied to seed + stream * golden gamma.
+   */
+  public static long streamSeed(long seed, long stream) {
+    long z = seed + (stream + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
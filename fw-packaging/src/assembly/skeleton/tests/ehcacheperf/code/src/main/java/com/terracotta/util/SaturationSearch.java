@@ -0,0 +1,184 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Binary search of the highest open-loop rate whose p99 response time and error count stay within an SLA.
+ * <p>
+ * The first step runs at the minimum rate: if it misses the SLA there is nothing to search. The second one runs at
+ * the maximum rate: if it meets the SLA the saturation point is above the range. The next steps bisect the range
+ * between the highest rate within the SLA and the lowest one out of it, until it is narrower than resolution times
+ * its upper bound or maxSteps steps ran.
+ * <p>
+ * Rates are per node, every node feeds the same merged results to its own search so they all pick the same rates.
+ */
+public class SaturationSearch {
+
+  private final double     slaP99Millis;
+  private final long       slaMaxErrors;
+  private final double     resolution;
+  private final int        maxSteps;
+
+  private double           low;
+  private double           high;
+  private volatile double  rate;
+  private double           saturationRate;
+  private boolean          done;
+  private final List<Step> steps = new ArrayList<Step>();
+
+  public SaturationSearch(double minRate, double maxRate, double slaP99Millis, long slaMaxErrors,
+                          double resolution, int maxSteps) {
+    if (minRate <= 0 || maxRate < minRate) {
+      throw new IllegalArgumentException("invalid rate range: " + minRate + " - " + maxRate);
+    }
+    this.slaP99Millis = slaP99Millis;
+    this.slaMaxErrors = slaMaxErrors;
+    this.resolution = resolution;
+    this.maxSteps = Math.max(2, maxSteps);
+    this.low = minRate;
+    this.high = maxRate;
+    this.rate = minRate;
+  }
+
+  /**
+   * @return per node rate of the current step
+   */
+  public double getRate() {
+    return rate;
+  }
+
+  public boolean isDone() {
+    return done;
+  }
+
+  /**
+   * @return highest per node rate that met the SLA, 0 if none did
+   */
+  public double getSaturationRate() {
+    return saturationRate;
+  }
+
+  public List<Step> getSteps() {
+    return Collections.unmodifiableList(steps);
+  }
+
+  /**
+   * Records the results of the current step and moves on to the next rate, or ends the search.
+   *
+   * @param throughput test iterations/sec completed by the cluster
+   * @param responseTime response times of the cluster, from the intended start
+   * @param errors errors of the cluster
+   * @param nodes number of nodes, to report cluster rates
+   */
+  public void record(double throughput, Stats responseTime, long errors, int nodes) {
+    if (done) { throw new IllegalStateException("search is over"); }
+    double p99 = responseTime.getPercentile(99);
+    boolean withinSla = responseTime.getTxnCount() > 0 && p99 <= slaP99Millis && errors <= slaMaxErrors;
+    steps.add(new Step(rate * nodes, throughput, responseTime.getAverage(), p99, responseTime.getMaxLatency(), errors,
+                       withinSla));
+    if (withinSla) {
+      saturationRate = Math.max(saturationRate, rate);
+      low = rate;
+    } else {
+      high = rate;
+    }
+
+    if (steps.size() == 1) {
+      done = !withinSla;
+      rate = high;
+    } else if (withinSla && rate >= high) {
+      done = true;
+    } else {
+      done = steps.size() >= maxSteps || (high - low) <= resolution * high;
+      rate = (low + high) / 2;
+    }
+  }
+
+  /**
+   * @return the throughput/latency curve, one line per step
+   */
+  public String formatCurve() {
+    StringBuilder sb = new StringBuilder(String.format(Locale.US, "%5s %14s %14s %10s %10s %10s %8s %s", "step",
+                                                       "target/sec", "achieved/sec", "mean(ms)", "p99(ms)",
+                                                       "max(ms)", "errors", "SLA"));
+    int index = 0;
+    for (Step step : steps) {
+      sb.append(String.format(Locale.US, "\n%5d %14.1f %14.1f %10.3f %10.3f %10.3f %8d %s", index++,
+                              step.targetRate, step.throughput, step.mean, step.p99, step.max, step.errors,
+                              step.withinSla ? "ok" : "missed"));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Writes the curve as CSV. Rates are cluster-wide, latencies in milliseconds.
+   */
+  public void writeCurve(File file) throws IOException {
+    BufferedWriter out = new BufferedWriter(new FileWriter(file));
+    try {
+      out.write("step,targetOpsPerSec,achievedOpsPerSec,mean,p99,max,errors,withinSla");
+      out.newLine();
+      int index = 0;
+      for (Step step : steps) {
+        out.write(String.format(Locale.US, "%d,%.1f,%.1f,%.3f,%.3f,%.3f,%d,%b", index++, step.targetRate,
+                                step.throughput, step.mean, step.p99, step.max, step.errors, step.withinSla));
+        out.newLine();
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Results of one step, cluster-wide.
+   */
+  public static class Step {
+    private final double  targetRate;
+    private final double  throughput;
+    private final double  mean;
+    private final double  p99;
+    private final double  max;
+    private final long    errors;
+    private final boolean withinSla;
+
+    Step(double targetRate, double throughput, double mean, double p99, double max, long errors, boolean withinSla) {
+      this.targetRate = targetRate;
+      this.throughput = throughput;
+      this.mean = mean;
+      this.p99 = p99;
+      this.max = max;
+      this.errors = errors;
+      this.withinSla = withinSla;
+    }
+
+    public double getTargetRate() {
+      return targetRate;
+    }
+
+    public double getThroughput() {
+      return throughput;
+    }
+
+    public double getP99() {
+      return p99;
+    }
+
+    public long getErrors() {
+      return errors;
+    }
+
+    public boolean isWithinSla() {
+      return withinSla;
+    }
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.util;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pauses of closed-loop users: a user runs sessions of sessionLength iterations, thinking thinkTime between two
+ * iterations of a session and sessionPause between two sessions. The number of users sets the concurrency of a node,
+ * the think times set the load each of them offers.
+ * <p>
+ * Each user draws its pauses from its own random stream, derived from the seed and the user index, see
+ * {@link #newUser(int)}.
+ */
+public class SessionModel {
+
+  private final Delay         thinkTime;
+  private final Delay         sessionLength;
+  private final Delay         sessionPause;
+  private final RandomStreams randoms;
+  private final AtomicLong    sessions = new AtomicLong();
+
+  /**
+   * @param thinkTime milliseconds between two iterations of a session, see {@link Delay#parse(String)}
+   * @param sessionLength iterations of a session, 0 for endless sessions
+   * @param sessionPause milliseconds between two sessions of a user
+   */
+  public SessionModel(String thinkTime, String sessionLength, String sessionPause, long seed) {
+    this.thinkTime = Delay.parse(thinkTime);
+    Delay length = Delay.parse(sessionLength);
+    this.sessionLength = (length.mean() > 0) ? length : null;
+    this.sessionPause = Delay.parse(sessionPause);
+    this.randoms = new RandomStreams(seed);
+  }
+
+  /**
+   * @return false when users never pause, i.e. no think time and endless sessions
+   */
+  public boolean isEnabled() {
+    return thinkTime.mean() > 0 || (sessionLength != null && sessionPause.mean() > 0);
+  }
+
+  /**
+   * @return mean think time in nanoseconds
+   */
+  public long getMeanThinkTimeNanos() {
+    return toNanos(thinkTime.mean());
+  }
+
+  /**
+   * @return number of sessions completed by all the users so far
+   */
+  public long getSessions() {
+    return sessions.get();
+  }
+
+  public User newUser(int index) {
+    return new User(randoms.newStream(index));
+  }
+
+  private static long toNanos(double millis) {
+    return (long) (millis * TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  @Override
+  public String toString() {
+    return "thinkTime=" + thinkTime + ", sessionLength=" + (sessionLength == null ? "endless" : sessionLength)
+           + ", sessionPause=" + sessionPause;
+  }
+
+  /**
+   * Session state of one user, to be used by one thread at a time.
+   */
+  public class User {
+    private final Random random;
+    private long         remaining;
+
+    User(Random random) {
+      this.random = random;
+      this.remaining = nextLength();
+    }
+
+    /**
+     * Moves on to the next iteration of this user.
+     *
+     * @return nanoseconds to wait before running it
+     */
+    public long nextPauseNanos() {
+      if (sessionLength != null && --remaining <= 0) {
+        sessions.incrementAndGet();
+        remaining = nextLength();
+        return toNanos(sessionPause.next(random));
+      }
+      return toNanos(thinkTime.next(random));
+    }
+
+    private long nextLength() {
+      return (sessionLength == null) ? Long.MAX_VALUE : Math.max(1, Math.round(sessionLength.next(random)));
+    }
+  }
+
+  /**
+   * Distribution of a non negative value: a think time in milliseconds or a session length in iterations.
+   */
+  public static abstract class Delay {
+
+    public abstract double next(Random random);
+
+    public abstract double mean();
+
+    /**
+     * <ul>
+     * <li>n or fixed:n - always n</li>
+     * <li>exponential:mean - exponentially distributed, like the time between independent arrivals</li>
+     * <li>lognormal:mean,sigma - log-normally distributed with the given mean, sigma being the standard deviation
+     * of the log (default 1), for long tailed think times</li>
+     * </ul>
+     */
+    public static Delay parse(String spec) {
+      String[] parts = spec.trim().split(":", 2);
+      if (parts.length == 1) { return fixed(Double.parseDouble(parts[0].trim())); }
+      String type = parts[0].trim();
+      String[] args = parts[1].split(",");
+      final double mean = Double.parseDouble(args[0].trim());
+      if (mean < 0) { throw new IllegalArgumentException("negative mean: " + spec); }
+      if ("fixed".equals(type)) {
+        return fixed(mean);
+      } else if ("exponential".equals(type)) {
+        return new Delay() {
+          @Override
+          public double next(Random random) {
+            return -mean * Math.log(1 - random.nextDouble());
+          }
+
+          @Override
+          public double mean() {
+            return mean;
+          }
+
+          @Override
+          public String toString() {
+            return "exponential:" + mean;
+          }
+        };
+      } else if ("lognormal".equals(type)) {
+        final double sigma = (args.length > 1) ? Double.parseDouble(args[1].trim()) : 1.0;
+        final double mu = Math.log(mean) - sigma * sigma / 2;
+        return new Delay() {
+          @Override
+          public double next(Random random) {
+            return (mean == 0) ? 0 : Math.exp(mu + sigma * random.nextGaussian());
+          }
+
+          @Override
+          public double mean() {
+            return mean;
+          }
+
+          @Override
+          public String toString() {
+            return "lognormal:" + mean + "," + sigma;
+          }
+        };
+      }
+      throw new IllegalArgumentException("unknown distribution: " + spec);
+    }
+
+    private static Delay fixed(final double value) {
+      if (value < 0) { throw new IllegalArgumentException("negative value: " + value); }
+      return new Delay() {
+        @Override
+        public double next(Random random) {
+          return value;
+        }
+
+        @Override
+        public double mean() {
+          return value;
+        }
+
+        @Override
+        public String toString() {
+          return "fixed:" + value;
+        }
+      };
+    }
+  }
+}
@@ -1,198 +1,169 @@
 package com.terracotta.util;
 
-import org.apache.commons.lang.math.LongRange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Latency statistics. Samples are kept in nanoseconds, all getters report milliseconds.
+ */
 public class Stats {
   private static final Logger log    = LoggerFactory.getLogger(Stats.class);
 
-  private Stats               period = null;
-  private AtomicLong          transactionsCount;
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long   WARN_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(Short.MAX_VALUE);
 
-  private AtomicLong          totalTxLength;
-  private double              minLatency, maxLatency;
-  private final Histogram     histo  = new Histogram();
+  /**
+   * Percentiles printed in the reports.
+   */
+  public static final double[] REPORTED_PERCENTILES = { 50, 90, 99, 99.9, 99.99 };
+
+  /**
+   * Histogram configuration, set from the test properties before any Stats gets created.
+   */
+  public static int           histogramSignificantDigits = 2;
+  public static long          histogramHighestTrackableNanos = TimeUnit.HOURS.toNanos(1);
+
+  private final AtomicLong    transactionsCount = new AtomicLong();
+  private final AtomicLong    totalTxNanos      = new AtomicLong();
+  private final LatencyHistogram histo = new LatencyHistogram(histogramHighestTrackableNanos,
+                                                              histogramSignificantDigits);
 
   public Stats() {
-    defaultInit();
+    //
   }
 
   public Stats(Stats stat) {
     if (stat != null) {
-      init(stat.getTxnCount(), stat.getTotalTxLength(), stat.minLatency, stat.maxLatency);
-    } else {
-      defaultInit();
+      add(stat);
     }
   }
 
-  private void defaultInit() {
-    init(0, 0, Double.MAX_VALUE, Double.MIN_VALUE);
-  }
-
-  private void init(long txnCount, long total, double min, double max) {
-    this.transactionsCount = new AtomicLong(txnCount);
-    this.totalTxLength = new AtomicLong(total);
-    this.minLatency = min;
-    this.maxLatency = max;
-  }
-
   public Stats add(Stats stat) {
     this.transactionsCount.addAndGet(stat.getTxnCount());
-    this.totalTxLength.addAndGet(stat.getTotalTxLength());
-    if (stat.minLatency < this.minLatency) this.minLatency = stat.minLatency;
-    if (stat.maxLatency > this.maxLatency) this.maxLatency = stat.maxLatency;
+    this.totalTxNanos.addAndGet(stat.getTotalTxNanos());
     this.histo.add(stat.histo);
     return this;
   }
 
   /**
-   * Add txLength
+   * Add txLength in milliseconds
    */
   public void add(long txLength) {
-    if (txLength > Short.MAX_VALUE) {
-      log.warn("stat transaction length exceeds 32 secs, txLength = " + txLength);
+    addNanos(TimeUnit.MILLISECONDS.toNanos(txLength));
+  }
+
+  /**
+   * Add txLength in nanoseconds
+   */
+  public void addNanos(long txNanos) {
+    if (txNanos > WARN_THRESHOLD_NANOS) {
+      log.warn("stat transaction length exceeds 32 secs, txLength = " + (txNanos / NANOS_PER_MILLI) + " ms");
     }
     transactionsCount.incrementAndGet();
-    totalTxLength.addAndGet(txLength);
-    if (txLength < minLatency) minLatency = txLength;
-    if (txLength > maxLatency) maxLatency = txLength;
-    if (period == null) period = new Stats();
-    histo.add(txLength);
-    period.transactionsCount.incrementAndGet();
-    period.totalTxLength.addAndGet(txLength);
-    if (txLength < period.minLatency) period.minLatency = txLength;
-    if (txLength > period.maxLatency) period.maxLatency = txLength;
+    totalTxNanos.addAndGet(txNanos);
+    histo.recordValue(txNanos);
+  }
+
+  /**
+   * Add count transactions of txNanos nanoseconds each
+   */
+  public void addNanos(long txNanos, long count) {
+    if (txNanos > WARN_THRESHOLD_NANOS) {
+      log.warn("stat transaction length exceeds 32 secs, txLength = " + (txNanos / NANOS_PER_MILLI) + " ms");
+    }
+    transactionsCount.addAndGet(count);
+    totalTxNanos.addAndGet(txNanos * count);
+    histo.recordValues(txNanos, count);
   }
 
   public double getAverage() {
-    if (transactionsCount.get() > 0) return (double) totalTxLength.get() / transactionsCount.get();
+    if (transactionsCount.get() > 0) return totalTxNanos.get() / NANOS_PER_MILLI / transactionsCount.get();
     return 0;
   }
 
   public double getMaxLatency() {
-    if (maxLatency == Double.MIN_VALUE) return Double.NaN;
-    return maxLatency;
+    if (histo.getTotalCount() == 0) return Double.NaN;
+    return histo.getMaxValue() / NANOS_PER_MILLI;
   }
 
   public double getMinLatency() {
-    if (minLatency == Double.MAX_VALUE) return Double.NaN;
-    return minLatency;
+    if (histo.getTotalCount() == 0) return Double.NaN;
+    return histo.getMinValue() / NANOS_PER_MILLI;
   }
 
+  /**
+   * Latency in milliseconds below which the given percentage of transactions completed.
+   *
+   * @param percentile between 0 and 100
+   */
+  public double getPercentile(double percentile) {
+    return histo.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+  }
+
+  /**
+   * @return sum of all the recorded transaction lengths, in milliseconds
+   */
   public long getTotalTxLength() {
-    return totalTxLength.get();
+    return TimeUnit.NANOSECONDS.toMillis(totalTxNanos.get());
+  }
+
+  public long getTotalTxNanos() {
+    return totalTxNanos.get();
   }
 
   public void reset() {
     transactionsCount.set(0);
-    totalTxLength.set(0);
-    minLatency = Double.MAX_VALUE;
-    maxLatency = Double.MIN_VALUE;
+    totalTxNanos.set(0);
+    histo.reset();
   }
 
   public long getTxnCount() {
     return transactionsCount.get();
   }
 
-  public Stats getPeriodStats() {
-    Stats p = new Stats(period);
-    if (period != null) {
-      period.reset();
-    }
-    return p;
-  }
-
-  public Histogram getHisto() {
+  public LatencyHistogram getHisto() {
     return histo;
   }
 
-  @Override
-  public String toString() {
-    return String.format("Min: %.1f, Max: %.1f, Avg: %.5f \n Histo: %s", getMinLatency(), getMaxLatency(),
-                         getAverage(), getHisto());
-  }
-
-  private static class Histogram {
-    private final AtomicLong       BUCKET_0_10_COUNT      = new AtomicLong();
-    private final AtomicLong       BUCKET_10_50_COUNT     = new AtomicLong();
-    private final AtomicLong       BUCKET_50_100_COUNT    = new AtomicLong();
-    private final AtomicLong       BUCKET_100_200_COUNT   = new AtomicLong();
-    private final AtomicLong       BUCKET_200_500_COUNT   = new AtomicLong();
-    private final AtomicLong       BUCKET_500_1000_COUNT  = new AtomicLong();
-    private final AtomicLong       BUCKET_1000_5000_COUNT = new AtomicLong();
-    private final AtomicLong       BUCKET_5000_PLUS_COUNT = new AtomicLong();
-    private final AtomicLong       TOTAL                  = new AtomicLong();
-
-    private static final LongRange Range_0_10             = new LongRange(Long.MIN_VALUE, 10);
-    private static final LongRange Range_10_50            = new LongRange(10, 50);
-    private static final LongRange Range_50_100           = new LongRange(50, 100);
-    private static final LongRange Range_100_200          = new LongRange(100, 200);
-    private static final LongRange Range_200_500          = new LongRange(200, 500);
-    private static final LongRange Range_500_1000         = new LongRange(500, 1000);
-    private static final LongRange Range_1000_5000        = new LongRange(1000, 5000);
-
-    public void add(long value) {
-      if (Range_0_10.containsLong(value)) {
-        BUCKET_0_10_COUNT.incrementAndGet();
-      } else if (Range_10_50.containsLong(value)) {
-        BUCKET_10_50_COUNT.incrementAndGet();
-      } else if (Range_50_100.containsLong(value)) {
-        BUCKET_50_100_COUNT.incrementAndGet();
-      } else if (Range_100_200.containsLong(value)) {
-        BUCKET_100_200_COUNT.incrementAndGet();
-      } else if (Range_200_500.containsLong(value)) {
-        BUCKET_200_500_COUNT.incrementAndGet();
-      } else if (Range_500_1000.containsLong(value)) {
-        BUCKET_500_1000_COUNT.incrementAndGet();
-      } else if (Range_1000_5000.containsLong(value)) {
-        BUCKET_1000_5000_COUNT.incrementAndGet();
-      } else {
-        BUCKET_5000_PLUS_COUNT.incrementAndGet();
-      }
-      TOTAL.incrementAndGet();
-    }
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeLong(transactionsCount.get());
+    out.writeLong(totalTxNanos.get());
+    histo.writeTo(out);
+  }
 
-    public Histogram add(Histogram med) {
-      this.BUCKET_0_10_COUNT.addAndGet(med.BUCKET_0_10_COUNT.get());
-      this.BUCKET_10_50_COUNT.addAndGet(med.BUCKET_10_50_COUNT.get());
-      this.BUCKET_50_100_COUNT.addAndGet(med.BUCKET_50_100_COUNT.get());
-      this.BUCKET_100_200_COUNT.addAndGet(med.BUCKET_100_200_COUNT.get());
-      this.BUCKET_200_500_COUNT.addAndGet(med.BUCKET_200_500_COUNT.get());
-      this.BUCKET_500_1000_COUNT.addAndGet(med.BUCKET_500_1000_COUNT.get());
-      this.BUCKET_1000_5000_COUNT.addAndGet(med.BUCKET_1000_5000_COUNT.get());
-      this.BUCKET_5000_PLUS_COUNT.addAndGet(med.BUCKET_5000_PLUS_COUNT.get());
-      this.TOTAL.addAndGet(med.TOTAL.get());
-      return this;
+  /**
+   * Reads a Stats written by {@link #writeTo(DataOutput)}.
+   */
+  public static Stats readFrom(DataInput in) throws IOException {
+    Stats stats = new Stats();
+    stats.transactionsCount.set(in.readLong());
+    stats.totalTxNanos.set(in.readLong());
+    stats.histo.add(LatencyHistogram.readFrom(in));
+    return stats;
+  }
+
+  public String getPercentiles() {
+    StringBuilder sb = new StringBuilder();
+    for (double percentile : REPORTED_PERCENTILES) {
+      if (sb.length() > 0) sb.append(", ");
+      sb.append(String.format("p%s: %.3f", formatPercentile(percentile), getPercentile(percentile)));
     }
+    return sb.toString();
+  }
 
-    public double calculatePercentage(AtomicLong value) {
-      return (TOTAL.get() > 0) ? ((((double) value.get()) / ((double) TOTAL.get())) * 100.0f) : 0f;
-
-    }
+  private static String formatPercentile(double percentile) {
+    return (percentile == Math.rint(percentile)) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+  }
 
-    @Override
-    public String toString() {
-      StringBuffer sb = new StringBuffer();
-      sb.append("0-10 frequency count = ").append(BUCKET_0_10_COUNT)
-          .append(String.format(" percentage = %.1f", calculatePercentage(BUCKET_0_10_COUNT))).append("\n");
-      sb.append("10-50 frequency count = ").append(BUCKET_10_50_COUNT)
-          .append(String.format(" percentage = %.1f", calculatePercentage(BUCKET_10_50_COUNT))).append("\n");
-      sb.append("50-100 frequency count = ").append(BUCKET_50_100_COUNT)
-          .append(String.format(" percentage = %.1f", calculatePercentage(BUCKET_50_100_COUNT))).append("\n");
-      sb.append("100-200 frequency count = ").append(BUCKET_100_200_COUNT)
-          .append(String.format(" percentage = %.1f", calculatePercentage(BUCKET_100_200_COUNT))).append("\n");
-      sb.append("200-500 frequency count = ").append(BUCKET_200_500_COUNT)
-          .append(String.format(" percentage = %.1f", calculatePercentage(BUCKET_200_500_COUNT))).append("\n");
-      sb.append("500-1000 frequency count = ").append(BUCKET_500_1000_COUNT)
-          .append(String.format(" percentage = %.1f", calculatePercentage(BUCKET_500_1000_COUNT))).append("\n");
-      sb.append("1000-5000 frequency count = ").append(BUCKET_1000_5000_COUNT)
-          .append(String.format(" percentage = %.1f", calculatePercentage(BUCKET_1000_5000_COUNT))).append("\n");
-      sb.append("5000-PLUS frequency count = ").append(BUCKET_5000_PLUS_COUNT)
-          .append(String.format(" percentage = %.1f", calculatePercentage(BUCKET_5000_PLUS_COUNT))).append("\n");
-      return sb.toString();
-    }
+  @Override
+  public String toString() {
+    return String.format("Min: %.3f, Max: %.3f, Avg: %.5f \n Percentiles (ms): %s", getMinLatency(),
+                         getMaxLatency(), getAverage(), getPercentiles());
   }
 }
@@ -0,0 +1,114 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.util;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Writes one CSV row per reporting interval, cache and operation type so that throughput and latency over time can be
+ * plotted after the run without scraping the logs. Latencies are in milliseconds.
+ * <p>
+ * I/O errors are logged once and disable the writer, they never fail the test.
+ */
+public class TimeSeriesWriter {
+
+  private static final Logger log = Logger.getLogger(TimeSeriesWriter.class);
+
+  private final File          file;
+  private final int           nodeId;
+  private BufferedWriter      out;
+
+  public TimeSeriesWriter(File file, int nodeId) {
+    this.file = file;
+    this.nodeId = nodeId;
+    try {
+      out = new BufferedWriter(new FileWriter(file));
+      out.write(header());
+      out.newLine();
+      out.flush();
+      log.info("Writing time series to " + file.getAbsolutePath());
+    } catch (IOException e) {
+      disable(e);
+    }
+  }
+
+  private static String header() {
+    StringBuilder sb = new StringBuilder("timestamp,elapsedSecs,node,cache,op,count,opsPerSec,mean,min");
+    for (double percentile : Stats.REPORTED_PERCENTILES) {
+      sb.append(",p").append(percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String
+          .valueOf(percentile));
+    }
+    return sb.append(",max").toString();
+  }
+
+  /**
+   * @param timestamp end of the interval, in millis since epoch
+   * @param elapsedMillis time since the test started
+   * @param intervalMillis length of the interval the stats were recorded in
+   */
+  public synchronized void write(long timestamp, long elapsedMillis, long intervalMillis, String cache, String op,
+                                 Stats stats) {
+    if (out == null) return;
+    long count = stats.getTxnCount();
+    StringBuilder sb = new StringBuilder();
+    sb.append(timestamp).append(',').append(elapsedMillis / 1000).append(',').append(nodeId).append(',')
+        .append(cache).append(',').append(op).append(',').append(count).append(',')
+        .append(format(intervalMillis > 0 ? 1000.0 * count / intervalMillis : 0)).append(',')
+        .append(format(stats.getAverage())).append(',').append(format(count > 0 ? stats.getMinLatency() : 0));
+    for (double percentile : Stats.REPORTED_PERCENTILES) {
+      sb.append(',').append(format(stats.getPercentile(percentile)));
+    }
+    sb.append(',').append(format(count > 0 ? stats.getMaxLatency() : 0));
+    try {
+      out.write(sb.toString());
+      out.newLine();
+    } catch (IOException e) {
+      disable(e);
+    }
+  }
+
+  /**
+   * Flushes the rows of the interval, called once all the rows of an interval are written.
+   */
+  public synchronized void flush() {
+    if (out == null) return;
+    try {
+      out.flush();
+    } catch (IOException e) {
+      disable(e);
+    }
+  }
+
+  public synchronized void close() {
+    if (out == null) return;
+    try {
+      out.close();
+    } catch (IOException e) {
+      log.warn("Error closing time series file " + file, e);
+    }
+    out = null;
+  }
+
+  private static String format(double value) {
+    return String.format(Locale.US, "%.3f", value);
+  }
+
+  private void disable(IOException e) {
+    log.error("Time series disabled, cannot write to " + file.getAbsolutePath(), e);
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException ignored) {
+        //
+      }
+    }
+    out = null;
+  }
+}
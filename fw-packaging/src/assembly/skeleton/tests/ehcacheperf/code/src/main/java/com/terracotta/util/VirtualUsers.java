@@ -0,0 +1,160 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.util;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many simulated users as tasks on a small pool of carrier threads, instead of one thread per user.
+ * <p>
+ * A user runs one iteration, then is rescheduled after the pause returned by {@link #iterate(int)} (its think time),
+ * so a carrier thread only runs users with an iteration due and thousands of mostly thinking users need a few
+ * threads. Users are closed loop: the pause starts when the previous iteration completes. The first iterations are
+ * spread over spreadNanos so the users don't all start at once.
+ * <p>
+ * Thread-bound state (random streams, latency recorders, the before/after hooks of the tests) is per carrier thread,
+ * see {@link #carrierStarted(int)} and {@link #carrierStopped()}.
+ */
+public abstract class VirtualUsers {
+
+  private static final Logger                log      = Logger.getLogger(VirtualUsers.class);
+  // longer pauses are cut in slices, so that a thinking user notices the end of the test
+  private static final long                  MAX_SLEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final int                          users;
+  private final long                         spreadNanos;
+  private final ScheduledThreadPoolExecutor  carriers;
+  private final CountDownLatch               done;
+  private final AtomicInteger                failed   = new AtomicInteger();
+
+  /**
+   * @param spreadNanos period the first iterations of the users are spread over, typically the mean think time
+   */
+  public VirtualUsers(final String name, int users, final int carrierThreads, long spreadNanos) {
+    if (users < 1) { throw new IllegalArgumentException("users must be >= 1: " + users); }
+    if (carrierThreads < 1) { throw new IllegalArgumentException("carrierThreads must be >= 1: " + carrierThreads); }
+    this.users = users;
+    this.spreadNanos = Math.max(0, spreadNanos);
+    this.done = new CountDownLatch(users);
+    this.carriers = new ScheduledThreadPoolExecutor(carrierThreads, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      public Thread newThread(final Runnable r) {
+        final int carrier = count.getAndIncrement();
+        Thread thread = new Thread(name + "-" + carrier) {
+          @Override
+          public void run() {
+            carrierStarted(carrier);
+            try {
+              r.run();
+            } finally {
+              carrierStopped();
+            }
+          }
+        };
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * @return false once the users should stop, checked before each iteration
+   */
+  protected abstract boolean isRunning();
+
+  /**
+   * Runs one iteration of the given user, on whichever carrier thread is free.
+   *
+   * @return nanoseconds the user waits before its next iteration
+   */
+  protected abstract long iterate(int user);
+
+  /**
+   * Called by each carrier thread before running any user.
+   */
+  protected void carrierStarted(int carrier) {
+    // override if needed
+  }
+
+  /**
+   * Called by each carrier thread once all the users are done.
+   */
+  protected void carrierStopped() {
+    // override if needed
+  }
+
+  /**
+   * Starts the users and returns once all of them stopped.
+   */
+  public void run() {
+    carriers.prestartAllCoreThreads();
+    for (int i = 0; i < users; i++) {
+      // the user waits for its first iteration like for the next ones
+      carriers.execute(new User(i, System.nanoTime() + spreadNanos * i / users));
+    }
+    try {
+      done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      carriers.shutdown();
+    }
+    try {
+      // let the carriers run their stop hook before returning
+      carriers.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (failed.get() > 0) {
+      log.error(failed.get() + " of " + users + " virtual users stopped on an error");
+    }
+  }
+
+  private class User implements Runnable {
+    private final int index;
+    private long      nextIteration;
+
+    User(int index, long firstIteration) {
+      this.index = index;
+      this.nextIteration = firstIteration;
+    }
+
+    public void run() {
+      if (!isRunning()) {
+        done.countDown();
+        return;
+      }
+      long remaining = nextIteration - System.nanoTime();
+      if (remaining > 0) {
+        carriers.schedule(this, Math.min(remaining, MAX_SLEEP_NANOS), TimeUnit.NANOSECONDS);
+        return;
+      }
+      long pauseNanos;
+      try {
+        pauseNanos = iterate(index);
+      } catch (Throwable t) {
+        // the carriers would swallow it in the future of the task, leaving run() waiting for this user forever
+        log.error("virtual user " + index + " failed", t);
+        failed.incrementAndGet();
+        done.countDown();
+        if (t instanceof Error) throw (Error) t;
+        return;
+      }
+      if (pauseNanos > 0) {
+        nextIteration = System.nanoTime() + pauseNanos;
+        carriers.schedule(this, Math.min(pauseNanos, MAX_SLEEP_NANOS), TimeUnit.NANOSECONDS);
+      } else {
+        carriers.execute(this);
+      }
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package com.terracotta.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asymmetric phaser letting many wait-free writers record into a buffer while a (rare) reader swaps buffers and waits
+ * only for the writers that were in flight at the time of the swap.
+ * <p>
+ * Writers wrap each update in {@link #writerCriticalSectionEnter()} / {@link #writerCriticalSectionExit(long)}. A
+ * reader takes {@link #readerLock()}, swaps the active buffer with the inactive one and calls {@link #flipPhase()};
+ * when flipPhase returns no writer can still be touching the buffer that was just swapped out.
+ */
+public class WriterReaderPhaser {
+
+  private final AtomicLong    startEpoch   = new AtomicLong(0);
+  private final AtomicLong    evenEndEpoch = new AtomicLong(0);
+  private final AtomicLong    oddEndEpoch  = new AtomicLong(Long.MIN_VALUE);
+  private final ReentrantLock readerLock   = new ReentrantLock();
+
+  /**
+   * @return the value to be passed to {@link #writerCriticalSectionExit(long)}
+   */
+  public long writerCriticalSectionEnter() {
+    return startEpoch.getAndIncrement();
+  }
+
+  public void writerCriticalSectionExit(long criticalValueAtEnter) {
+    if (criticalValueAtEnter < 0) {
+      oddEndEpoch.getAndIncrement();
+    } else {
+      evenEndEpoch.getAndIncrement();
+    }
+  }
+
+  public void readerLock() {
+    readerLock.lock();
+  }
+
+  public void readerUnlock() {
+    readerLock.unlock();
+  }
+
+  /**
+   * Flips the phase and waits for all writers that entered in the previous phase to exit. Must be called while
+   * holding the reader lock.
+   */
+  public void flipPhase() {
+    if (!readerLock.isHeldByCurrentThread()) { throw new IllegalStateException("flipPhase() requires the reader lock"); }
+
+    boolean nextPhaseIsEven = (startEpoch.get() < 0);
+    long initialStartValue;
+    if (nextPhaseIsEven) {
+      initialStartValue = 0;
+      evenEndEpoch.set(initialStartValue);
+    } else {
+      initialStartValue = Long.MIN_VALUE;
+      oddEndEpoch.set(initialStartValue);
+    }
+
+    long startValueAtFlip = startEpoch.getAndSet(initialStartValue);
+    AtomicLong previousEndEpoch = nextPhaseIsEven ? oddEndEpoch : evenEndEpoch;
+    while (previousEndEpoch.get() != startValueAtFlip) {
+      Thread.yield();
+    }
+  }
+}
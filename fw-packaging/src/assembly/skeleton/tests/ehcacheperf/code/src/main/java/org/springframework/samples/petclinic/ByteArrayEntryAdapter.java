@@ -0,0 +1,113 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package org.springframework.samples.petclinic;
+
+import com.terracotta.cache.codec.ByteArrayBuffer;
+import com.terracotta.cache.codec.ByteArrayReader;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * {@link CacheEntryAdapter} storing each entity as a single byte[] instead of an Object[] of boxed fields, see
+ * {@link #toBytes(Object)} / {@link #fromBytes(byte[])}.
+ * <p>
+ * An entry is the number of fields followed by the fields, each of them prefixed by its length + 1 (0 for null):
+ * ints and dates are zigzag varints, strings are UTF-8.
+ * <p>
+ * The Object[] methods wrap the byte[] in a one element array, for the callers not aware of this adapter.
+ */
+public abstract class ByteArrayEntryAdapter<T> implements CacheEntryAdapter<T> {
+
+  private static final ThreadLocal<ByteArrayBuffer> buffers = new ThreadLocal<ByteArrayBuffer>() {
+                                                              @Override
+                                                              protected ByteArrayBuffer initialValue() {
+                                                                return new ByteArrayBuffer(256);
+                                                              }
+                                                            };
+  private static final ThreadLocal<ByteArrayReader> readers = new ThreadLocal<ByteArrayReader>() {
+                                                              @Override
+                                                              protected ByteArrayReader initialValue() {
+                                                                return new ByteArrayReader();
+                                                              }
+                                                            };
+
+  private final int                                 fieldCount;
+
+  protected ByteArrayEntryAdapter(int fieldCount) {
+    this.fieldCount = fieldCount;
+  }
+
+  protected abstract void write(T value, ByteArrayBuffer out);
+
+  protected abstract T read(ByteArrayReader in) throws IOException;
+
+  public byte[] toBytes(final T value) {
+    ByteArrayBuffer out = buffers.get().reset();
+    out.writeVarInt(fieldCount);
+    write(value, out);
+    return out.toByteArray();
+  }
+
+  public T fromBytes(final byte[] data) {
+    ByteArrayReader in = readers.get().reset(data, 0, data.length);
+    try {
+      int fields = in.readVarInt();
+      if (fields != fieldCount) { throw new IllegalArgumentException("Expected " + fieldCount + " fields, got "
+                                                                     + fields); }
+      return read(in);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Corrupted entry", e);
+    }
+  }
+
+  public T hydrate(final Object[] data) {
+    return fromBytes((byte[]) data[0]);
+  }
+
+  public Object[] dehydrate(final T value) {
+    return new Object[] { toBytes(value) };
+  }
+
+  protected static void writeInt(final ByteArrayBuffer out, final Integer value) {
+    writeLong(out, value == null ? null : Long.valueOf(value.longValue()));
+  }
+
+  protected static void writeLong(final ByteArrayBuffer out, final Long value) {
+    if (value == null) {
+      out.writeVarInt(0);
+    } else {
+      long zigzag = ByteArrayBuffer.zigzag(value);
+      out.writeVarInt(ByteArrayBuffer.varLongSize(zigzag) + 1);
+      out.writeVarLong(zigzag);
+    }
+  }
+
+  protected static void writeDate(final ByteArrayBuffer out, final Date value) {
+    writeLong(out, value == null ? null : Long.valueOf(value.getTime()));
+  }
+
+  protected static void writeString(final ByteArrayBuffer out, final String value) {
+    out.writeUTF8(value);
+  }
+
+  protected static Integer readInt(final ByteArrayReader in) throws IOException {
+    Long value = readLong(in);
+    return value == null ? null : Integer.valueOf(value.intValue());
+  }
+
+  protected static Long readLong(final ByteArrayReader in) throws IOException {
+    if (in.readVarInt() == 0) return null;
+    return Long.valueOf(ByteArrayBuffer.unzigzag(in.readVarLong()));
+  }
+
+  protected static Date readDate(final ByteArrayReader in) throws IOException {
+    Long value = readLong(in);
+    return value == null ? null : new Date(value);
+  }
+
+  protected static String readString(final ByteArrayReader in) throws IOException {
+    return in.readUTF8();
+  }
+}
@@ -6,10 +6,12 @@ package org.springframework.samples.petclinic;
 
 import org.springframework.dao.DataAccessException;
 
+import com.terracotta.cache.CacheKeyProcessor;
 import com.terracotta.cache.CacheProcessor;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * The high-level PetClinic business interface.
@@ -66,6 +68,31 @@ public interface Clinic {
    */
   Owner loadOwner(int id) throws DataAccessException; // DO IT
 
+  /**
+   * Reads the <code>Owner</code> entry without blocking, its pets and visits are not fetched
+   * 
+   * @param id
+   * @return
+   */
+  Future<Owner> getOwnerAsync(int id);
+
+  /**
+   * Batch version of {@link #getOwner(int)}, the owners are read with batch cache operations where the DAOs support
+   * them
+   * 
+   * @param ids
+   * @return the owners found
+   */
+  Collection<Owner> getOwners(Collection<Integer> ids) throws DataAccessException;
+
+  /**
+   * Batch version of {@link #loadOwner(int)}
+   * 
+   * @param ids
+   * @return the owners loaded
+   */
+  Collection<Owner> loadOwners(Collection<Integer> ids) throws DataAccessException;
+
   /**
    * Save an <code>Owner</code> to the data store, either inserting or updating it.
    * 
@@ -76,6 +103,13 @@ public interface Clinic {
 
   void refreshCache(final Owner owner);
 
+  /**
+   * Evicts the <code>Owner</code> from the cache, it is loaded again by the next {@link #getOwner(int)}.
+   *
+   * @param id the id of the owner to evict
+   */
+  void removeOwner(int id);
+
   /**
    * Calls process on the cacheProcessor for all caches associated with this clinic
    * 
@@ -83,6 +117,15 @@ public interface Clinic {
    */
   void processAllCaches(CacheProcessor cacheProcessor);
 
+  /**
+   * Process the keys all the caches may hold for the owners fromOwnerId (inclusive) to toOwnerId (exclusive): the
+   * owners, their pets and visits and, with owner 0, the pet types.
+   *
+   * @param cacheKeyProcessor
+   * @throws UnsupportedOperationException when the keys cannot be derived from the owner ids
+   */
+  void processCacheKeys(int fromOwnerId, int toOwnerId, CacheKeyProcessor cacheKeyProcessor);
+
   /**
    * Save a <code>Visit</code> to the data store, either inserting or updating it.
    * 
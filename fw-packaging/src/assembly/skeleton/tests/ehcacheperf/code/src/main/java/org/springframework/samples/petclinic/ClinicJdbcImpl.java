@@ -10,13 +10,18 @@ import org.springframework.samples.petclinic.dao.VisitDao;
 import org.springframework.samples.petclinic.dao.jdbc.GenericDao;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.terracotta.cache.CacheKeyProcessor;
 import com.terracotta.cache.CacheProcessor;
+import com.terracotta.ehcache.perf.trace.TraceOp;
+import com.terracotta.ehcache.perf.trace.TraceRecorder;
+import com.terracotta.util.OperationStats;
 
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 /**
  * @author Alex Snaps
@@ -24,6 +29,9 @@ import java.util.Set;
 @Transactional
 public class ClinicJdbcImpl implements Clinic {
 
+  private final OperationStats operationStats = OperationStats.getInstance();
+  private final TraceRecorder  trace          = TraceRecorder.getInstance();
+
   private CacheManager cacheManager;
 
   private PetTypeDao petTypeDao;
@@ -36,7 +44,12 @@ public class ClinicJdbcImpl implements Clinic {
   }
 
   public Collection<Owner> findOwners(final String lastName) throws DataAccessException {
-    return ownerDao.findByLastName(lastName);
+    long start = System.nanoTime();
+    try {
+      return ownerDao.findByLastName(lastName);
+    } finally {
+      operationStats.recordNanos("findOwners", System.nanoTime() - start);
+    }
   }
 
   public Owner findOwnerByAccount(final Integer account) throws DataAccessException {
@@ -44,23 +57,75 @@ public class ClinicJdbcImpl implements Clinic {
   }
 
   public Owner getOwner(final int id) throws DataAccessException {
-    Owner owner = ownerDao.getById(id);
-    populatePets(owner);
-    for (Pet pet : owner.getPetsInternal()) {
-      populateVisits(pet);
-      populateType(pet);
+    long start = System.nanoTime();
+    try {
+      Owner owner = ownerDao.getById(id);
+      populatePets(owner);
+      for (Pet pet : owner.getPetsInternal()) {
+        populateVisits(pet);
+        populateType(pet);
+      }
+      if (trace.isRecording()) trace.record(TraceOp.getOwner, id, entryCount(owner), start);
+      return owner;
+    } finally {
+      operationStats.recordNanos("getOwner", System.nanoTime() - start);
     }
-    return owner;
   }
 
   public Owner loadOwner(final int id) throws DataAccessException {
-    Owner owner = ownerDao.loadById(id);
-    loadPets(owner);
-    for (Pet pet : owner.getPetsInternal()) {
-      loadVisits(pet);
-      loadType(pet);
+    long start = System.nanoTime();
+    try {
+      Owner owner = ownerDao.loadById(id);
+      loadPets(owner);
+      for (Pet pet : owner.getPetsInternal()) {
+        loadVisits(pet);
+        loadType(pet);
+      }
+      if (trace.isRecording()) trace.record(TraceOp.loadOwner, id, entryCount(owner), start);
+      return owner;
+    } finally {
+      operationStats.recordNanos("loadOwner", System.nanoTime() - start);
+    }
+  }
+
+  public Future<Owner> getOwnerAsync(final int id) {
+    return ownerDao.getByIdAsync(id);
+  }
+
+  public Collection<Owner> getOwners(final Collection<Integer> ids) throws DataAccessException {
+    long start = System.nanoTime();
+    try {
+      Collection<Owner> owners = ownerDao.getByIds(ids).values();
+      for (Owner owner : owners) {
+        populatePets(owner);
+        for (Pet pet : owner.getPetsInternal()) {
+          populateVisits(pet);
+          populateType(pet);
+        }
+        if (trace.isRecording()) trace.record(TraceOp.getOwner, owner.getId(), entryCount(owner), start);
+      }
+      return owners;
+    } finally {
+      operationStats.recordNanos("getOwners", System.nanoTime() - start);
+    }
+  }
+
+  public Collection<Owner> loadOwners(final Collection<Integer> ids) throws DataAccessException {
+    long start = System.nanoTime();
+    try {
+      Collection<Owner> owners = ownerDao.loadByIds(ids).values();
+      for (Owner owner : owners) {
+        loadPets(owner);
+        for (Pet pet : owner.getPetsInternal()) {
+          loadVisits(pet);
+          loadType(pet);
+        }
+        if (trace.isRecording()) trace.record(TraceOp.loadOwner, owner.getId(), entryCount(owner), start);
+      }
+      return owners;
+    } finally {
+      operationStats.recordNanos("loadOwners", System.nanoTime() - start);
     }
-    return owner;
   }
 
   private void populateType(final Pet pet) {
@@ -116,16 +181,42 @@ public class ClinicJdbcImpl implements Clinic {
   }
 
   public void storeOwner(final Owner owner) throws DataAccessException {
-    ownerDao.store(owner);
-    for (Pet pet : owner.getPetsInternal()) {
-      petDao.store(pet);
-      for (Visit visit : pet.getVisitsInternal()) {
-        visitDao.store(visit);
+    long start = System.nanoTime();
+    try {
+      ownerDao.store(owner);
+      for (Pet pet : owner.getPetsInternal()) {
+        petDao.store(pet);
+        for (Visit visit : pet.getVisitsInternal()) {
+          visitDao.store(visit);
+        }
       }
+      if (trace.isRecording()) trace.record(TraceOp.storeOwner, owner.getId(), entryCount(owner), start);
+    } finally {
+      operationStats.recordNanos("storeOwner", System.nanoTime() - start);
     }
   }
 
   public void refreshCache(final Owner owner) {
+    long start = System.nanoTime();
+    try {
+      doRefreshCache(owner);
+      if (trace.isRecording()) trace.record(TraceOp.refreshCache, owner.getId(), entryCount(owner), start);
+    } finally {
+      operationStats.recordNanos("refreshCache", System.nanoTime() - start);
+    }
+  }
+
+  public void removeOwner(final int id) {
+    long start = System.nanoTime();
+    try {
+      ownerDao.remove(id);
+      if (trace.isRecording()) trace.record(TraceOp.removeOwner, id, 0, start);
+    } finally {
+      operationStats.recordNanos("removeOwner", System.nanoTime() - start);
+    }
+  }
+
+  private void doRefreshCache(final Owner owner) {
     ownerDao.putInCache(owner);
     petDao.putInCache(owner, owner.getPetsInternal());
     for (Pet pet : owner.getPetsInternal()) {
@@ -137,6 +228,17 @@ public class ClinicJdbcImpl implements Clinic {
     }
   }
 
+  /**
+   * Number of cache entries making up the owner graph, recorded as the value size of traced operations.
+   */
+  private static int entryCount(final Owner owner) {
+    int count = 1;
+    for (Pet pet : owner.getPetsInternal()) {
+      count += 1 + pet.getVisitsInternal().size();
+    }
+    return count;
+  }
+
   public void processAllCaches(CacheProcessor cacheProcessor) {
     ownerDao.processAssociatedCaches(cacheProcessor);
     petDao.processAssociatedCaches(cacheProcessor);
@@ -144,6 +246,13 @@ public class ClinicJdbcImpl implements Clinic {
     petTypeDao.processAssociatedCaches(cacheProcessor);
   }
 
+  public void processCacheKeys(int fromOwnerId, int toOwnerId, CacheKeyProcessor cacheKeyProcessor) {
+    ownerDao.processAssociatedCacheKeys(fromOwnerId, toOwnerId, cacheKeyProcessor);
+    petDao.processAssociatedCacheKeys(fromOwnerId, toOwnerId, cacheKeyProcessor);
+    visitDao.processAssociatedCacheKeys(fromOwnerId, toOwnerId, cacheKeyProcessor);
+    petTypeDao.processAssociatedCacheKeys(fromOwnerId, toOwnerId, cacheKeyProcessor);
+  }
+
   public void storeVisit(final Visit visit) throws DataAccessException {
     throw new UnsupportedOperationException("Not yet impl.");
   }
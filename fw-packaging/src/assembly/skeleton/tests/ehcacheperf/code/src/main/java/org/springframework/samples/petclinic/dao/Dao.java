@@ -2,7 +2,10 @@ package org.springframework.samples.petclinic.dao;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
+import com.terracotta.cache.CacheKeyProcessor;
 import com.terracotta.cache.CacheProcessor;
 
 /**
@@ -27,10 +30,43 @@ public interface Dao<K, V> {
    */
   V loadById(K id);
 
+  /**
+   * Reads the cached value without blocking, see {@link com.terracotta.cache.AsyncCacheWrapper}. A miss is loaded
+   * and cached when getting the result
+   * 
+   * @param id
+   * @return
+   */
+  Future<V> getByIdAsync(K id);
+
+  /**
+   * Batch version of {@link #getById(Object)}: the cached values are read with getAll, the missing ones are loaded
+   * and cached with putAll
+   * 
+   * @param ids
+   * @return the values by id
+   */
+  Map<K, V> getByIds(Collection<K> ids);
+
+  /**
+   * Batch version of {@link #loadById(Object)}, the loaded values are cached with putAll
+   * 
+   * @param ids
+   * @return the values by id
+   */
+  Map<K, V> loadByIds(Collection<K> ids);
+
   List<V> findAll();
 
   void store(V value);
 
+  /**
+   * Removes the value from the cache only, the data source is left untouched.
+   *
+   * @param id
+   */
+  void remove(K id);
+
   void putInCache(V value);
 
   void putInCache(Object owner, Collection<V> collection);
@@ -41,6 +77,14 @@ public interface Dao<K, V> {
    * @param cacheProcessor
    */
   void processAssociatedCaches(CacheProcessor cacheProcessor);
+
+  /**
+   * processes the keys the associated caches may hold for the owners fromOwnerId (inclusive) to toOwnerId (exclusive)
+   * with the input {@link CacheKeyProcessor}, the keys of the entities not tied to an owner go with owner 0
+   * 
+   * @throws UnsupportedOperationException when the keys cannot be derived from the owner ids
+   */
+  void processAssociatedCacheKeys(int fromOwnerId, int toOwnerId, CacheKeyProcessor cacheKeyProcessor);
   
   int getSize();
 }
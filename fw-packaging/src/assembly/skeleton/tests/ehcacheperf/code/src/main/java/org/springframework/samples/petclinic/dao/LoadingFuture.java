@@ -0,0 +1,50 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package org.springframework.samples.petclinic.dao;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future of an async cache read falling back to {@link Dao#getById(Object)} on a miss, the miss being loaded
+ * synchronously by the thread getting the result.
+ */
+public class LoadingFuture<K, V> implements Future<V> {
+
+  private final Future<V> cached;
+  private final Dao<K, V> dao;
+  private final K         id;
+
+  public LoadingFuture(final Future<V> cached, final Dao<K, V> dao, final K id) {
+    this.cached = cached;
+    this.dao = dao;
+    this.id = id;
+  }
+
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    return cached.cancel(mayInterruptIfRunning);
+  }
+
+  public boolean isCancelled() {
+    return cached.isCancelled();
+  }
+
+  public boolean isDone() {
+    return cached.isDone();
+  }
+
+  public V get() throws InterruptedException, ExecutionException {
+    return loadIfMissing(cached.get());
+  }
+
+  public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+    return loadIfMissing(cached.get(timeout, unit));
+  }
+
+  private V loadIfMissing(V value) {
+    return (value == null) ? dao.getById(id) : value;
+  }
+}
@@ -1,7 +1,11 @@
 package org.springframework.samples.petclinic.dao.jdbc;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 import javax.sql.DataSource;
 
@@ -16,7 +20,10 @@ import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.samples.petclinic.BaseEntity;
 import org.springframework.samples.petclinic.CacheEntryAdapter;
 import org.springframework.samples.petclinic.dao.Dao;
+import org.springframework.samples.petclinic.dao.LoadingFuture;
 
+import com.terracotta.cache.AsyncCacheWrapper;
+import com.terracotta.cache.CacheKeyProcessor;
 import com.terracotta.cache.CacheProcessor;
 import com.terracotta.cache.CacheWrapper;
 
@@ -71,6 +78,40 @@ public abstract class GenericDao<K, V extends BaseEntity> implements Dao<K, V> {
     return value;
   }
 
+  public Future<V> getByIdAsync(final K id) {
+    return new LoadingFuture<K, V>(((AsyncCacheWrapper<K, V>) cache).getAsync(id, adapter), this, id);
+  }
+
+  public Map<K, V> getByIds(final Collection<K> ids) {
+    Map<K, V> values = cache.getAll(ids, adapter);
+    if (values.size() < ids.size()) {
+      List<K> missing = new ArrayList<K>(ids.size() - values.size());
+      for (K id : ids) {
+        if (!values.containsKey(id)) {
+          missing.add(id);
+        }
+      }
+      if (logMisses) {
+        log.warn("Getting data from DB because of " + missing.size() + " misses on " + tableName);
+      }
+      values = new HashMap<K, V>(values);
+      values.putAll(loadByIds(missing));
+    }
+    return values;
+  }
+
+  public Map<K, V> loadByIds(final Collection<K> ids) {
+    Map<K, V> values = new HashMap<K, V>(ids.size() * 2);
+    for (K id : ids) {
+      V value = this.jdbcTemplate.queryForObject(findById, mapper, id);
+      if (value != null) {
+        values.put(id, value);
+      }
+    }
+    cache.putAll(values, adapter);
+    return values;
+  }
+
   public List<V> findAll() {
     return this.jdbcTemplate.query(findAll, mapper);
   }
@@ -108,6 +149,10 @@ public abstract class GenericDao<K, V extends BaseEntity> implements Dao<K, V> {
     this.datasource = datasource;
   }
 
+  public void remove(final K id) {
+    cache.remove(id);
+  }
+
   public void putInCache(V value) {
     cache.put((K) value.getId(), value, adapter);
   }
@@ -129,6 +174,13 @@ public abstract class GenericDao<K, V extends BaseEntity> implements Dao<K, V> {
     if (cacheProcessor == null) return;
     cacheProcessor.processCache(cache);
   }
+
+  /**
+   * Ids come from the database, they are not derived from the owner ids.
+   */
+  public void processAssociatedCacheKeys(int fromOwnerId, int toOwnerId, CacheKeyProcessor cacheKeyProcessor) {
+    throw new UnsupportedOperationException("cache keys of the JDBC DAOs are not derived from the owner ids");
+  }
   
   public int getSize() {
     return cache.getSize();
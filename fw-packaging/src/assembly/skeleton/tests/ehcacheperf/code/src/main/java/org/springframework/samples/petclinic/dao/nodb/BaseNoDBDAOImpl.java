@@ -5,22 +5,43 @@ import net.sf.ehcache.Cache;
 import org.springframework.samples.petclinic.BaseEntity;
 import org.springframework.samples.petclinic.CacheEntryAdapter;
 import org.springframework.samples.petclinic.dao.Dao;
+import org.springframework.samples.petclinic.dao.LoadingFuture;
 
+import com.terracotta.cache.AsyncCacheWrapper;
+import com.terracotta.cache.CacheKeyProcessor;
 import com.terracotta.cache.CacheProcessor;
 import com.terracotta.cache.CacheWrapper;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Future;
 
 public abstract class BaseNoDBDAOImpl<K, V extends BaseEntity> implements Dao<K, V> {
 
+  private static final int          PADDING_SALT = 16;
+
   protected CacheWrapper<String, V> cache;
   protected CacheEntryAdapter<V>    adapter;
+  protected SyntheticData           data = new SyntheticData();
   protected int                     keyPaddingInBytes = 0;
   protected int                     valuePaddingInBytes = 0;
   protected boolean                 variableValue = false;
-  private final Random              rnd = new Random();
+  protected int                     batchSize = 1;
+  protected boolean                 byteArrayEntries = false;
+  private PaddingPool.SizeDistribution valuePaddingDistribution;
+  private String                    valuePaddingParams;
+  private int                       valuePaddingPoolSize = 1024;
+  private volatile PaddingPool      paddingPool;
+  private String                    keyPrefix = "";
+  private int                       keyCacheSize = 0;
+  private String[]                  keys;
 
   public BaseNoDBDAOImpl() {
     super();
@@ -30,29 +51,135 @@ public abstract class BaseNoDBDAOImpl<K, V extends BaseEntity> implements Dao<K,
 
   public void setVariableValue(String variableValue) {
     this.variableValue = Boolean.parseBoolean(variableValue);
+    this.paddingPool = null;
   }
 
   private String getString(int b){
-    /*
-     * http://www.javamex.com/tutorials/memory/string_memory_usage.shtml
-     * Minimum String memory usage (bytes) = 8 * (int) ((((no chars) * 2) + 45) / 8)
-     */
-    int no_of_chars = b / 2;
-
-    byte[] bytes = new byte[no_of_chars];
-    for (int i = 0; i < no_of_chars; i++) {
-      bytes[i] = 0x32;
-    }
-    return new String(bytes);
+    return PaddingPool.newPadding(b);
   }
 
+  /**
+   * Picked at random from the padding pool, built on first use around paddingInBytes.
+   */
   protected String getPaddingString(int paddingInBytes){
-    paddingInBytes = (variableValue) ? (paddingInBytes / 2) + rnd.nextInt(paddingInBytes + 1) : paddingInBytes;
-    return getString(paddingInBytes);
+    return getPaddingPool(paddingInBytes).next();
+  }
+
+  /**
+   * Picked from the padding pool by the id, so an entity always gets the same padding.
+   */
+  protected String getPaddingString(int paddingInBytes, int id){
+    return getPaddingPool(paddingInBytes).get(data.hash(id, PADDING_SALT));
+  }
+
+  private PaddingPool getPaddingPool(int paddingInBytes) {
+    PaddingPool pool = paddingPool;
+    if (pool == null || pool.getMeanBytes() != paddingInBytes) {
+      synchronized (this) {
+        pool = paddingPool;
+        if (pool == null || pool.getMeanBytes() != paddingInBytes) {
+          paddingPool = pool = new PaddingPool(getPaddingDistribution(), paddingInBytes, valuePaddingParams,
+                                               valuePaddingPoolSize);
+        }
+      }
+    }
+    return pool;
+  }
+
+  private PaddingPool.SizeDistribution getPaddingDistribution() {
+    if (valuePaddingDistribution != null) return valuePaddingDistribution;
+    // variableValue predates the distributions
+    return variableValue ? PaddingPool.SizeDistribution.uniform : PaddingPool.SizeDistribution.fixed;
+  }
+
+  /**
+   * One of fixed, uniform, normal, bimodal or histogram, see {@link PaddingPool.SizeDistribution}. When not set,
+   * variableValue picks between fixed and uniform.
+   *
+   * @throws IllegalArgumentException on an unknown distribution name
+   */
+  public void setValuePaddingDistribution(String distribution) {
+    if (distribution == null || distribution.startsWith("${") || distribution.trim().length() == 0) {
+      // valuePaddingDistribution not set in the test properties
+      this.valuePaddingDistribution = null;
+    } else {
+      try {
+        this.valuePaddingDistribution = PaddingPool.SizeDistribution.valueOf(distribution.trim());
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Unknown valuePaddingDistribution: " + distribution + ", expected one of "
+                                           + Arrays.toString(PaddingPool.SizeDistribution.values()));
+      }
+    }
+    this.paddingPool = null;
+  }
+
+  /**
+   * Parameters of the padding distribution, see {@link PaddingPool.SizeDistribution}.
+   */
+  public void setValuePaddingParams(String params) {
+    this.valuePaddingParams = (params == null || params.startsWith("${")) ? null : params.trim();
+    this.paddingPool = null;
+  }
+
+  public void setValuePaddingPoolSize(String poolSize) {
+    try {
+      this.valuePaddingPoolSize = Math.max(1, Integer.parseInt(poolSize.trim()));
+    } catch (NumberFormatException e) {
+      // valuePaddingPoolSize not set in the test properties
+      this.valuePaddingPoolSize = 1024;
+    }
+    this.paddingPool = null;
+  }
+
+  /**
+   * Max number of entries per getAll/putAll of {@link #getByIds(Collection)} and {@link #loadByIds(Collection)}, 1
+   * (default) reads and writes entry by entry.
+   */
+  public void setBatchSize(String batchSize) {
+    try {
+      this.batchSize = Math.max(1, Integer.parseInt(batchSize.trim()));
+    } catch (NumberFormatException e) {
+      // batchSize not set in the test properties
+      this.batchSize = 1;
+    }
+  }
+
+  /**
+   * "byteArray" stores the entries as a single byte[] (see ByteArrayEntryAdapter), anything else (default) as an
+   * Object[] of the entity fields.
+   */
+  public void setEntryEncoding(String entryEncoding) {
+    this.byteArrayEntries = "byteArray".equalsIgnoreCase(entryEncoding.trim());
+    if (cache != null) {
+      setCacheEntryAdapter();
+    }
+  }
+
+  /**
+   * Shared by all the DAOs so they derive the same graph, defaults to 2 pets per owner and 2 visits per pet.
+   */
+  public void setSyntheticData(SyntheticData data) {
+    this.data = data;
   }
 
   public void setKeyPaddingInBytes(int keyPaddingInBytes) {
     this.keyPaddingInBytes = keyPaddingInBytes;
+    this.keyPrefix = getString(keyPaddingInBytes);
+    this.keys = (keyCacheSize > 0) ? new String[keyCacheSize] : null;
+  }
+
+  /**
+   * Number of keys (ids 0 to keyCacheSize - 1) kept once generated, so hot keys are the same String instance with an
+   * already computed hashCode. 0 (default) generates every key.
+   */
+  public void setKeyCacheSize(String keyCacheSize) {
+    try {
+      this.keyCacheSize = Math.max(0, Integer.parseInt(keyCacheSize.trim()));
+    } catch (NumberFormatException e) {
+      // keyCacheSize not set in the test properties
+      this.keyCacheSize = 0;
+    }
+    this.keys = (this.keyCacheSize > 0) ? new String[this.keyCacheSize] : null;
   }
 
   public void setValuePaddingInBytes(int valuePaddingInBytes) {
@@ -64,17 +191,101 @@ public abstract class BaseNoDBDAOImpl<K, V extends BaseEntity> implements Dao<K,
     setCacheEntryAdapter();
   }
 
+  public void remove(K id) {
+    cache.remove(generateKey(id));
+  }
+
   public void putInCache(V value) {
     cache.put(generateKey((K) value.getId()), value, adapter);
   }
 
+  /**
+   * Generates the value of the given id, as it would be read from the database.
+   */
+  protected abstract V retrieve(K id);
+
+  public Future<V> getByIdAsync(final K id) {
+    return new LoadingFuture<K, V>(((AsyncCacheWrapper<String, V>) cache).getAsync(generateKey(id), adapter), this, id);
+  }
+
+  public Map<K, V> getByIds(final Collection<K> ids) {
+    Map<K, V> values = new LinkedHashMap<K, V>(ids.size() * 2);
+    if (batchSize == 1) {
+      for (K id : ids) {
+        values.put(id, getById(id));
+      }
+      return values;
+    }
+    List<K> all = (ids instanceof List) ? (List<K>) ids : new ArrayList<K>(ids);
+    for (int from = 0; from < all.size(); from += batchSize) {
+      Map<String, K> keys = generateKeys(all.subList(from, Math.min(from + batchSize, all.size())));
+      Map<String, V> cached = cache.getAll(keys.keySet(), adapter);
+      Map<String, V> missing = new HashMap<String, V>();
+      for (Map.Entry<String, K> key : keys.entrySet()) {
+        V value = cached.get(key.getKey());
+        if (value == null && (value = retrieve(key.getValue())) != null) {
+          missing.put(key.getKey(), value);
+        }
+        values.put(key.getValue(), value);
+      }
+      cache.putAll(missing, adapter);
+    }
+    return values;
+  }
+
+  public Map<K, V> loadByIds(final Collection<K> ids) {
+    Map<K, V> values = new LinkedHashMap<K, V>(ids.size() * 2);
+    if (batchSize == 1) {
+      for (K id : ids) {
+        values.put(id, loadById(id));
+      }
+      return values;
+    }
+    List<K> all = (ids instanceof List) ? (List<K>) ids : new ArrayList<K>(ids);
+    for (int from = 0; from < all.size(); from += batchSize) {
+      Map<String, K> keys = generateKeys(all.subList(from, Math.min(from + batchSize, all.size())));
+      Map<String, V> loaded = new HashMap<String, V>(keys.size() * 2);
+      for (Map.Entry<String, K> key : keys.entrySet()) {
+        V value = retrieve(key.getValue());
+        if (value != null) {
+          loaded.put(key.getKey(), value);
+        }
+        values.put(key.getValue(), value);
+      }
+      cache.putAll(loaded, adapter);
+    }
+    return values;
+  }
+
+  private Map<String, K> generateKeys(final List<K> ids) {
+    Map<String, K> keys = new LinkedHashMap<String, K>(ids.size() * 2);
+    for (K id : ids) {
+      keys.put(generateKey(id), id);
+    }
+    return keys;
+  }
+
   public List<V> findAll() {
     // TODO Auto-generated method stub
     return null;
   }
 
   protected String generateKey(K id) {
-    return getString(keyPaddingInBytes) + id;
+    String[] cached = keys;
+    if (cached != null && id instanceof Integer) {
+      int index = (Integer) id;
+      if (index >= 0 && index < cached.length) {
+        // racy on purpose: threads missing each other's writes only build the same key twice
+        String key = cached[index];
+        if (key == null) {
+          key = keyPrefix + id;
+          key.hashCode();
+          cached[index] = key;
+        }
+        return key;
+      }
+    }
+    return keyPrefix + id;
   }
 
   public void store(V value) {
@@ -95,6 +306,66 @@ public abstract class BaseNoDBDAOImpl<K, V extends BaseEntity> implements Dao<K,
     cacheProcessor.processCache(cache);
   }
 
+  /**
+   * Visits the keys of the entities from the first one of fromOwnerId to the last one of toOwnerId - 1, see
+   * {@link #getFirstId(long)}.
+   */
+  public void processAssociatedCacheKeys(int fromOwnerId, int toOwnerId, CacheKeyProcessor cacheKeyProcessor) {
+    if (cacheKeyProcessor == null) return;
+    final Iterable<Integer> ids = ids(getFirstId(fromOwnerId), getFirstId(toOwnerId));
+    cacheKeyProcessor.processCacheKeys(cache, new Iterable<String>() {
+      public Iterator<String> iterator() {
+        final Iterator<Integer> id = ids.iterator();
+        return new Iterator<String>() {
+          public boolean hasNext() {
+            return id.hasNext();
+          }
+
+          public String next() {
+            return generateKey((K) id.next());
+          }
+
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    });
+  }
+
+  /**
+   * @return id of the first entity of the owner, the entities of an owner have ids up to the first id of the next
+   *         owner (some of them may not exist)
+   */
+  protected abstract long getFirstId(long ownerId);
+
+  /**
+   * @return the ids from (inclusive) to to (exclusive), generated on iteration
+   */
+  protected static Iterable<Integer> ids(final long from, final long to) {
+    if (to - 1 > Integer.MAX_VALUE) { throw new IllegalArgumentException("Ids up to " + to + " overflow an int"); }
+    return new Iterable<Integer>() {
+      public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+          private long next = from;
+
+          public boolean hasNext() {
+            return next < to;
+          }
+
+          public Integer next() {
+            if (next >= to) throw new NoSuchElementException();
+            return Integer.valueOf((int) next++);
+          }
+
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
+  }
+
   public int getSize() {
     return cache.getSize();
   }
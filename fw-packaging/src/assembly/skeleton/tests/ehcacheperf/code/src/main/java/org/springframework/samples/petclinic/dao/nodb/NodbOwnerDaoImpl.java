@@ -1,10 +1,21 @@
 package org.springframework.samples.petclinic.dao.nodb;
 
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.search.Attribute;
+import net.sf.ehcache.search.Result;
+
+import org.springframework.samples.petclinic.ByteArrayEntryAdapter;
 import org.springframework.samples.petclinic.CacheEntryAdapter;
 import org.springframework.samples.petclinic.Owner;
 import org.springframework.samples.petclinic.dao.OwnerDao;
 
+import com.terracotta.cache.codec.ByteArrayBuffer;
+import com.terracotta.cache.codec.ByteArrayReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 public class NodbOwnerDaoImpl extends BaseNoDBDAOImpl<Integer, Owner> implements OwnerDao {
   // 2MM owners
@@ -15,8 +26,20 @@ public class NodbOwnerDaoImpl extends BaseNoDBDAOImpl<Integer, Owner> implements
     super();
   }
 
+  /**
+   * Only supported on searchable caches (search.enabled), looks up the lastName search attribute.
+   */
   public Collection<Owner> findByLastName(final String lastName) {
-    throw new UnsupportedOperationException("findByLastName");
+    if (!isSearchable()) { throw new UnsupportedOperationException("findByLastName requires a searchable cache"); }
+    Cache owners = (Cache) cache.getUnderlyingCache();
+    Attribute<String> lastNameAttribute = owners.getSearchAttribute("lastName");
+    List<Result> results = owners.createQuery().addCriteria(lastNameAttribute.eq(lastName)).includeValues().execute()
+        .all();
+    List<Owner> found = new ArrayList<Owner>(results.size());
+    for (Result result : results) {
+      found.add((Owner) result.getValue());
+    }
+    return found;
   }
 
   public Owner getById(final Integer id) {
@@ -43,6 +66,16 @@ public class NodbOwnerDaoImpl extends BaseNoDBDAOImpl<Integer, Owner> implements
     return getOwner(account);
   }
 
+  @Override
+  protected Owner retrieve(final Integer id) {
+    return getOwner(id);
+  }
+
+  @Override
+  protected long getFirstId(final long ownerId) {
+    return ownerId;
+  }
+
   private Owner getOwner(final Integer account) {
     Owner owner = new Owner();
     int firstname = account % OwnerFirstNames;
@@ -51,7 +84,7 @@ public class NodbOwnerDaoImpl extends BaseNoDBDAOImpl<Integer, Owner> implements
     owner.setAccount(account);
     owner.setFirstName("Owner_First_Name_" + firstname);
     owner.setLastName("Owner_Last_Name_" + lastname);
-    owner.setAddress("Street Number " + firstname + getPaddingString(valuePaddingInBytes));
+    owner.setAddress("Street Number " + firstname + getPaddingString(valuePaddingInBytes, account));
     owner.setCity("City Name " + lastname);
     owner.setTelephone("" + (account + 6085550001L));
     return owner;
@@ -86,10 +119,41 @@ public class NodbOwnerDaoImpl extends BaseNoDBDAOImpl<Integer, Owner> implements
     }
   }
 
+  private static class OwnerBytesMapper extends ByteArrayEntryAdapter<Owner> {
+
+    OwnerBytesMapper() {
+      super(7);
+    }
+
+    @Override
+    protected void write(final Owner value, final ByteArrayBuffer out) {
+      writeInt(out, value.getId());
+      writeInt(out, value.getAccount());
+      writeString(out, value.getFirstName());
+      writeString(out, value.getLastName());
+      writeString(out, value.getAddress());
+      writeString(out, value.getCity());
+      writeString(out, value.getTelephone());
+    }
+
+    @Override
+    protected Owner read(final ByteArrayReader in) throws IOException {
+      Owner owner = new Owner();
+      owner.setId(readInt(in));
+      owner.setAccount(readInt(in));
+      owner.setFirstName(readString(in));
+      owner.setLastName(readString(in));
+      owner.setAddress(readString(in));
+      owner.setCity(readString(in));
+      owner.setTelephone(readString(in));
+      return owner;
+    }
+  }
+
   @Override
   public void setCacheEntryAdapter() {
     // if copyOnRead is enabled, its thread-safe even without dehydrating
-    this.adapter = (isSearchable()) ? null : new OwnerRowMapper();
+    this.adapter = (isSearchable()) ? null : (byteArrayEntries) ? new OwnerBytesMapper() : new OwnerRowMapper();
   }
 
 }
@@ -1,36 +1,31 @@
 package org.springframework.samples.petclinic.dao.nodb;
 
+import org.springframework.samples.petclinic.ByteArrayEntryAdapter;
 import org.springframework.samples.petclinic.CacheEntryAdapter;
 import org.springframework.samples.petclinic.Owner;
 import org.springframework.samples.petclinic.Pet;
 import org.springframework.samples.petclinic.dao.PetDao;
 
+import com.terracotta.cache.CacheKeyProcessor;
 import com.terracotta.cache.CacheProcessor;
 import com.terracotta.cache.CacheWrapper;
+import com.terracotta.cache.codec.ByteArrayBuffer;
+import com.terracotta.cache.codec.ByteArrayReader;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
-import java.util.Random;
 
 public class NodbPetDaoImpl extends BaseNoDBDAOImpl<Integer, Pet> implements PetDao {
-  private final Random                         rand;
-  private final ThreadLocal<SimpleDateFormat>  formatter = new ThreadLocal<SimpleDateFormat>() {
+  private static final int                     TYPE_ATTRIBUTE       = 0;
+  private static final int                     BIRTH_DATE_ATTRIBUTE = 1;
 
-    @Override
-    protected SimpleDateFormat initialValue() {
-      return new SimpleDateFormat("yyyy-MM-dd");
-    }
-
-  };
   private CacheWrapper<Integer, List<Integer>> ownerPetCache;
 
   public NodbPetDaoImpl() {
     super();
-    this.rand = new Random();
   }
 
   public Collection<Pet> getPetsForOwner(final Owner owner) {
@@ -41,32 +36,18 @@ public class NodbPetDaoImpl extends BaseNoDBDAOImpl<Integer, Pet> implements Pet
       ownerPetCache.put(owner.getId(), petIdList, null);
     }
 
-    Collection<Pet> petList = new ArrayList<Pet>(petIdList.size());
-    for (Integer id : petIdList) {
-      petList.add(getById(id));
-    }
-
-    return petList;
+    return new ArrayList<Pet>(getByIds(petIdList).values());
   }
 
   public Collection<Pet> loadPetsForOwner(final Owner owner) {
     List<Integer> petIdList;
     petIdList = retrievePetIdList(owner);
     ownerPetCache.put(owner.getId(), petIdList, null);
-    Collection<Pet> petList = new ArrayList<Pet>(petIdList.size());
-    for (Integer id : petIdList) {
-      petList.add(loadById(id));
-    }
-    return petList;
+    return new ArrayList<Pet>(loadByIds(petIdList).values());
   }
 
   protected List<Integer> retrievePetIdList(final Owner owner) {
-    // every owner has two pets
-    Integer id = owner.getAccount() * 2;
-    List<Integer> petIdList = new ArrayList<Integer>();
-    petIdList.add(id);
-    petIdList.add(id + 1);
-    return petIdList;
+    return data.getPetIds(owner.getAccount());
   }
 
   public Pet getById(final Integer id) {
@@ -89,30 +70,27 @@ public class NodbPetDaoImpl extends BaseNoDBDAOImpl<Integer, Pet> implements Pet
     return value;
   }
 
+  @Override
+  protected Pet retrieve(final Integer id) {
+    return getPet(id);
+  }
+
+  @Override
+  protected long getFirstId(final long ownerId) {
+    return data.getFirstPetId(ownerId);
+  }
+
   private Pet getPet(int petId) {
     Pet pet = new Pet();
     pet.setId(petId);
-    int petType = petId % NodbPetTypeDaoImpl.NUM_PET_TYPES;
+    int petType = data.attribute(petId, TYPE_ATTRIBUTE, NodbPetTypeDaoImpl.NUM_PET_TYPES);
     pet.setTypeFK(petType);
     pet.setName("PET_NAME_" + petType);
-    try {
-      pet.setBirthDate(formatter.get().parse(getRandomDate()));
-    } catch (ParseException e) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
-      throw new RuntimeException(e);
-    }
-    pet.setOwnerFK(petId / 2);
+    pet.setBirthDate(data.date(petId, BIRTH_DATE_ATTRIBUTE));
+    pet.setOwnerFK(data.getOwnerId(petId));
     return pet;
   }
 
-  private String getRandomDate() {
-    int day = rand.nextInt(27) + 1;
-    int month = rand.nextInt(12) + 1;
-    int year = rand.nextInt(4) + 2005;
-    return String.format("%4d-%02d-%02d", year, month, day);
-  }
-
   private static class PetRowMapper implements CacheEntryAdapter<Pet> {
 
     public Pet hydrate(final Object[] data) {
@@ -153,14 +131,47 @@ public class NodbPetDaoImpl extends BaseNoDBDAOImpl<Integer, Pet> implements Pet
     cacheProcessor.processCache(ownerPetCache);
   }
 
+  @Override
+  public void processAssociatedCacheKeys(int fromOwnerId, int toOwnerId, CacheKeyProcessor cacheKeyProcessor) {
+    super.processAssociatedCacheKeys(fromOwnerId, toOwnerId, cacheKeyProcessor);
+    cacheKeyProcessor.processCacheKeys(ownerPetCache, ids(fromOwnerId, toOwnerId));
+  }
+
   public void setOwnerPetCache(final CacheWrapper<Integer, List<Integer>> ownerPetCache) {
     this.ownerPetCache = ownerPetCache;
   }
 
+  private static class PetBytesMapper extends ByteArrayEntryAdapter<Pet> {
+
+    PetBytesMapper() {
+      super(5);
+    }
+
+    @Override
+    protected void write(final Pet value, final ByteArrayBuffer out) {
+      writeInt(out, value.getId());
+      writeString(out, value.getName());
+      writeDate(out, value.getBirthDate());
+      writeInt(out, value.getTypeFK());
+      writeInt(out, value.getOwnerFK());
+    }
+
+    @Override
+    protected Pet read(final ByteArrayReader in) throws IOException {
+      Pet pet = new Pet();
+      pet.setId(readInt(in));
+      pet.setName(readString(in));
+      pet.setBirthDate(readDate(in));
+      pet.setTypeFK(readInt(in));
+      pet.setOwnerFK(readInt(in));
+      return pet;
+    }
+  }
+
   @Override
   public void setCacheEntryAdapter() {
     // if copyOnRead is enabled, its thread-safe even without dehydrating
-    this.adapter = (isSearchable()) ? null : new PetRowMapper();
+    this.adapter = (isSearchable()) ? null : (byteArrayEntries) ? new PetBytesMapper() : new PetRowMapper();
   }
 
 }
@@ -1,9 +1,15 @@
 package org.springframework.samples.petclinic.dao.nodb;
 
+import org.springframework.samples.petclinic.ByteArrayEntryAdapter;
 import org.springframework.samples.petclinic.CacheEntryAdapter;
 import org.springframework.samples.petclinic.PetType;
 import org.springframework.samples.petclinic.dao.PetTypeDao;
 
+import com.terracotta.cache.codec.ByteArrayBuffer;
+import com.terracotta.cache.codec.ByteArrayReader;
+
+import java.io.IOException;
+
 public class NodbPetTypeDaoImpl extends BaseNoDBDAOImpl<Integer, PetType> implements PetTypeDao {
   public static final int NUM_PET_TYPES = 6;
 
@@ -47,6 +53,19 @@ public class NodbPetTypeDaoImpl extends BaseNoDBDAOImpl<Integer, PetType> implem
     return value;
   }
 
+  @Override
+  protected PetType retrieve(final Integer id) {
+    return petTypes[id];
+  }
+
+  /**
+   * The pet types belong to no owner, they are carried by owner 0.
+   */
+  @Override
+  protected long getFirstId(final long ownerId) {
+    return (ownerId == 0) ? 0 : NUM_PET_TYPES;
+  }
+
   private static class PetTypeRowMapper implements CacheEntryAdapter<PetType> {
 
     public PetType hydrate(final Object[] data) {
@@ -66,10 +85,31 @@ public class NodbPetTypeDaoImpl extends BaseNoDBDAOImpl<Integer, PetType> implem
     }
   }
 
+  private static class PetTypeBytesMapper extends ByteArrayEntryAdapter<PetType> {
+
+    PetTypeBytesMapper() {
+      super(2);
+    }
+
+    @Override
+    protected void write(final PetType value, final ByteArrayBuffer out) {
+      writeInt(out, value.getId());
+      writeString(out, value.getName());
+    }
+
+    @Override
+    protected PetType read(final ByteArrayReader in) throws IOException {
+      PetType petType = new PetType();
+      petType.setId(readInt(in));
+      petType.setName(readString(in));
+      return petType;
+    }
+  }
+
   @Override
   public void setCacheEntryAdapter() {
     // if copyOnRead is enabled, its thread-safe even without dehydrating
-    this.adapter = (isSearchable()) ? null : new PetTypeRowMapper();
+    this.adapter = (isSearchable()) ? null : (byteArrayEntries) ? new PetTypeBytesMapper() : new PetTypeRowMapper();
   }
 
 }
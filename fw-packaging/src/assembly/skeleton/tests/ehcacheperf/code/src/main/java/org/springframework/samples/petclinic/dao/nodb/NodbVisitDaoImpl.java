@@ -1,47 +1,36 @@
 package org.springframework.samples.petclinic.dao.nodb;
 
+import org.springframework.samples.petclinic.ByteArrayEntryAdapter;
 import org.springframework.samples.petclinic.CacheEntryAdapter;
 import org.springframework.samples.petclinic.Pet;
 import org.springframework.samples.petclinic.Visit;
 import org.springframework.samples.petclinic.dao.VisitDao;
 
+import com.terracotta.cache.CacheKeyProcessor;
 import com.terracotta.cache.CacheProcessor;
 import com.terracotta.cache.CacheWrapper;
+import com.terracotta.cache.codec.ByteArrayBuffer;
+import com.terracotta.cache.codec.ByteArrayReader;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
-import java.util.Random;
 
 public class NodbVisitDaoImpl extends BaseNoDBDAOImpl<Integer, Visit> implements VisitDao {
-  private static final int                     NO_OF_PROCEDURES = 20;
-  private final Random                         rand;
-  private final ThreadLocal<SimpleDateFormat>  formatter        = new ThreadLocal<SimpleDateFormat>() {
-
-    @Override
-    protected SimpleDateFormat initialValue() {
-      return new SimpleDateFormat("yyyy-MM-dd");
-    }
-
-  };
+  private static final int                     NO_OF_PROCEDURES    = 20;
+  private static final int                     DATE_ATTRIBUTE      = 0;
+  private static final int                     PROCEDURE_ATTRIBUTE = 1;
 
   private CacheWrapper<Integer, List<Integer>> petVisitCache;
 
   public NodbVisitDaoImpl() {
     super();
-    this.rand = new Random();
   }
 
   protected List<Integer> retrieveVisitIdList(final Pet pet) {
-    // every pet has two visits
-    Integer id = pet.getId() * 2;
-    List<Integer> visitIdList = new ArrayList<Integer>();
-    visitIdList.add(id);
-    visitIdList.add(id + 1);
-    return visitIdList;
+    return data.getVisitIds(pet.getId());
   }
 
   public Visit getById(final Integer id) {
@@ -64,27 +53,26 @@ public class NodbVisitDaoImpl extends BaseNoDBDAOImpl<Integer, Visit> implements
     return value;
   }
 
+  @Override
+  protected Visit retrieve(final Integer id) {
+    return getVisit(id);
+  }
+
+  @Override
+  protected long getFirstId(final long ownerId) {
+    return data.getFirstVisitId(data.getFirstPetId(ownerId));
+  }
+
   private Visit getVisit(final Integer id) {
     Visit visit = new Visit();
     visit.setId(id);
-    try {
-      visit.setDate(formatter.get().parse(getRandomDate()));
-    } catch (ParseException e) {
-      e.printStackTrace();
-      throw new RuntimeException(e);
-    }
-    int procedure = rand.nextInt(NO_OF_PROCEDURES) + 1;
-    visit.setDescription("PROCEDURE_" + procedure + getPaddingString(valuePaddingInBytes));
+    visit.setPetFK(data.getPetId(id));
+    visit.setDate(data.date(id, DATE_ATTRIBUTE));
+    int procedure = data.attribute(id, PROCEDURE_ATTRIBUTE, NO_OF_PROCEDURES) + 1;
+    visit.setDescription("PROCEDURE_" + procedure + getPaddingString(valuePaddingInBytes, id));
     return visit;
   }
 
-  private String getRandomDate() {
-    int day = rand.nextInt(27) + 1;
-    int month = rand.nextInt(12) + 1;
-    int year = rand.nextInt(4) + 2005;
-    return String.format("%4d-%02d-%02d", year, month, day);
-  }
-
   private static class VisitRowMapper implements CacheEntryAdapter<Visit> {
 
     public Visit hydrate(final Object[] data) {
@@ -114,28 +102,27 @@ public class NodbVisitDaoImpl extends BaseNoDBDAOImpl<Integer, Visit> implements
     cacheProcessor.processCache(petVisitCache);
   }
 
+  @Override
+  public void processAssociatedCacheKeys(int fromOwnerId, int toOwnerId, CacheKeyProcessor cacheKeyProcessor) {
+    super.processAssociatedCacheKeys(fromOwnerId, toOwnerId, cacheKeyProcessor);
+    cacheKeyProcessor.processCacheKeys(petVisitCache,
+                                       ids(data.getFirstPetId(fromOwnerId), data.getFirstPetId(toOwnerId)));
+  }
+
   public Collection<Visit> getVisitForPet(final Pet pet) {
     List<Integer> visitIdList;
     if ((visitIdList = petVisitCache.get(pet.getId(), null)) == null) {
       visitIdList = retrieveVisitIdList(pet);
       petVisitCache.put(pet.getId(), visitIdList, null);
     }
-    Collection<Visit> visitList = new ArrayList<Visit>(visitIdList.size());
-    for (Integer id : visitIdList) {
-      visitList.add(getById(id));
-    }
-    return visitList;
+    return new ArrayList<Visit>(getByIds(visitIdList).values());
   }
 
   public Collection<Visit> loadVisitForPet(final Pet pet) {
     List<Integer> visitIdList;
     visitIdList = retrieveVisitIdList(pet);
     petVisitCache.put(pet.getId(), visitIdList, null);
-    Collection<Visit> visitList = new ArrayList<Visit>(visitIdList.size());
-    for (Integer id : visitIdList) {
-      visitList.add(loadById(id));
-    }
-    return visitList;
+    return new ArrayList<Visit>(loadByIds(visitIdList).values());
   }
 
   @Override
@@ -151,10 +138,35 @@ public class NodbVisitDaoImpl extends BaseNoDBDAOImpl<Integer, Visit> implements
     this.petVisitCache = petVisitCache;
   }
 
+  private static class VisitBytesMapper extends ByteArrayEntryAdapter<Visit> {
+
+    VisitBytesMapper() {
+      super(4);
+    }
+
+    @Override
+    protected void write(final Visit value, final ByteArrayBuffer out) {
+      writeInt(out, value.getId());
+      writeInt(out, value.getPetFK());
+      writeDate(out, value.getDate());
+      writeString(out, value.getDescription());
+    }
+
+    @Override
+    protected Visit read(final ByteArrayReader in) throws IOException {
+      Visit visit = new Visit();
+      visit.setId(readInt(in));
+      visit.setPetFK(readInt(in));
+      visit.setDate(readDate(in));
+      visit.setDescription(readString(in));
+      return visit;
+    }
+  }
+
   @Override
   public void setCacheEntryAdapter() {
     // if copyOnRead is enabled, its thread-safe even without dehydrating
-    this.adapter = (isSearchable()) ? null : new VisitRowMapper();
+    this.adapter = (isSearchable()) ? null : (byteArrayEntries) ? new VisitBytesMapper() : new VisitRowMapper();
   }
 
 }
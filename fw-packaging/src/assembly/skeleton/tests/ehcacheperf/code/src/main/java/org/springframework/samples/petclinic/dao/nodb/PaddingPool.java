@@ -0,0 +1,177 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package org.springframework.samples.petclinic.dao.nodb;
+
+import com.terracotta.util.AliasTable;
+import com.terracotta.util.RandomStreams;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Value padding strings built once, with sizes drawn from a {@link SizeDistribution}, so generating a value costs a
+ * lookup instead of building a new padding string.
+ * <p>
+ * The sizes are drawn with a fixed seed, so every node builds the same pool. Paddings of the same size share one
+ * String.
+ */
+public class PaddingPool {
+
+  private static final long SEED = 0x9ADD1E5L;
+
+  public enum SizeDistribution {
+    /** always meanBytes */
+    fixed,
+    /** uniform in [meanBytes / 2, meanBytes * 3 / 2], what variableValue used to do */
+    uniform,
+    /** normal around meanBytes, params: standard deviation as a fraction of meanBytes (default 0.25) */
+    normal,
+    /** meanBytes or a large size, params: "largeBytes,largeFraction" (default 8 * meanBytes, 0.1) */
+    bimodal,
+    /** sizes and weights read from a file, one "sizeInBytes weight" pair per line, params: the file path */
+    histogram;
+
+    int[] sizes(int count, int meanBytes, String params, Random random) {
+      int[] sizes = new int[count];
+      switch (this) {
+        case fixed:
+          for (int i = 0; i < count; i++) {
+            sizes[i] = meanBytes;
+          }
+          break;
+        case uniform:
+          for (int i = 0; i < count; i++) {
+            sizes[i] = (meanBytes / 2) + random.nextInt(meanBytes + 1);
+          }
+          break;
+        case normal:
+          double stddev = meanBytes * parseDouble(params, 0, 0.25);
+          for (int i = 0; i < count; i++) {
+            sizes[i] = (int) Math.max(0, Math.round(meanBytes + stddev * random.nextGaussian()));
+          }
+          break;
+        case bimodal:
+          int largeBytes = (int) parseDouble(params, 0, 8.0 * meanBytes);
+          double largeFraction = parseDouble(params, 1, 0.1);
+          for (int i = 0; i < count; i++) {
+            sizes[i] = random.nextDouble() < largeFraction ? largeBytes : meanBytes;
+          }
+          break;
+        case histogram:
+          List<int[]> buckets = readHistogram(params);
+          double[] weights = new double[buckets.size()];
+          for (int i = 0; i < weights.length; i++) {
+            weights[i] = buckets.get(i)[1];
+          }
+          AliasTable table = new AliasTable(weights);
+          for (int i = 0; i < count; i++) {
+            sizes[i] = buckets.get(table.next(random))[0];
+          }
+          break;
+        default:
+          throw new AssertionError(this);
+      }
+      return sizes;
+    }
+  }
+
+  private final String[]      paddings;
+  private final int           meanBytes;
+  private final RandomStreams randoms = new RandomStreams(SEED);
+
+  /**
+   * @param params distribution parameters, see {@link SizeDistribution}; null or empty for the defaults
+   */
+  public PaddingPool(SizeDistribution distribution, int meanBytes, String params, int poolSize) {
+    if (poolSize < 1) { throw new IllegalArgumentException("poolSize must be >= 1: " + poolSize); }
+    this.meanBytes = meanBytes;
+    this.paddings = new String[poolSize];
+    int[] sizes = distribution.sizes(poolSize, meanBytes, params, new Random(SEED));
+    Map<Integer, String> bySize = new HashMap<Integer, String>();
+    for (int i = 0; i < poolSize; i++) {
+      String padding = bySize.get(sizes[i]);
+      if (padding == null) {
+        padding = newPadding(sizes[i]);
+        bySize.put(sizes[i], padding);
+      }
+      paddings[i] = padding;
+    }
+  }
+
+  /**
+   * @return one of the pooled paddings, picked at random
+   */
+  public String next() {
+    return paddings[randoms.get().nextInt(paddings.length)];
+  }
+
+  /**
+   * @return the pooled padding picked by the given hash, always the same one for the same hash
+   */
+  public String get(long hash) {
+    return paddings[(int) ((hash >>> 1) % paddings.length)];
+  }
+
+  public int getMeanBytes() {
+    return meanBytes;
+  }
+
+  public int size() {
+    return paddings.length;
+  }
+
+  /**
+   * @return a string taking about the given number of bytes, 2 bytes per char
+   */
+  static String newPadding(int bytes) {
+    /*
+     * http://www.javamex.com/tutorials/memory/string_memory_usage.shtml
+     * Minimum String memory usage (bytes) = 8 * (int) ((((no chars) * 2) + 45) / 8)
+     */
+    int no_of_chars = bytes / 2;
+
+    byte[] chars = new byte[no_of_chars];
+    for (int i = 0; i < no_of_chars; i++) {
+      chars[i] = 0x32;
+    }
+    return new String(chars);
+  }
+
+  private static double parseDouble(String params, int index, double defaultValue) {
+    if (params == null) return defaultValue;
+    String[] values = params.split(",");
+    if (index >= values.length || values[index].trim().length() == 0) return defaultValue;
+    return Double.parseDouble(values[index].trim());
+  }
+
+  private static List<int[]> readHistogram(String file) {
+    if (file == null || file.trim().length() == 0) { throw new IllegalArgumentException(
+                                                                                        "histogram padding needs a file"); }
+    List<int[]> buckets = new ArrayList<int[]>();
+    try {
+      BufferedReader reader = new BufferedReader(new FileReader(file.trim()));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          line = line.trim();
+          if (line.length() == 0 || line.startsWith("#")) continue;
+          String[] fields = line.split("[\\s,]+");
+          buckets.add(new int[] { Integer.parseInt(fields[0]), Integer.parseInt(fields[1]) });
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Cannot read padding histogram " + file, e);
+    }
+    if (buckets.isEmpty()) { throw new IllegalArgumentException("empty padding histogram " + file); }
+    return buckets;
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * All content copyright Terracotta, Inc., unless otherwise indicated. All rights reserved.
+ */
+package org.springframework.samples.petclinic.dao.nodb;
+
+import org.springframework.beans.factory.InitializingBean;
+
+import com.terracotta.util.RandomStreams;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Derives the PetClinic object graph from the entity ids and a seed, so any owner, pet or visit can be generated on
+ * demand, the same way on every node, without materializing the data set.
+ * <p>
+ * Every owner has petsPerOwner.max pet id slots: the pets of owner o are o * max to o * max + count(o) - 1, count(o)
+ * being drawn from the petsPerOwner {@link FanOut} with a hash of the seed and o. Visits per pet work the same way. So
+ * both the children of an entity and the parent of a child are computed, never stored. With the defaults (2 pets per
+ * owner, 2 visits per pet) the ids are the ones the nodb DAOs always used.
+ * <p>
+ * Ids are Integers like everywhere else in the PetClinic model: owners * petsPerOwner.max * visitsPerPet.max has to
+ * fit in an int, which is checked once the data set is configured.
+ */
+public class SyntheticData implements InitializingBean {
+
+  private static final int  PET_SALT       = 1;
+  private static final int  VISIT_SALT     = 2;
+  private static final int  ATTRIBUTE_SALT = 3;
+
+  private static final long DAY_MILLIS     = 24L * 60 * 60 * 1000;
+  /** dates are spread over 2005 - 2008, like the random dates they replace */
+  private static final int  DATE_DAYS      = 4 * 365;
+  private static final long DATE_BASE;
+  static {
+    Calendar calendar = Calendar.getInstance();
+    calendar.clear();
+    calendar.set(2005, Calendar.JANUARY, 1);
+    DATE_BASE = calendar.getTimeInMillis();
+  }
+
+  private long              seed           = 0;
+  private FanOut            petsPerOwner   = FanOut.parse("fixed:2");
+  private FanOut            visitsPerPet   = FanOut.parse("fixed:2");
+  private int               owners         = 0;
+
+  public void setSeed(String seed) {
+    try {
+      this.seed = Long.parseLong(seed.trim());
+    } catch (NumberFormatException e) {
+      // data.seed not set in the test properties
+      this.seed = 0;
+    }
+  }
+
+  /**
+   * Number of owners, the highest owner id: bounds the pet and visit ids.
+   */
+  public void setElementNum(String elementNum) {
+    try {
+      this.owners = Integer.parseInt(elementNum.trim());
+    } catch (NumberFormatException e) {
+      // elementNum not set in the test properties
+      this.owners = 0;
+    }
+  }
+
+  /**
+   * @throws IllegalArgumentException when the ids of the visits of the last owner overflow an int
+   */
+  public void afterPropertiesSet() {
+    checkIdRange(owners);
+  }
+
+  /**
+   * @throws IllegalArgumentException when the ids of the visits of owners up to maxOwnerId overflow an int
+   */
+  public void checkIdRange(int maxOwnerId) {
+    // the last visit slot of the last pet slot of maxOwnerId
+    long maxVisitId = (maxOwnerId + 1L) * petsPerOwner.max * visitsPerPet.max - 1;
+    if (maxVisitId > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("visit ids overflow an int with " + maxOwnerId + " owners, "
+                                         + petsPerOwner.max + " pets per owner and " + visitsPerPet.max
+                                         + " visits per pet at most: lower elementNum, data.petsPerOwner or "
+                                         + "data.visitsPerPet");
+    }
+  }
+
+  /**
+   * @see FanOut#parse(String)
+   */
+  public void setPetsPerOwner(String petsPerOwner) {
+    if (!petsPerOwner.startsWith("${")) {
+      this.petsPerOwner = FanOut.parse(petsPerOwner);
+    }
+  }
+
+  /**
+   * @see FanOut#parse(String)
+   */
+  public void setVisitsPerPet(String visitsPerPet) {
+    if (!visitsPerPet.startsWith("${")) {
+      this.visitsPerPet = FanOut.parse(visitsPerPet);
+    }
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public List<Integer> getPetIds(int ownerId) {
+    return children(ownerId, petsPerOwner, PET_SALT);
+  }
+
+  public int getOwnerId(int petId) {
+    return petId / petsPerOwner.max;
+  }
+
+  public List<Integer> getVisitIds(int petId) {
+    return children(petId, visitsPerPet, VISIT_SALT);
+  }
+
+  public int getPetId(int visitId) {
+    return visitId / visitsPerPet.max;
+  }
+
+  /**
+   * @return id of the first pet slot of the owner, the pets of an owner have ids up to the first pet slot of the next
+   *         owner
+   */
+  public long getFirstPetId(long ownerId) {
+    return ownerId * petsPerOwner.max;
+  }
+
+  /**
+   * @return id of the first visit slot of the pet, see {@link #getFirstPetId(long)}
+   */
+  public long getFirstVisitId(long petId) {
+    return petId * visitsPerPet.max;
+  }
+
+  /**
+   * @return a value in [0, bound) derived from the id, different for each attribute index
+   */
+  public int attribute(int id, int attribute, int bound) {
+    long hash = hash(id, ATTRIBUTE_SALT + attribute);
+    return (int) ((hash >>> 1) % bound);
+  }
+
+  /**
+   * @return a hash of the id, to pick pooled values
+   */
+  public long hash(int id, int salt) {
+    return RandomStreams.streamSeed(seed + salt * 0x632BE59BD9B4E019L, id);
+  }
+
+  /**
+   * @return a day between 2005 and 2008 derived from the id
+   */
+  public Date date(int id, int attribute) {
+    return new Date(DATE_BASE + attribute(id, attribute, DATE_DAYS) * DAY_MILLIS);
+  }
+
+  private List<Integer> children(int parentId, FanOut fanOut, int salt) {
+    int count = fanOut.count(hash(parentId, salt));
+    List<Integer> ids = new ArrayList<Integer>(count);
+    int first = parentId * fanOut.max;
+    for (int i = 0; i < count; i++) {
+      ids.add(first + i);
+    }
+    return ids;
+  }
+
+  /**
+   * Distribution of the number of children of an entity, between 0 and {@link #max}, sampled by inverting its
+   * cumulative distribution with a hash.
+   */
+  public static class FanOut {
+    private final double[] cdf;
+    private final int      max;
+
+    FanOut(double[] weights) {
+      double total = 0;
+      for (double weight : weights) {
+        if (weight < 0) { throw new IllegalArgumentException("negative weight: " + weight); }
+        total += weight;
+      }
+      if (total <= 0) { throw new IllegalArgumentException("weights add up to 0"); }
+      this.cdf = new double[weights.length];
+      double cumulative = 0;
+      for (int i = 0; i < weights.length; i++) {
+        cumulative += weights[i];
+        cdf[i] = cumulative / total;
+      }
+      // at least one slot per parent keeps the parent of a child computable
+      this.max = Math.max(1, weights.length - 1);
+    }
+
+    /**
+     * <ul>
+     * <li>fixed:n - n children</li>
+     * <li>uniform:min,max - between min and max children</li>
+     * <li>poisson:mean,max - Poisson distributed, capped at max (default 4 * mean)</li>
+     * <li>weights:w0,w1,...,wn - wi is the weight of having i children</li>
+     * </ul>
+     */
+    public static FanOut parse(String spec) {
+      String[] parts = spec.trim().split(":", 2);
+      String type = parts[0].trim();
+      String[] args = (parts.length > 1) ? parts[1].split(",") : new String[0];
+      if ("fixed".equals(type)) {
+        int n = Integer.parseInt(args[0].trim());
+        double[] weights = new double[n + 1];
+        weights[n] = 1;
+        return new FanOut(weights);
+      } else if ("uniform".equals(type)) {
+        int min = Integer.parseInt(args[0].trim());
+        int max = Integer.parseInt(args[1].trim());
+        double[] weights = new double[max + 1];
+        Arrays.fill(weights, min, max + 1, 1);
+        return new FanOut(weights);
+      } else if ("poisson".equals(type)) {
+        double mean = Double.parseDouble(args[0].trim());
+        int max = (args.length > 1) ? Integer.parseInt(args[1].trim()) : (int) Math.ceil(4 * mean);
+        double[] weights = new double[max + 1];
+        double p = Math.exp(-mean);
+        for (int i = 0; i <= max; i++) {
+          weights[i] = p;
+          p = p * mean / (i + 1);
+        }
+        return new FanOut(weights);
+      } else if ("weights".equals(type)) {
+        double[] weights = new double[args.length];
+        for (int i = 0; i < args.length; i++) {
+          weights[i] = Double.parseDouble(args[i].trim());
+        }
+        return new FanOut(weights);
+      }
+      throw new IllegalArgumentException("unknown fan-out: " + spec);
+    }
+
+    int count(long hash) {
+      double u = (hash >>> 11) * 0x1.0p-53;
+      for (int i = 0; i < cdf.length - 1; i++) {
+        if (u < cdf[i]) return i;
+      }
+      return cdf.length - 1;
+    }
+
+    public int getMax() {
+      return max;
+    }
+  }
+}
@@ -9,7 +9,8 @@ import org.tc.perf.work.Work;
 /**
  * BootStrap class is used to <li>Start the test process</li> <li>Start Agent</li>
  * <li>
- * List running tests</li> <li>Stop a running test</li> <li>Take perf framework
+ * List running tests</li> <li>Stop a running test</li> <li>Watch the live
+ * metrics of a running test</li> <li>Take perf framework
  * state dump for debugging purposes.</li>
  *
  * @author Himadri Singh
@@ -20,7 +21,7 @@ public class BootStrap {
 	private static final Logger log = Logger.getLogger(BootStrap.class);
 
 	private static enum CMD {
-		AGENT, MASTER, LIST, KILL, DUMP
+		AGENT, MASTER, LIST, KILL, WATCH, DUMP
 	};
 
 	private static final String tcConfigSample = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
@@ -73,13 +74,15 @@ public class BootStrap {
 		log.info("Need to start a Terracotta server at port 8510 for framework.");
 		log.info("Usage: \t"
 				+ BootStrap.class.getName()
-				+ "  [ MASTER <test-configuration-file>  |  AGENT  |  LIST  |  KILL <test-id> | DUMP ] ");
+				+ "  [ MASTER <test-configuration-file>  |  AGENT  |  LIST  |  KILL <test-id> | WATCH <test-id> | DUMP ] ");
 		log.info("MASTER \t\tStarts master process to load the test.");
 		log.info("\t\t\tIt needs <test-configuration-file> as argument.");
 		log.info("AGENT \t\tStarts agent process. ");
 		log.info("LIST \t\tLists the tests running (unique ids) in the framework");
 		log.info("\t\t\talong with the machines being used.");
 		log.info("KILL \t\tKills the test. Needs the test unique id.\n");
+		log.info("WATCH \t\tPrints the live metrics of the test nodes and cluster,");
+		log.info("\t\t\trefreshed every reporting interval. Needs the test unique id.\n");
 		log.info("DUMP \t\tDumps the state of perf framework for debugging purpose.\n");
 		log.info("Sample tc-config to start terracotta-server at port 8510:\n\n"
 				+ tcConfigSample);
@@ -119,6 +122,19 @@ public class BootStrap {
 		new MasterController(null).killTest(uniqueId.trim());
 	}
 
+	/**
+	 * @see MasterController#watchTest(String)
+	 * @param uniqueId
+	 *            unique id alloted to the test
+	 */
+	public static final void watchTest(String uniqueId) {
+		if (uniqueId == null) {
+			printHelp();
+			return;
+		}
+		new MasterController(null).watchTest(uniqueId.trim());
+	}
+
 	public static void main(final String[] args) {
 		if (args.length > 0) {
 			CMD cmd = CMD.valueOf(args[0]);
@@ -141,6 +157,13 @@ public class BootStrap {
 				}
 				killTest(args[1]);
 				break;
+			case WATCH:
+				if (args.length < 2){
+					printHelp();
+					System.exit(1);
+				}
+				watchTest(args[1]);
+				break;
 			case LIST:
 				listTests();
 				break;
@@ -23,9 +23,12 @@ import org.tc.cluster.watcher.ClusterWatcherExecutor;
 import org.tc.cluster.watcher.mail.Mail;
 import org.tc.cluster.watcher.util.ClusterWatcherProperties;
 import org.tc.perf.cache.DataCache;
+import org.tc.perf.cache.MetricsCache;
 import org.tc.perf.process.ProcessRegistry;
 import org.tc.perf.util.Configuration;
 import org.tc.perf.util.FileUtils;
+import org.tc.perf.util.LatencyBuckets;
+import org.tc.perf.util.NodeMetrics;
 import org.tc.perf.work.InitialCleanup;
 import org.tc.perf.work.l1.CleanupL1;
 import org.tc.perf.work.l1.SetupL1;
@@ -225,6 +228,7 @@ public class MasterController extends TestFramework implements Runnable,
 		}
 		testCache.saveTest(config);
 		clearAll(config, true);
+		MetricsCache.removeInstance(config.getUniqueId());
 	}
 
 	private void cleanup(Configuration config) {
@@ -389,6 +393,108 @@ public class MasterController extends TestFramework implements Runnable,
 		stopTest(config);
 	}
 
+	/**
+	 * Prints the latest interval metrics of each node of a running test, and
+	 * of the whole cluster, every reporting interval of the test until it
+	 * stops. Cluster throughput and errors are the sums of the nodes, the
+	 * mean latency is weighted by the node counts and the percentiles are the
+	 * ones of the merged histograms of the nodes. When a node does not ship
+	 * its histogram, the cluster p99 falls back to the highest of the nodes.
+	 * Nodes that did not report for two intervals are shown as stale and left
+	 * out of the cluster.
+	 *
+	 * @param testUniqueId
+	 *            unique id alloted to the test
+	 * @see BootStrap#watchTest(String)
+	 */
+
+	public void watchTest(String testUniqueId) {
+		if (testCache.getTest(testUniqueId) == null) {
+			log.info("Test not running for id: " + testUniqueId);
+			return;
+		}
+		MetricsCache metricsCache = MetricsCache.getInstance(testUniqueId);
+		String reader = metricsCache.addReader();
+		try {
+			watchMetrics(testUniqueId, metricsCache);
+		} finally {
+			metricsCache.removeUser(reader);
+		}
+		log.info("Test finished: " + testUniqueId);
+	}
+
+	private void watchMetrics(String testUniqueId, MetricsCache metricsCache) {
+		int interval = 5;
+		while (!metricsCache.isFinished()
+				&& testCache.getTest(testUniqueId) != null) {
+			List<NodeMetrics> nodes = metricsCache.getAll();
+			log.info(HEADER);
+			log.info(String.format("%-30s %8s %12s %10s %10s %10s %10s %10s %8s",
+					"Node", "Elapsed", "ops/sec", "mean(ms)", "p50(ms)",
+					"p90(ms)", "p99(ms)", "max(ms)", "Errors"));
+			double opsPerSec = 0, weightedMean = 0, p99 = 0, max = 0;
+			long count = 0, errors = 0, elapsed = 0;
+			LatencyBuckets histogram = new LatencyBuckets();
+			boolean merged = true;
+			int live = 0;
+			long now = System.currentTimeMillis();
+			for (NodeMetrics node : nodes) {
+				// a node that stopped reporting keeps its last metrics
+				int nodeInterval = (node.getReportIntervalSecs() > 0) ? node
+						.getReportIntervalSecs() : interval;
+				boolean stale = now - node.getTimestamp() > 2000L * nodeInterval;
+				log.info(String.format(
+						"%-30s %8d %12.1f %10.3f %10.3f %10.3f %10.3f %10.3f %8d%s",
+						node.getKey(), node.getElapsedSecs(),
+						node.getOpsPerSec(), node.getMean(), node.getP50(),
+						node.getP90(), node.getP99(), node.getMax(),
+						node.getErrors(), stale ? " (stale)" : ""));
+				if (stale)
+					continue;
+				live++;
+				opsPerSec += node.getOpsPerSec();
+				weightedMean += node.getMean() * node.getCount();
+				count += node.getCount();
+				p99 = Math.max(p99, node.getP99());
+				max = Math.max(max, node.getMax());
+				if (node.getHistogram() != null)
+					histogram.add(node.getHistogram());
+				else
+					merged = false;
+				errors += node.getErrors();
+				elapsed = Math.max(elapsed, node.getElapsedSecs());
+				if (node.getReportIntervalSecs() > 0)
+					interval = node.getReportIntervalSecs();
+			}
+			double mean = (count > 0) ? weightedMean / count : 0;
+			if (live == 0)
+				log.info("Waiting for the test nodes to report...");
+			else if (merged)
+				// a bucket may reach above the highest latency recorded
+				log.info(String.format(
+						"%-30s %8d %12.1f %10.3f %10.3f %10.3f %10.3f %10.3f %8d",
+						"Cluster (" + live + " nodes)", elapsed,
+						opsPerSec, mean,
+						Math.min(histogram.getPercentile(50), max),
+						Math.min(histogram.getPercentile(90), max),
+						Math.min(histogram.getPercentile(99), max), max,
+						errors));
+			else
+				log.info(String.format(
+						"%-30s %8d %12.1f %10.3f %10s %10s %10.3f %10.3f %8d",
+						"Cluster (" + live + " nodes, max p99)",
+						elapsed, opsPerSec, mean, "-", "-", p99, max, errors));
+			// waits in slices, to stop reading as soon as the test stops
+			for (int i = 0; i < interval && !metricsCache.isFinished(); i++) {
+				try {
+					Thread.sleep(1000L);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+
 	/**
 	 * Clears all test running on the framework. <br/><br/>Use it CAUTIOUSLY.
 	 *
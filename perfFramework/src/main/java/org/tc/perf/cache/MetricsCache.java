@@ -0,0 +1,156 @@
+package org.tc.perf.cache;
+
+import static org.tc.perf.util.Utils.HOSTNAME;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+
+import org.apache.log4j.Logger;
+import org.tc.perf.util.NodeMetrics;
+
+/**
+ * Cache which stores the latest interval metrics of each node of a running
+ * test, keyed by host and node id.
+ * <p>
+ * Readers and relays register themselves and stop once the metrics are
+ * marked finished, which {@link #removeInstance(String)} does before waiting
+ * for them to unregister and removing the cache.
+ *
+ * @author Himadri Singh
+ *
+ */
+public class MetricsCache {
+	private static final Logger log = Logger.getLogger(MetricsCache.class);
+
+	private final static String PREFIX = "METRICS_";
+	private final static String READER = "READER_";
+	private final static String RELAY = "RELAY_";
+	private final static String FINISHED = "FINISHED";
+	private final static long USERS_TIMEOUT = 30 * 1000;
+
+	private final Cache metrics;
+
+	private MetricsCache(String uniqueId) {
+		metrics = CacheGenerator.getCache(PREFIX + uniqueId);
+	}
+
+	public static MetricsCache getInstance(String uniqueId) {
+		return new MetricsCache(uniqueId);
+	}
+
+	public void put(NodeMetrics nodeMetrics) {
+		metrics.put(new Element(nodeMetrics.getKey(), nodeMetrics));
+	}
+
+	/**
+	 *
+	 * @return latest metrics of all the nodes, sorted by host and node id.
+	 *         Empty once the cache is removed.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<NodeMetrics> getAll() {
+		List<NodeMetrics> all = new ArrayList<NodeMetrics>();
+		try {
+			List<String> keys = new ArrayList<String>(metrics.getKeys());
+			Collections.sort(keys);
+			for (String key : keys) {
+				Element e = metrics.get(key);
+				if (e != null && e.getValue() instanceof NodeMetrics)
+					all.add((NodeMetrics) e.getValue());
+			}
+		} catch (IllegalStateException e) {
+			// removed while reading
+			all.clear();
+		}
+		return all;
+	}
+
+	/**
+	 * Registers a reader of the metrics, which must stop reading once
+	 * {@link #isFinished()}.
+	 *
+	 * @return key of the reader, for {@link #removeUser(String)}
+	 */
+	public String addReader() {
+		return addUser(READER);
+	}
+
+	/**
+	 * Registers a relay of the metrics of a node, which must stop putting
+	 * them once {@link #isFinished()}.
+	 *
+	 * @return key of the relay, for {@link #removeUser(String)}
+	 */
+	public String addRelay() {
+		return addUser(RELAY);
+	}
+
+	private String addUser(String prefix) {
+		String key = prefix + HOSTNAME + "-" + UUID.randomUUID();
+		metrics.put(new Element(key, Boolean.TRUE));
+		return key;
+	}
+
+	public void removeUser(String key) {
+		try {
+			metrics.remove(key);
+		} catch (IllegalStateException e) {
+			// already removed with the cache
+		}
+	}
+
+	/**
+	 *
+	 * @return true once the test stopped
+	 */
+	public boolean isFinished() {
+		try {
+			return metrics.get(FINISHED) != null;
+		} catch (IllegalStateException e) {
+			return true;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private boolean hasUsers() {
+		for (String key : (List<String>) metrics.getKeys()) {
+			if (key.startsWith(READER) || key.startsWith(RELAY))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Marks the metrics finished, waits for the readers and relays to stop (at
+	 * most USERS_TIMEOUT millis) and removes the cache. A relay put after the
+	 * removal would bring the cache back.
+	 *
+	 * @param uniqueId
+	 *            unique id of the test
+	 */
+	public static void removeInstance(String uniqueId) {
+		MetricsCache instance = getInstance(uniqueId);
+		instance.metrics.put(new Element(FINISHED, Boolean.TRUE));
+		long deadline = System.currentTimeMillis() + USERS_TIMEOUT;
+		while (instance.hasUsers()) {
+			if (System.currentTimeMillis() >= deadline) {
+				log.warn("Removing the metrics of " + uniqueId
+						+ " with readers or relays still registered.");
+				break;
+			}
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		CacheGenerator.removeCache(PREFIX + uniqueId);
+	}
+
+}
@@ -243,7 +243,7 @@ public class Configuration implements Serializable {
 	 */
 	public List<String> getLogRegex() {
 		return toList(getString("log.collection.ext",
-				".*log .*log\\.[0-9]* .*xml .*txt"));
+				".*log .*log\\.[0-9]* .*xml .*txt .*csv"));
 	}
 
 	/**
@@ -0,0 +1,91 @@
+package org.tc.perf.util;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latency histogram of a test node, as written by the test in the
+ * <code>histogram</code> property of its metrics file: comma separated
+ * value:count pairs, one per non-empty bucket, the value being the highest
+ * latency of the bucket in nanoseconds. The nodes use the same bucket
+ * layout, so their histograms merge by adding up the counts of equal values
+ * and the percentiles of the merged histogram are the ones of the cluster.
+ *
+ * @author Himadri Singh
+ */
+public class LatencyBuckets implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final TreeMap<Long, Long> counts = new TreeMap<Long, Long>();
+	private long totalCount;
+
+	/**
+	 *
+	 * @param buckets
+	 *            value:count pairs, null or empty for no samples
+	 * @return the parsed histogram
+	 * @throws IllegalArgumentException
+	 *             on a malformed pair
+	 */
+	public static LatencyBuckets parse(String buckets) {
+		LatencyBuckets parsed = new LatencyBuckets();
+		if (buckets == null || buckets.trim().length() == 0)
+			return parsed;
+		for (String bucket : buckets.trim().split(",")) {
+			int colon = bucket.indexOf(':');
+			if (colon < 0)
+				throw new IllegalArgumentException("Invalid histogram bucket: "
+						+ bucket);
+			parsed.add(Long.parseLong(bucket.substring(0, colon).trim()),
+					Long.parseLong(bucket.substring(colon + 1).trim()));
+		}
+		return parsed;
+	}
+
+	private void add(long value, long count) {
+		Long current = counts.get(value);
+		counts.put(value, (current == null) ? count : current + count);
+		totalCount += count;
+	}
+
+	/**
+	 * Adds the samples of the other histogram to this one.
+	 *
+	 * @return this histogram
+	 */
+	public LatencyBuckets add(LatencyBuckets other) {
+		for (Map.Entry<Long, Long> bucket : other.counts.entrySet())
+			add(bucket.getKey(), bucket.getValue());
+		return this;
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 *
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return latency in milliseconds below which the given percentage of the
+	 *         samples fall, 0 without samples
+	 */
+	public double getPercentile(double percentile) {
+		if (totalCount == 0)
+			return 0;
+		double requested = Math.min(Math.max(percentile, 0.0), 100.0);
+		long countAtPercentile = Math.max(1,
+				(long) ((requested / 100.0) * totalCount + 0.5));
+		long cumulative = 0;
+		long value = 0;
+		for (Map.Entry<Long, Long> bucket : counts.entrySet()) {
+			value = bucket.getKey();
+			cumulative += bucket.getValue();
+			if (cumulative >= countAtPercentile)
+				break;
+		}
+		return value / 1000000.0;
+	}
+}
@@ -0,0 +1,116 @@
+package org.tc.perf.util;
+
+import static org.tc.perf.util.Utils.HOSTNAME;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.tc.perf.cache.MetricsCache;
+
+/**
+ * Relays the interval metrics written by a test process to the
+ * {@link MetricsCache} of the test. The test process is connected to the
+ * cluster under test only, so the agent polls the metrics file and puts any
+ * new version of it in the framework cache, until the metrics are finished.
+ * The relay is registered in the cache while running, so that the metrics are
+ * not removed before its last put.
+ *
+ * @author Himadri Singh
+ */
+public class MetricsRelay {
+
+	private static final int interval = 1000;
+	private static final Logger log = Logger.getLogger(MetricsRelay.class);
+
+	private final File file;
+	private final MetricsCache metricsCache;
+	private long lastModified;
+	private String relayKey;
+	private Thread t;
+
+	/**
+	 *
+	 * @param uniqueId
+	 *            unique id of the test
+	 * @param file
+	 *            metrics file written by the test process
+	 */
+	public MetricsRelay(String uniqueId, File file) {
+		this.file = file;
+		this.metricsCache = MetricsCache.getInstance(uniqueId);
+	}
+
+	/**
+	 * Starts relaying the metrics.
+	 */
+	public void start() {
+		log.info("Relaying test metrics from " + file.getAbsolutePath());
+		relayKey = metricsCache.addRelay();
+		t = new Thread(new Runnable() {
+			public void run() {
+				relay();
+			}
+		}, "MetricsRelay");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * Stops relaying the metrics, after relaying the last version of the file.
+	 */
+	public void stop() {
+		if (t == null)
+			return;
+		t.interrupt();
+		try {
+			t.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		t = null;
+		relayChanges();
+		// the metrics may now be removed
+		metricsCache.removeUser(relayKey);
+	}
+
+	private void relay() {
+		while (true) {
+			relayChanges();
+			try {
+				Thread.sleep(interval);
+			} catch (InterruptedException e) {
+				log.debug("Metrics relay stopped.");
+				return;
+			}
+		}
+	}
+
+	private void relayChanges() {
+		long modified = file.lastModified();
+		if (modified == 0 || modified == lastModified)
+			return;
+		if (metricsCache.isFinished())
+			return;
+		Properties props = new Properties();
+		try {
+			InputStream in = new FileInputStream(file);
+			try {
+				props.load(in);
+			} finally {
+				in.close();
+			}
+			metricsCache.put(new NodeMetrics(HOSTNAME, props));
+			lastModified = modified;
+		} catch (IOException e) {
+			log.warn("Cannot read test metrics from " + file + ": "
+					+ e.getMessage());
+		} catch (RuntimeException e) {
+			log.warn("Cannot relay test metrics from " + file + ": "
+					+ e.getMessage());
+		}
+	}
+}
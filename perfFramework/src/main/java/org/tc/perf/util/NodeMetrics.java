@@ -0,0 +1,134 @@
+package org.tc.perf.util;
+
+import java.io.Serializable;
+import java.util.Properties;
+
+/**
+ * Metrics of the last reporting interval of a test node, as written by the
+ * test to the file set with system property <code>fw.metrics.file</code>.
+ * Latencies are in milliseconds, errors are cumulative. Tests that ship
+ * their latency histogram also have {@link #getHistogram()}.
+ *
+ * @author Himadri Singh
+ */
+public class NodeMetrics implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String host;
+	private final String node;
+	private final long timestamp;
+	private final long elapsedSecs;
+	private final int reportIntervalSecs;
+	private final long count;
+	private final double opsPerSec;
+	private final double mean;
+	private final double p50;
+	private final double p90;
+	private final double p99;
+	private final double max;
+	private final long errors;
+	private final LatencyBuckets histogram;
+
+	public NodeMetrics(String host, Properties props) {
+		this.host = host;
+		this.node = props.getProperty("node", "?");
+		this.timestamp = getLong(props, "timestamp");
+		this.elapsedSecs = getLong(props, "elapsedSecs");
+		this.reportIntervalSecs = (int) getLong(props, "reportIntervalSecs");
+		this.count = getLong(props, "count");
+		this.opsPerSec = getDouble(props, "opsPerSec");
+		this.mean = getDouble(props, "mean");
+		this.p50 = getDouble(props, "p50");
+		this.p90 = getDouble(props, "p90");
+		this.p99 = getDouble(props, "p99");
+		this.max = getDouble(props, "max");
+		this.errors = getLong(props, "errors");
+		String buckets = props.getProperty("histogram");
+		this.histogram = (buckets == null) ? null : LatencyBuckets
+				.parse(buckets);
+	}
+
+	private static long getLong(Properties props, String key) {
+		String value = props.getProperty(key);
+		return (value == null) ? 0 : Long.parseLong(value.trim());
+	}
+
+	private static double getDouble(Properties props, String key) {
+		String value = props.getProperty(key);
+		return (value == null) ? 0 : Double.parseDouble(value.trim());
+	}
+
+	/**
+	 *
+	 * @return unique key of the node in the test
+	 */
+	public String getKey() {
+		return host + "-" + node;
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public String getNode() {
+		return node;
+	}
+
+	/**
+	 *
+	 * @return end of the interval, in millis since epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public long getElapsedSecs() {
+		return elapsedSecs;
+	}
+
+	public int getReportIntervalSecs() {
+		return reportIntervalSecs;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getOpsPerSec() {
+		return opsPerSec;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public double getP50() {
+		return p50;
+	}
+
+	public double getP90() {
+		return p90;
+	}
+
+	public double getP99() {
+		return p99;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	/**
+	 *
+	 * @return latencies of the interval, null when the test does not ship
+	 *         them
+	 */
+	public LatencyBuckets getHistogram() {
+		return histogram;
+	}
+}
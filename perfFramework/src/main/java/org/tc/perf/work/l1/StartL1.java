@@ -7,6 +7,7 @@ import static org.tc.perf.util.Utils.CLASSPATH_SEPARATOR;
 import static org.tc.perf.util.Utils.FW_TC_CONFIG_URL;
 import static org.tc.perf.util.Utils.HOSTNAME;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BrokenBarrierException;
@@ -14,6 +15,7 @@ import java.util.concurrent.BrokenBarrierException;
 import org.apache.log4j.Logger;
 import org.tc.perf.process.ProcessConfig;
 import org.tc.perf.util.Configuration;
+import org.tc.perf.util.MetricsRelay;
 import org.tc.perf.util.SystemStatsCollector;
 import org.terracotta.api.TerracottaClient;
 import org.terracotta.coordination.Barrier;
@@ -23,7 +25,14 @@ import org.terracotta.coordination.Barrier;
  * the startup using a clustered barrier. <br/>
  * <br/>
  * It also adds a unique id to each process via system property
- * <code>fw.node.id</code>.
+ * <code>fw.node.id</code> and the client logs directory via
+ * <code>fw.logs.dir</code>, so that the process can write files that get
+ * collected with its logs.
+ * <br/>
+ * <br/>
+ * The process writes its interval metrics to the file set with system
+ * property <code>fw.metrics.file</code>, which is relayed to the framework
+ * by a {@link MetricsRelay} while the process runs.
  *
  * @author gautam, Himadri Singh
  *
@@ -33,6 +42,8 @@ public class StartL1 extends AbstractL1 {
 	private static final Logger log = Logger.getLogger(StartL1.class);
 	private static final long serialVersionUID = 1L;
 
+	private transient MetricsRelay metricsRelay;
+
 	public StartL1(final Configuration configuration) {
 		super(configuration);
 	}
@@ -69,6 +80,13 @@ public class StartL1 extends AbstractL1 {
 		jvmArgs.addAll(configuration.getL1_jvmArgs());
 		jvmArgs.add("-Dfw.node.id=" + nodeId);
 		jvmArgs.add("-Dnode-name=" + nodeId);
+		jvmArgs.add("-Dfw.logs.dir="
+				+ configuration.getClientLogLocation().getAbsolutePath());
+		File metricsFile = new File(configuration.getClientLogLocation(),
+				"metrics-" + nodeId + ".properties");
+		jvmArgs.add("-Dfw.metrics.file=" + metricsFile.getAbsolutePath());
+		metricsRelay = new MetricsRelay(configuration.getUniqueId(),
+				metricsFile);
 
 		ProcessConfig config = new ProcessConfig(mainClass, HOSTNAME
 				+ "-client-" + nodeId);
@@ -96,7 +114,12 @@ public class StartL1 extends AbstractL1 {
 			config.setLogSnippet(configuration.getClientLogCheck());
 			log.info("loadmachines are configured. Timeout set to 120 secs to check client started successfully.");
 		}
-		execute(config);
+		metricsRelay.start();
+		try {
+			execute(config);
+		} finally {
+			metricsRelay.stop();
+		}
 	}
 
 }